@@ -4,16 +4,20 @@
 
 package com.thalesgroup.tshpaysample;
 
+import android.app.Activity;
 import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.net.NetworkRequest;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.lifecycle.Observer;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.multidex.MultiDexApplication;
 
@@ -21,40 +25,40 @@ import com.gemalto.mfs.mwsdk.dcm.DigitalizedCard;
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardDetails;
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardManager;
 import com.gemalto.mfs.mwsdk.provisioning.model.KnownMessageCode;
+import com.gemalto.mfs.mwsdk.utils.async.AbstractAsyncHandler;
 import com.gemalto.mfs.mwsdk.utils.async.AsyncResult;
 import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardListHelper;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
 import com.thalesgroup.tshpaysample.sdk.helpers.InternalNotificationsUtils;
-import com.thalesgroup.tshpaysample.sdk.init.TshInitState;
-import com.thalesgroup.tshpaysample.sdk.init.TshInitStateEnum;
+import com.thalesgroup.tshpaysample.sdk.init.MgInitScheduler;
 import com.thalesgroup.tshpaysample.sdk.push.ServerMessageInfo;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 import com.thalesgroup.tshpaysample.utlis.NotificationHelper;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PaySampleApp extends MultiDexApplication implements InternalNotificationsUtils.PushMsgResultHandler {
 
     private static final String TAG = PaySampleApp.class.getSimpleName();
+    private static final int LOG_QUEUE_CAPACITY = 256;
     private ConnectivityManager.NetworkCallback mNetworkCallback;
     private BroadcastReceiver mPushMsgResultReceiver;
 
-    private final Observer<TshInitState> mInitObserver = state -> {
-        if(TshInitStateEnum.INIT_SUCCESSFUL == state.getState() ) {
-            AppLoggerHelper.info(TAG, "Init completed => registering for network observer.");
-            registerNetworkConnectivityAvailableCallback();
-
-            mPushMsgResultReceiver = InternalNotificationsUtils.registerForPushMsgProcessingResult(this, this);
-        }
-    };
-
     @Override
     public void onCreate() {
         super.onCreate();
 
-        // Register for SDK init changes
-        SdkHelper.getInstance().getInit().getSdkInitState().observeForever(mInitObserver);
+        // Keep logging off the SDK callback threads.
+        AppLoggerHelper.enableAsyncSink(LOG_QUEUE_CAPACITY);
+
+        // Register for SDK init. Runs only once even if the init is repeated.
+        SdkHelper.getInstance().getInit().whenReady(new Handler(Looper.getMainLooper())::post, this::onSdkReady);
+
+        // MG init can run right away if the user opened the app.
+        registerLauncherStartCallback();
 
         // Start SDK init.
         AppLoggerHelper.info(TAG, "Starting to initialize");
@@ -65,9 +69,6 @@ public class PaySampleApp extends MultiDexApplication implements InternalNotific
     public void onTerminate() {
         super.onTerminate();
 
-        // Unregister init changes.
-        SdkHelper.getInstance().getInit().getSdkInitState().removeObserver(mInitObserver);
-
         final ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
         if (mNetworkCallback != null) {
             connectivityManager.unregisterNetworkCallback(mNetworkCallback);
@@ -78,6 +79,77 @@ public class PaySampleApp extends MultiDexApplication implements InternalNotific
         }
     }
 
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+
+        // Decoded card art can be always restored from the files.
+        SdkHelper.getInstance().getCardArtCache().onTrimMemory(level);
+
+        // Persist card art access times while the UI is hidden and the process might be killed.
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            SdkHelper.getInstance().getCardArtStore().flush();
+        }
+    }
+
+    private void onSdkReady() {
+        AppLoggerHelper.info(TAG, "Init completed => registering for network observer.");
+        registerNetworkConnectivityAvailableCallback();
+
+        mPushMsgResultReceiver = InternalNotificationsUtils.registerForPushMsgProcessingResult(this, this);
+
+        SdkHelper.getInstance().getCardArtPrefetcher().prefetch(this, "init successful");
+    }
+
+    private void registerLauncherStartCallback() {
+        registerActivityLifecycleCallbacks(new ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(@NonNull final Activity activity,
+                                          @Nullable final Bundle savedInstanceState) {
+                // Only the first activity tells how the process was started.
+                unregisterActivityLifecycleCallbacks(this);
+
+                final Intent intent = activity.getIntent();
+                final MgInitScheduler mgInitScheduler = SdkHelper.getInstance().getInit().getMgInitScheduler();
+                if (intent != null && Intent.ACTION_MAIN.equals(intent.getAction()) && intent.hasCategory(Intent.CATEGORY_LAUNCHER)) {
+                    mgInitScheduler.onLauncherStart();
+                }
+                mgInitScheduler.onEntryPointStarted();
+            }
+
+            @Override
+            public void onActivityStarted(@NonNull final Activity activity) {
+                // Not relevant.
+            }
+
+            @Override
+            public void onActivityResumed(@NonNull final Activity activity) {
+                // Not relevant.
+            }
+
+            @Override
+            public void onActivityPaused(@NonNull final Activity activity) {
+                // Not relevant.
+            }
+
+            @Override
+            public void onActivityStopped(@NonNull final Activity activity) {
+                // Not relevant.
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(@NonNull final Activity activity,
+                                                    @NonNull final Bundle outState) {
+                // Not relevant.
+            }
+
+            @Override
+            public void onActivityDestroyed(@NonNull final Activity activity) {
+                // Not relevant.
+            }
+        });
+    }
+
     private void checkAndReplenishAllCardsIfNeeded() {
         AppLoggerHelper.debug(TAG, "First retrieve list of all cards");
         new CardListHelper(this, new CardListHelper.Delegate() {
@@ -119,6 +191,8 @@ public class PaySampleApp extends MultiDexApplication implements InternalNotific
             public void onAvailable(@NonNull final Network network) {
                 AppLoggerHelper.info(TAG, "The device is/got back online, let's check and replenish cards");
                 checkAndReplenishAllCardsIfNeeded();
+                SdkHelper.getInstance().getReplenishmentForecaster().evaluate();
+                SdkHelper.getInstance().getCardArtPrefetcher().prefetch(PaySampleApp.this, "network available");
             }
 
             @Override
@@ -149,13 +223,44 @@ public class PaySampleApp extends MultiDexApplication implements InternalNotific
             // Next we demonstrate how to hook to a specific message.
             // In this example we are interested if a default card gets deleted
             // or if any card gets replenished
+            boolean cardDeleted = false;
             for (final ServerMessageInfo serverMessageInfo : serverMessageInfoList) {
                 updateDefaultCardIfDeleted(serverMessageInfo);
                 notifyCardReplenished(serverMessageInfo);
+                cardDeleted |= serverMessageInfo.messageCode().equals(KnownMessageCode.REQUEST_DELETE_CARD);
+            }
+
+            if (cardDeleted) {
+                purgeDeletedCardArt();
             }
         }
     }
 
+    /**
+     * Digital card id of a remotely deleted card is not known anymore.
+     * Keep only card art of the cards which are still present.
+     */
+    private void purgeDeletedCardArt() {
+        DigitalizedCardManager.getAllCards(new AbstractAsyncHandler<String[]>() {
+            @Override
+            public void onComplete(final AsyncResult<String[]> asyncResult) {
+                if (!asyncResult.isSuccessful()) {
+                    AppLoggerHelper.warn(TAG, "Failed to list cards for card art cleanup: " + asyncResult.getErrorMessage());
+                    return;
+                }
+
+                final Set<String> digitalCardIds = new HashSet<>();
+                for (final String tokenizedCardId : asyncResult.getResult()) {
+                    final String digitalCardId = DigitalizedCardManager.getDigitalCardId(tokenizedCardId);
+                    if (digitalCardId != null) {
+                        digitalCardIds.add(digitalCardId);
+                    }
+                }
+                SdkHelper.getInstance().getCardArtStore().retainAll(digitalCardIds);
+            }
+        });
+    }
+
     private void updateDefaultCardIfDeleted(final ServerMessageInfo serverMessageInfo) {
         if(serverMessageInfo.messageCode().equals(KnownMessageCode.REQUEST_DELETE_CARD)
                 && serverMessageInfo.tokenizedCardId().equals(SdkHelper.getInstance().getTshPaymentListener().getDefaultCardId().getValue())) {
@@ -10,8 +10,18 @@ import androidx.annotation.NonNull;
 
 import com.thalesgroup.tshpaysample.R;
 import com.thalesgroup.tshpaysample.sdk.enrollment.TshEnrollment;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardArtCache;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardArtDownloader;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardArtLoader;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardArtPrefetcher;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardArtStore;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardSnapshotStore;
+import com.thalesgroup.tshpaysample.sdk.helpers.HceRoutingState;
+import com.thalesgroup.tshpaysample.sdk.helpers.ReplenishmentForecaster;
+import com.thalesgroup.tshpaysample.sdk.helpers.ReplenishmentScheduler;
 import com.thalesgroup.tshpaysample.sdk.init.TshInit;
 import com.thalesgroup.tshpaysample.sdk.logger.TshSecureLogger;
+import com.thalesgroup.tshpaysample.sdk.payment.PaymentFlightRecorder;
 import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentListener;
 import com.thalesgroup.tshpaysample.sdk.push.TshPush;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
@@ -24,13 +34,33 @@ public final class SdkHelper {
 
     private static final SdkHelper INSTANCE = new SdkHelper();
 
+    private static final String NODE_LOGGER = "logger";
+    private static final String NODE_CARD_ART = "cardArt";
+    private static final String NODE_FORECASTER = "forecaster";
+    private static final String NODE_HCE_ROUTING = "hceRouting";
+    private static final String NODE_PUSH = "push";
+    private static final String NODE_CPS = "cps";
+    private static final String NODE_ENROLLMENT = "enrollment";
+    private static final String NODE_PAYMENT_LISTENER = "paymentListener";
+
     private boolean mInited = false;
 
     private final TshPush mTshPush = new TshPush();
     private final TshInit mTshInit = new TshInit();
     private final TshEnrollment mTshEnrollment = new TshEnrollment();
     private final TshPaymentListener mTshPaymentListener = new TshPaymentListener();
+    private final PaymentFlightRecorder mPaymentFlightRecorder = new PaymentFlightRecorder();
     private final TshSecureLogger mTshSecureLogger = new TshSecureLogger();
+    private final CardArtCache mCardArtCache = new CardArtCache();
+    private final CardArtStore mCardArtStore = new CardArtStore(mCardArtCache);
+    private final CardArtLoader mCardArtLoader = new CardArtLoader(mCardArtCache, mCardArtStore);
+    private final CardArtDownloader mCardArtDownloader = new CardArtDownloader(mCardArtStore);
+    private final CardArtPrefetcher mCardArtPrefetcher = new CardArtPrefetcher(mCardArtStore, mCardArtDownloader);
+    private final CardSnapshotStore mCardSnapshotStore = new CardSnapshotStore();
+    private final ReplenishmentScheduler mReplenishmentScheduler = new ReplenishmentScheduler();
+    private final ReplenishmentForecaster mReplenishmentForecaster = new ReplenishmentForecaster();
+    private final HceRoutingState mHceRoutingState = new HceRoutingState();
+    private final StartupGraph mStartupGraph = new StartupGraph();
 
     //endregion
 
@@ -48,20 +78,36 @@ public final class SdkHelper {
             return;
         }
 
+        // Nodes needed for a cold start tap are critical, as well as cheap nodes which do no I/O.
+        // Getters never wait. Push is initialized in the background and reached through whenPushReady(),
+        // so no caller blocks on the startup thread.
+
         // Start with secure logger so it will be always available for each app part.
-        mTshSecureLogger.init(context);
+        mStartupGraph.add(NODE_LOGGER, true, () -> mTshSecureLogger.init(context));
+
+        // Card art storage. Init only hands the index load over to the store thread.
+        mStartupGraph.add(NODE_CARD_ART, true, () -> mCardArtStore.init(context), NODE_LOGGER);
+
+        // Key consumption history used to replenish cards before they run out. Works before its init,
+        // just does not learn from such events.
+        mStartupGraph.add(NODE_FORECASTER, false, () -> mReplenishmentForecaster.init(context), NODE_LOGGER);
 
-        // Initialize FCM / HMS push notifications.
-        mTshPush.init(context);
+        // NFC routing of the HCE service. Read on the first APDU, so it must be resolved before any tap.
+        mStartupGraph.add(NODE_HCE_ROUTING, true, () -> mHceRoutingState.init(context), NODE_LOGGER);
+
+        // Initialize FCM / HMS push notifications. Token fetch is not needed for the payment.
+        mStartupGraph.add(NODE_PUSH, false, () -> mTshPush.init(context), NODE_LOGGER);
 
         // Initialize TSH SDK.
-        mTshInit.init(context);
+        mStartupGraph.add(NODE_CPS, true, () -> mTshInit.init(context), NODE_LOGGER);
 
-        // Initialize TSH Enrollment helper.
-        mTshEnrollment.init(context);
+        // Initialize TSH Enrollment helper. Push token is requested only when needed.
+        mStartupGraph.add(NODE_ENROLLMENT, true, () -> mTshEnrollment.init(context), NODE_CPS);
 
         // Contactless Payment Service Listener
-        mTshPaymentListener.init(context);
+        mStartupGraph.add(NODE_PAYMENT_LISTENER, true, () -> mTshPaymentListener.init(context), NODE_CPS);
+
+        mStartupGraph.start();
 
         mInited = true;
     }
@@ -71,10 +117,21 @@ public final class SdkHelper {
 
     //region Public API
 
+    /**
+     * @return Push helper. Use it only from {@link #whenPushReady(Runnable)} unless it is known to be initialized.
+     */
     public TshPush getPush() {
         return mTshPush;
     }
 
+    /**
+     * Runs the action once the push helper is initialized. Never blocks. Action runs right away on
+     * the calling thread if push is ready, otherwise on the startup thread.
+     */
+    public void whenPushReady(@NonNull final Runnable action) {
+        mStartupGraph.whenReady(NODE_PUSH, action);
+    }
+
     public TshInit getInit() {
         return mTshInit;
     }
@@ -87,9 +144,53 @@ public final class SdkHelper {
         return mTshPaymentListener;
     }
 
+    public PaymentFlightRecorder getPaymentFlightRecorder() {
+        return mPaymentFlightRecorder;
+    }
+
     public TshSecureLogger getTshSecureLogger() {
         return mTshSecureLogger;
     }
 
+    public CardArtCache getCardArtCache() {
+        return mCardArtCache;
+    }
+
+    public CardArtStore getCardArtStore() {
+        return mCardArtStore;
+    }
+
+    public CardArtLoader getCardArtLoader() {
+        return mCardArtLoader;
+    }
+
+    public CardArtDownloader getCardArtDownloader() {
+        return mCardArtDownloader;
+    }
+
+    public CardArtPrefetcher getCardArtPrefetcher() {
+        return mCardArtPrefetcher;
+    }
+
+    public CardSnapshotStore getCardSnapshotStore() {
+        return mCardSnapshotStore;
+    }
+
+    public ReplenishmentScheduler getReplenishmentScheduler() {
+        return mReplenishmentScheduler;
+    }
+
+    public ReplenishmentForecaster getReplenishmentForecaster() {
+        return mReplenishmentForecaster;
+    }
+
+    public HceRoutingState getHceRoutingState() {
+        return mHceRoutingState;
+    }
+
+    public StartupGraph getStartupGraph() {
+        return mStartupGraph;
+    }
+
     //endregion
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Declarative startup of the app components.
+ * <p/>
+ * Each node declares the nodes it depends on and whether it is on the critical path of a cold
+ * start payment. {@link #start()} runs the critical nodes with all their dependencies on the calling
+ * thread. Remaining nodes run afterwards on a background thread. Code which needs a deferred node
+ * asks for a continuation with {@link #whenReady(String, Runnable)}, which never blocks. Start, end
+ * and thread of each node are recorded in a trace.
+ */
+public final class StartupGraph {
+
+    //region Defines
+
+    private static final String TAG = StartupGraph.class.getSimpleName();
+
+    private enum NodeState {
+        PENDING,
+        RUNNING,
+        DONE
+    }
+
+    private final Map<String, Node> mNodes = new LinkedHashMap<>();
+    private final List<String> mTrace = new ArrayList<>();
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, TAG));
+    private volatile boolean mStarted;
+    private long mStartTime;
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Adds the node. Dependencies must be added before, so the graph can't contain any cycle.
+     *
+     * @param name         Unique node name.
+     * @param critical     {@code True} if the node must be ready before the first payment.
+     * @param task         Initialization of the component.
+     * @param dependencies Names of the nodes which must be finished before this one.
+     */
+    public void add(@NonNull final String name,
+                    final boolean critical,
+                    @NonNull final Runnable task,
+                    @NonNull final String... dependencies) {
+        if (mStarted) {
+            throw new IllegalStateException("Startup graph already started.");
+        }
+        if (mNodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup node: " + name);
+        }
+
+        final List<Node> nodeDependencies = new ArrayList<>();
+        for (final String loopDependency : dependencies) {
+            final Node dependency = mNodes.get(loopDependency);
+            if (dependency == null) {
+                throw new IllegalArgumentException("Startup node " + name + " depends on unknown node " + loopDependency);
+            }
+            nodeDependencies.add(dependency);
+        }
+
+        mNodes.put(name, new Node(name, critical, task, nodeDependencies));
+    }
+
+    /**
+     * Runs critical nodes on the calling thread and schedules the rest in the background.
+     */
+    public void start() {
+        mStartTime = SystemClock.elapsedRealtime();
+        mStarted = true;
+
+        for (final Node loopNode : mNodes.values()) {
+            if (loopNode.mCritical) {
+                run(loopNode, "critical");
+            }
+        }
+        AppLoggerHelper.info(TAG, "Critical path finished in " + (SystemClock.elapsedRealtime() - mStartTime) + " ms");
+
+        mExecutor.execute(() -> {
+            for (final Node loopNode : mNodes.values()) {
+                run(loopNode, "deferred");
+            }
+            AppLoggerHelper.info(TAG, "Startup finished in " + (SystemClock.elapsedRealtime() - mStartTime) + " ms. " + this);
+            mExecutor.shutdown();
+        });
+    }
+
+    /**
+     * Runs the continuation once the node has finished. Never blocks. Continuation runs right away on
+     * the calling thread if the node is done, otherwise on the thread which finishes the node.
+     *
+     * @param name         Node name.
+     * @param continuation Code which needs the node.
+     */
+    public void whenReady(@NonNull final String name,
+                          @NonNull final Runnable continuation) {
+        final Node node = mNodes.get(name);
+        if (node == null) {
+            throw new IllegalArgumentException("Unknown startup node: " + name);
+        }
+
+        synchronized (node) {
+            if (node.mState != NodeState.DONE) {
+                node.mContinuations.add(continuation);
+                return;
+            }
+        }
+        continuation.run();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        synchronized (mTrace) {
+            return "StartupGraph{" + String.join(", ", mTrace) + '}';
+        }
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private void run(@NonNull final Node node, @NonNull final String trigger) {
+        for (final Node loopDependency : node.mDependencies) {
+            run(loopDependency, trigger);
+        }
+
+        synchronized (node) {
+            // Component asking for itself while being initialized.
+            if (node.mOwner == Thread.currentThread()) {
+                return;
+            }
+            while (node.mState == NodeState.RUNNING) {
+                try {
+                    node.wait();
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (node.mState == NodeState.DONE) {
+                return;
+            }
+            node.mState = NodeState.RUNNING;
+            node.mOwner = Thread.currentThread();
+        }
+
+        final long start = SystemClock.elapsedRealtime();
+        try {
+            node.mTask.run();
+        } finally {
+            final long end = SystemClock.elapsedRealtime();
+            synchronized (mTrace) {
+                mTrace.add(String.format(Locale.US, "%s[%s, %s, +%d ms, %d ms]",
+                        node.mName, trigger, Thread.currentThread().getName(), start - mStartTime, end - start));
+            }
+
+            final List<Runnable> continuations;
+            synchronized (node) {
+                node.mState = NodeState.DONE;
+                node.mOwner = null;
+                node.notifyAll();
+                continuations = new ArrayList<>(node.mContinuations);
+                node.mContinuations.clear();
+            }
+            for (final Runnable loopContinuation : continuations) {
+                loopContinuation.run();
+            }
+        }
+    }
+
+    private static final class Node {
+        private final String mName;
+        private final boolean mCritical;
+        private final Runnable mTask;
+        private final List<Node> mDependencies;
+        // Guarded by the node lock.
+        private final List<Runnable> mContinuations = new ArrayList<>();
+        private volatile NodeState mState = NodeState.PENDING;
+        private Thread mOwner;
+
+        Node(final String name,
+             final boolean critical,
+             final Runnable task,
+             final List<Node> dependencies) {
+            mName = name;
+            mCritical = critical;
+            mTask = task;
+            mDependencies = dependencies;
+        }
+    }
+
+    //endregion
+}
@@ -172,7 +172,7 @@ public class TshEnrollment implements CardEligibilityListener, MGDigitizationLis
     public void onCPSActivationCodeAcquired(final String identifier, final byte[] code) {
         updateState(TshEnrollmentState.DIGITIZATION_ACTIVATION_CODE_AQUIRED);
 
-        SdkHelper.getInstance().getPush().getPushToken(token -> {
+        SdkHelper.getInstance().whenPushReady(() -> SdkHelper.getInstance().getPush().getPushToken(token -> {
             final EnrollingBusinessService enrollingService = ProvisioningServiceManager.getEnrollingBusinessService();
             final ProvisioningBusinessService provisioningBusinessService = ProvisioningServiceManager.getProvisioningBusinessService();
 
@@ -202,7 +202,7 @@ public class TshEnrollment implements CardEligibilityListener, MGDigitizationLis
                     AppLoggerHelper.error(TAG, "Unhandled status: " + status);
                     break;
             }
-        });
+        }));
     }
 
     @Override
@@ -220,6 +220,9 @@ public class TshEnrollment implements CardEligibilityListener, MGDigitizationLis
     @Override
     public void onComplete(final String message) {
         updateState(TshEnrollmentState.DIGITIZATION_FINISHED);
+
+        // Have the card art ready before the new card is displayed.
+        SdkHelper.getInstance().getCardArtPrefetcher().prefetch(mContext, "digitization finished");
     }
 
     @Override
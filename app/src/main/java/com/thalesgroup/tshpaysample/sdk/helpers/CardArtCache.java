@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+/**
+ * Process wide memory cache of decoded card art bitmaps keyed by digital card id.
+ * <p/>
+ * Bitmaps are stored already downsampled to the size of the view they were requested for, so
+ * binding the same card face again does not need any disk access nor decoding. Cache is limited
+ * by the total byte size of the stored bitmaps and it releases memory on {@link #onTrimMemory(int)}.
+ */
+public final class CardArtCache {
+
+    //region Defines
+
+    private static final String TAG = CardArtCache.class.getSimpleName();
+
+    /**
+     * Part of the maximum heap size the cache can use.
+     */
+    private static final int HEAP_FRACTION = 8;
+
+    private final LruCache<String, Entry> mCache;
+    private int mUndersizedCount;
+
+    //endregion
+
+    //region Life Cycle
+
+    public CardArtCache() {
+        this((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / HEAP_FRACTION));
+    }
+
+    public CardArtCache(final int maxSizeBytes) {
+        mCache = new LruCache<String, Entry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(@NonNull final String key, @NonNull final Entry value) {
+                return value.mBitmap.getAllocationByteCount();
+            }
+        };
+    }
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Returns the cached card art if it is large enough for the requested size.
+     *
+     * @param digitalCardId Digital card id.
+     * @param targetWidth   Width of the target view in pixels or 0 if not known.
+     * @param targetHeight  Height of the target view in pixels or 0 if not known.
+     * @return Cached bitmap or {@code null} if there is none or the cached one is too small.
+     */
+    @Nullable
+    public Bitmap get(@NonNull final String digitalCardId,
+                      final int targetWidth,
+                      final int targetHeight) {
+        final Entry entry = mCache.get(digitalCardId);
+        if (entry == null) {
+            return null;
+        }
+
+        // Stored bitmap was downsampled for a smaller view. Caller will decode it again.
+        if (entry.mDownsampled && (entry.mBitmap.getWidth() < targetWidth || entry.mBitmap.getHeight() < targetHeight)) {
+            synchronized (this) {
+                mUndersizedCount++;
+            }
+            return null;
+        }
+
+        return entry.mBitmap;
+    }
+
+    /**
+     * Stores the decoded card art.
+     *
+     * @param digitalCardId Digital card id.
+     * @param bitmap        Decoded card art.
+     * @param downsampled   {@code True} if the bitmap is smaller than the original image.
+     */
+    public void put(@NonNull final String digitalCardId,
+                    @NonNull final Bitmap bitmap,
+                    final boolean downsampled) {
+        mCache.put(digitalCardId, new Entry(bitmap, downsampled));
+    }
+
+    public void remove(@NonNull final String digitalCardId) {
+        mCache.remove(digitalCardId);
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Releases memory based on the level reported by {@link ComponentCallbacks2#onTrimMemory(int)}.
+     *
+     * @param level Memory trim level.
+     */
+    public void onTrimMemory(final int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            // App is in the background list and likely to be killed.
+            mCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            // System is running low or UI got hidden. Keep only the most recent cards.
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+
+        AppLoggerHelper.debug(TAG, "onTrimMemory(" + level + "): " + this);
+    }
+
+    /**
+     * Calculates the largest power of two downsampling which still keeps the image at least as
+     * large as the target size.
+     */
+    static int calculateInSampleSize(final int width,
+                                     final int height,
+                                     final int targetWidth,
+                                     final int targetHeight) {
+        int inSampleSize = 1;
+        if (targetWidth <= 0 && targetHeight <= 0) {
+            return inSampleSize;
+        }
+
+        while (width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "CardArtCache{" +
+                "size=" + mCache.size() +
+                ", maxSize=" + mCache.maxSize() +
+                ", hits=" + mCache.hitCount() +
+                ", misses=" + mCache.missCount() +
+                ", undersized=" + mUndersizedCount +
+                ", evictions=" + mCache.evictionCount() +
+                '}';
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private static final class Entry {
+        private final Bitmap mBitmap;
+        private final boolean mDownsampled;
+
+        Entry(final Bitmap bitmap, final boolean downsampled) {
+            mBitmap = bitmap;
+            mDownsampled = downsampled;
+        }
+    }
+
+    //endregion
+}
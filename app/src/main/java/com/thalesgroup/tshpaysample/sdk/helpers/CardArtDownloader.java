@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import androidx.annotation.NonNull;
+
+import com.gemalto.mfs.mwsdk.mobilegateway.MobileGatewayManager;
+import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.CardArt;
+import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.CardArtType;
+import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.CardBitmap;
+import com.gemalto.mfs.mwsdk.mobilegateway.exception.NoSuchCardException;
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Downloads card art from the backend with at most one request in flight per digital card id.
+ * <p/>
+ * Callers asking for a card which is already being downloaded are attached to the pending request
+ * and all of them get the same result. Downloaded data is stored once in the {@link CardArtStore}.
+ */
+public final class CardArtDownloader {
+
+    //region Defines
+
+    private static final String TAG = CardArtDownloader.class.getSimpleName();
+
+    public interface Delegate {
+        void onSuccess(@NonNull final byte[] data);
+
+        void onError(final String error);
+    }
+
+    private final CardArtStore mCardArtStore;
+    private final Map<String, List<Delegate>> mPendingDownloads = new HashMap<>();
+    private int mStartedCount;
+    private int mCoalescedCount;
+
+    //endregion
+
+    //region Life Cycle
+
+    public CardArtDownloader(@NonNull final CardArtStore cardArtStore) {
+        mCardArtStore = cardArtStore;
+    }
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Downloads the card art or attaches to the download already in progress for the same card.
+     * Delegate is called on the thread used by the SDK for the result.
+     *
+     * @param digitalCardId Digital card id.
+     * @param delegate      Callback with the downloaded data.
+     */
+    public void download(@NonNull final String digitalCardId,
+                         @NonNull final Delegate delegate) {
+        synchronized (mPendingDownloads) {
+            final List<Delegate> pending = mPendingDownloads.get(digitalCardId);
+            if (pending != null) {
+                pending.add(delegate);
+                mCoalescedCount++;
+                AppLoggerHelper.debug(TAG, "Joined pending card art download of " + digitalCardId + ": " + this);
+                return;
+            }
+
+            final List<Delegate> delegates = new ArrayList<>();
+            delegates.add(delegate);
+            mPendingDownloads.put(digitalCardId, delegates);
+            mStartedCount++;
+        }
+
+        try {
+            final CardArt cardArt = MobileGatewayManager.INSTANCE.getCardArt(digitalCardId);
+            cardArt.getBitmap(CardArtType.CARD_BACKGROUND_COMBINED, new AsyncHandlerCardBitmap(new AsyncHandlerCardBitmap.Delegate() {
+                @Override
+                public void onSuccess(final CardBitmap value) {
+                    // Store current data for future use.
+                    mCardArtStore.put(digitalCardId, value.getResource());
+
+                    for (final Delegate loopDelegate : finish(digitalCardId)) {
+                        loopDelegate.onSuccess(value.getResource());
+                    }
+                }
+
+                @Override
+                public void onError(final String error) {
+                    AppLoggerHelper.error(TAG, error);
+                    for (final Delegate loopDelegate : finish(digitalCardId)) {
+                        loopDelegate.onError(error);
+                    }
+                }
+            }));
+        } catch (final NoSuchCardException exception) {
+            AppLoggerHelper.error(TAG, exception.getMessage());
+            for (final Delegate loopDelegate : finish(digitalCardId)) {
+                loopDelegate.onError(exception.getMessage());
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        synchronized (mPendingDownloads) {
+            return "CardArtDownloader{" +
+                    "pending=" + mPendingDownloads.size() +
+                    ", started=" + mStartedCount +
+                    ", coalesced=" + mCoalescedCount +
+                    '}';
+        }
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    @NonNull
+    private List<Delegate> finish(@NonNull final String digitalCardId) {
+        synchronized (mPendingDownloads) {
+            final List<Delegate> delegates = mPendingDownloads.remove(digitalCardId);
+            return delegates != null ? delegates : new ArrayList<>();
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads and decodes card art on a small background executor and delivers the result on the main thread.
+ * <p/>
+ * Decoded bitmaps are downsampled to the target view size and stored in the {@link CardArtCache}.
+ * Requests which are no longer needed by the caller (e.g. page was rebound to another card) are
+ * skipped before any file access or decoding and their results are never delivered.
+ */
+public final class CardArtLoader {
+
+    //region Defines
+
+    private static final String TAG = CardArtLoader.class.getSimpleName();
+
+    private static final int THREAD_COUNT = 2;
+
+    /**
+     * Card art files are small images. Anything bigger is considered as corrupted.
+     */
+    private static final long MAX_FILE_SIZE = 8 * 1024 * 1024;
+
+    public interface Callback {
+        /**
+         * Called on the main thread with the loaded bitmap.
+         *
+         * @param bitmap Decoded bitmap or {@code null} if there is no stored card art or it can't be decoded.
+         */
+        void onLoaded(@Nullable final Bitmap bitmap);
+
+        /**
+         * @return {@code True} if the result is not needed anymore. Checked before each step of the loading.
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private final CardArtCache mCardArtCache;
+    private final CardArtStore mCardArtStore;
+    private final ExecutorService mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    //endregion
+
+    //region Life Cycle
+
+    public CardArtLoader(@NonNull final CardArtCache cardArtCache,
+                         @NonNull final CardArtStore cardArtStore) {
+        mCardArtCache = cardArtCache;
+        mCardArtStore = cardArtStore;
+        mExecutor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "CardArtLoader-" + mCount.incrementAndGet());
+            }
+        });
+    }
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Loads the card art file from the {@link CardArtStore}.
+     *
+     * @param digitalCardId Digital card id.
+     * @param targetWidth   Width of the target view in pixels or 0 for full size image.
+     * @param targetHeight  Height of the target view in pixels or 0 for full size image.
+     * @param callback      Callback with the result.
+     */
+    public void load(@NonNull final String digitalCardId,
+                     final int targetWidth,
+                     final int targetHeight,
+                     @NonNull final Callback callback) {
+        mExecutor.execute(() -> {
+            if (callback.isCancelled()) {
+                return;
+            }
+
+            final File file = mCardArtStore.getFile(digitalCardId);
+            final byte[] data = file != null ? readFile(file) : null;
+            decodeAndDeliver(digitalCardId, data, targetWidth, targetHeight, callback);
+        });
+    }
+
+    /**
+     * Decodes already available card art data, e.g. just downloaded from the backend.
+     *
+     * @param digitalCardId Digital card id.
+     * @param data          Encoded image data.
+     * @param targetWidth   Width of the target view in pixels or 0 for full size image.
+     * @param targetHeight  Height of the target view in pixels or 0 for full size image.
+     * @param callback      Callback with the result.
+     */
+    public void decode(@NonNull final String digitalCardId,
+                       @NonNull final byte[] data,
+                       final int targetWidth,
+                       final int targetHeight,
+                       @NonNull final Callback callback) {
+        mExecutor.execute(() -> decodeAndDeliver(digitalCardId, data, targetWidth, targetHeight, callback));
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private void decodeAndDeliver(@NonNull final String digitalCardId,
+                                  @Nullable final byte[] data,
+                                  final int targetWidth,
+                                  final int targetHeight,
+                                  @NonNull final Callback callback) {
+        if (callback.isCancelled()) {
+            return;
+        }
+
+        // Other request might have decoded the same card meanwhile.
+        Bitmap bitmap = mCardArtCache.get(digitalCardId, targetWidth, targetHeight);
+        if (bitmap == null && data != null && data.length > 0) {
+            bitmap = decodeBitmap(digitalCardId, data, targetWidth, targetHeight);
+        }
+
+        final Bitmap result = bitmap;
+        mMainHandler.post(() -> {
+            if (!callback.isCancelled()) {
+                callback.onLoaded(result);
+            }
+        });
+    }
+
+    @Nullable
+    private Bitmap decodeBitmap(@NonNull final String digitalCardId,
+                                @NonNull final byte[] data,
+                                final int targetWidth,
+                                final int targetHeight) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            AppLoggerHelper.warn(TAG, "Unable to decode card art of " + digitalCardId);
+            return null;
+        }
+
+        options.inSampleSize = CardArtCache.calculateInSampleSize(options.outWidth, options.outHeight, targetWidth, targetHeight);
+        options.inJustDecodeBounds = false;
+
+        final Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (bitmap == null) {
+            AppLoggerHelper.warn(TAG, "Unable to decode card art of " + digitalCardId);
+            return null;
+        }
+
+        // Duplicate decode which lost the race with another request. Share the cached one.
+        final Bitmap current = mCardArtCache.get(digitalCardId, targetWidth, targetHeight);
+        if (current != null) {
+            return current;
+        }
+
+        mCardArtCache.put(digitalCardId, bitmap, options.inSampleSize > 1);
+        return bitmap;
+    }
+
+    @Nullable
+    private static byte[] readFile(@NonNull final File file) {
+        try (FileInputStream inputStream = new FileInputStream(file);
+             FileChannel channel = inputStream.getChannel()) {
+            final long size = channel.size();
+            if (size <= 0 || size > MAX_FILE_SIZE) {
+                AppLoggerHelper.warn(TAG, "readFile(): Unexpected size " + size + " of " + file.getName());
+                return null;
+            }
+
+            // Exact size buffer read in as few calls as the file system allows.
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full or end of file.
+            }
+            return buffer.position() == size ? buffer.array() : null;
+        } catch (final IOException exception) {
+            // It's not important in sample app. In worst case it will download card art again.
+            AppLoggerHelper.warn(TAG, "readFile(): " + exception.getMessage());
+        }
+
+        return null;
+    }
+
+    //endregion
+}
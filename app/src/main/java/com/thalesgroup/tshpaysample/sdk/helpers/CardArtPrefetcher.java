@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardManager;
+import com.gemalto.mfs.mwsdk.utils.async.AbstractAsyncHandler;
+import com.gemalto.mfs.mwsdk.utils.async.AsyncResult;
+import com.thalesgroup.tshpaysample.sdk.SdkHelper;
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads missing card art in the background so it's ready before the card is displayed.
+ * <p/>
+ * Default card is fetched first and at most {@link #MAX_CONCURRENT_DOWNLOADS} downloads run at once.
+ * On metered network only the default card art is fetched, the rest is downloaded when displayed.
+ * Prefetch requested while another one is running is merged into it.
+ */
+public final class CardArtPrefetcher {
+
+    //region Defines
+
+    private static final String TAG = CardArtPrefetcher.class.getSimpleName();
+
+    private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+
+    private final CardArtStore mCardArtStore;
+    private final CardArtDownloader mCardArtDownloader;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, TAG));
+    private final Deque<String> mQueue = new ArrayDeque<>();
+    private boolean mRunning;
+    private boolean mRunRequested;
+    private int mInFlight;
+
+    //endregion
+
+    //region Life Cycle
+
+    public CardArtPrefetcher(@NonNull final CardArtStore cardArtStore,
+                             @NonNull final CardArtDownloader cardArtDownloader) {
+        mCardArtStore = cardArtStore;
+        mCardArtDownloader = cardArtDownloader;
+    }
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Starts downloading the card art of all cards which do not have it stored yet.
+     *
+     * @param context Android context.
+     * @param reason  Trigger of the prefetch for logging.
+     */
+    public void prefetch(@NonNull final Context context,
+                         @NonNull final String reason) {
+        synchronized (this) {
+            if (mRunning) {
+                // Cards will be listed again once the current run is finished.
+                mRunRequested = true;
+                return;
+            }
+            mRunning = true;
+        }
+
+        final ConnectivityManager connectivityManager = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        final boolean metered = connectivityManager == null || connectivityManager.isActiveNetworkMetered();
+        AppLoggerHelper.debug(TAG, "Prefetching card art (" + reason + ", metered=" + metered + ")");
+
+        DigitalizedCardManager.getAllCards(new AbstractAsyncHandler<String[]>() {
+            @Override
+            public void onComplete(final AsyncResult<String[]> asyncResult) {
+                if (!asyncResult.isSuccessful()) {
+                    AppLoggerHelper.warn(TAG, "Failed to list cards: " + asyncResult.getErrorMessage());
+                    finishRun(context);
+                    return;
+                }
+
+                // Checking the store may touch the disk.
+                final String[] tokenizedCardIds = asyncResult.getResult();
+                mExecutor.execute(() -> enqueueMissing(tokenizedCardIds, metered, context));
+            }
+        });
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private void enqueueMissing(@Nullable final String[] tokenizedCardIds,
+                                final boolean metered,
+                                @NonNull final Context context) {
+        final String defaultCardId = SdkHelper.getInstance().getTshPaymentListener().getDefaultCardId().getValue();
+        final List<String> missing = new ArrayList<>();
+        String defaultMissing = null;
+
+        if (tokenizedCardIds != null) {
+            for (final String loopCardId : tokenizedCardIds) {
+                final String digitalCardId = DigitalizedCardManager.getDigitalCardId(loopCardId);
+                if (digitalCardId == null || mCardArtStore.contains(digitalCardId)) {
+                    continue;
+                }
+
+                if (loopCardId.equals(defaultCardId)) {
+                    defaultMissing = digitalCardId;
+                } else if (!metered) {
+                    missing.add(digitalCardId);
+                }
+            }
+        }
+
+        synchronized (this) {
+            if (defaultMissing != null) {
+                mQueue.addFirst(defaultMissing);
+            }
+            mQueue.addAll(missing);
+            AppLoggerHelper.debug(TAG, "Card art to prefetch: " + mQueue.size());
+        }
+
+        startNext(context);
+    }
+
+    private void startNext(@NonNull final Context context) {
+        final List<String> toStart = new ArrayList<>();
+        final boolean finished;
+        synchronized (this) {
+            while (mInFlight < MAX_CONCURRENT_DOWNLOADS && !mQueue.isEmpty()) {
+                toStart.add(mQueue.pollFirst());
+                mInFlight++;
+            }
+            finished = mInFlight == 0 && mQueue.isEmpty();
+        }
+
+        if (finished) {
+            finishRun(context);
+            return;
+        }
+
+        for (final String digitalCardId : toStart) {
+            mCardArtDownloader.download(digitalCardId, new CardArtDownloader.Delegate() {
+                @Override
+                public void onSuccess(@NonNull final byte[] data) {
+                    onDownloadFinished(context);
+                }
+
+                @Override
+                public void onError(final String error) {
+                    // Card page will try again when it's displayed.
+                    onDownloadFinished(context);
+                }
+            });
+        }
+    }
+
+    private void onDownloadFinished(@NonNull final Context context) {
+        synchronized (this) {
+            mInFlight--;
+        }
+        startNext(context);
+    }
+
+    private void finishRun(@NonNull final Context context) {
+        final boolean runAgain;
+        synchronized (this) {
+            mRunning = false;
+            runAgain = mRunRequested;
+            mRunRequested = false;
+        }
+
+        if (runAgain) {
+            prefetch(context, "requested during previous run");
+        } else {
+            AppLoggerHelper.debug(TAG, "Prefetch finished: " + mCardArtStore);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,620 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Managed storage of downloaded card art files.
+ * <p/>
+ * Files are kept in a dedicated directory together with a small binary index holding for each card
+ * the file size, last access time, fetch time and content hash. The store keeps its total size under
+ * {@link #DEFAULT_MAX_SIZE_BYTES} by evicting the least recently used files and reports files older
+ * than {@link #DEFAULT_TTL_MS} for revalidation. Files of deleted cards are purged together with
+ * the matching entries of the {@link CardArtCache}.
+ * <p/>
+ * Disk writes and syncs happen outside of the lock, the index on its own background thread. Lookups from
+ * the UI thread therefore only wait for the in-memory bookkeeping.
+ */
+public final class CardArtStore {
+
+    //region Defines
+
+    private static final String TAG = CardArtStore.class.getSimpleName();
+
+    private static final String DIRECTORY_NAME = "card_art";
+    private static final String INDEX_FILE_NAME = "index.bin";
+    private static final String FILE_SUFFIX = ".img";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private static final int INDEX_MAGIC = 0x43415254; // "CART"
+    private static final int INDEX_VERSION = 1;
+
+    /**
+     * Maximum total size of all stored card art files.
+     */
+    public static final long DEFAULT_MAX_SIZE_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Age after which a stored card art is downloaded again to pick up updates from the issuer.
+     */
+    public static final long DEFAULT_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private final CardArtCache mCardArtCache;
+    private final long mMaxSizeBytes;
+    private final long mTtlMs;
+
+    // Ordered from the least recently used card. Access moves the card to the end.
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>();
+    private final ExecutorService mIndexExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, TAG));
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Fetch time of the oldest stored art, published without the lock for the UI thread. Zero until the index is loaded.
+    private volatile long mOldestFetchTime;
+    private Context mContext;
+    private File mDirectory;
+    private boolean mIndexLoaded;
+    private boolean mIndexWriteScheduled;
+    private long mTotalSize;
+    private int mEvictionCount;
+
+    //endregion
+
+    //region Life Cycle
+
+    public CardArtStore(@NonNull final CardArtCache cardArtCache) {
+        this(cardArtCache, DEFAULT_MAX_SIZE_BYTES, DEFAULT_TTL_MS);
+    }
+
+    public CardArtStore(@NonNull final CardArtCache cardArtCache,
+                        final long maxSizeBytes,
+                        final long ttlMs) {
+        mCardArtCache = cardArtCache;
+        mMaxSizeBytes = maxSizeBytes;
+        mTtlMs = ttlMs;
+    }
+
+    /**
+     * Only stores the context. Index is loaded on the background thread, outside of the application start.
+     */
+    public synchronized void init(@NonNull final Context context) {
+        mContext = context.getApplicationContext();
+        mDirectory = new File(mContext.getFilesDir(), DIRECTORY_NAME);
+        mIndexExecutor.execute(this::loadIndex);
+    }
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Returns the stored card art file and marks it as recently used.
+     * File written by previous application version is moved into the store on the first access.
+     *
+     * @param digitalCardId Digital card id.
+     * @return Card art file or {@code null} if there is none.
+     */
+    @Nullable
+    public synchronized File getFile(@NonNull final String digitalCardId) {
+        final Entry entry = findEntry(digitalCardId);
+        if (entry == null) {
+            return null;
+        }
+
+        entry.mLastAccess = System.currentTimeMillis();
+        mEntries.remove(digitalCardId);
+        mEntries.put(digitalCardId, entry);
+        return fileOf(digitalCardId);
+    }
+
+    /**
+     * Checks presence of the card art without marking it as recently used.
+     *
+     * @param digitalCardId Digital card id.
+     * @return {@code True} if the card art is stored.
+     */
+    public synchronized boolean contains(@NonNull final String digitalCardId) {
+        return findEntry(digitalCardId) != null;
+    }
+
+    /**
+     * Runs the action on the main thread if the stored card art is older than the TTL and should be downloaded again.
+     * Safe to call from the UI thread. It never waits for the lock, the decision itself is made on the index thread.
+     *
+     * @param digitalCardId Digital card id.
+     * @param action        Action to run when the card art needs revalidation.
+     */
+    public void whenRevalidationNeeded(@NonNull final String digitalCardId,
+                                       @NonNull final Runnable action) {
+        if (System.currentTimeMillis() - mOldestFetchTime <= mTtlMs) {
+            // Even the oldest art is still fresh.
+            return;
+        }
+
+        mIndexExecutor.execute(() -> {
+            if (needsRevalidation(digitalCardId)) {
+                mMainHandler.post(action);
+            }
+        });
+    }
+
+    /**
+     * Stores the downloaded card art atomically through a temporary file.
+     * Memory cache of the card is invalidated if the content changed.
+     *
+     * @param digitalCardId Digital card id.
+     * @param data          Encoded image data.
+     * @return {@code True} if the content differs from the previously stored one, including the first
+     * art stored for the card. {@code False} if it's the same or it could not be stored.
+     */
+    public boolean put(@NonNull final String digitalCardId,
+                       @NonNull final byte[] data) {
+        final byte[] hash = hash(data);
+        final long now = System.currentTimeMillis();
+        final File directory;
+        synchronized (this) {
+            ensureIndexLoaded();
+
+            final Entry current = mEntries.get(digitalCardId);
+            if (current != null && Arrays.equals(current.mHash, hash) && fileOf(digitalCardId).exists()) {
+                // Same art as before. Only the revalidation time moves.
+                current.mFetchTime = now;
+                current.mLastAccess = now;
+                scheduleIndexWrite();
+                return false;
+            }
+            directory = mDirectory;
+        }
+
+        // Slow part with the sync goes without the lock.
+        final File tempFile = writeTempFile(directory, digitalCardId, data);
+        if (tempFile == null) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (!tempFile.renameTo(fileOf(digitalCardId))) {
+                AppLoggerHelper.error(TAG, "put(): Failed to rename " + tempFile.getName());
+                tempFile.delete();
+                return false;
+            }
+
+            if (removeEntry(digitalCardId)) {
+                mCardArtCache.remove(digitalCardId);
+            }
+            final Entry entry = new Entry(data.length, now, now, hash);
+            mEntries.put(digitalCardId, entry);
+            mTotalSize += entry.mSize;
+
+            evictToSize(digitalCardId);
+            scheduleIndexWrite();
+            return true;
+        }
+    }
+
+    /**
+     * Removes the card art of the deleted card both from the storage and memory.
+     */
+    public synchronized void remove(@NonNull final String digitalCardId) {
+        ensureIndexLoaded();
+
+        mCardArtCache.remove(digitalCardId);
+        if (removeEntry(digitalCardId) | fileOf(digitalCardId).delete()) {
+            AppLoggerHelper.debug(TAG, "Removed card art of " + digitalCardId);
+        }
+        scheduleIndexWrite();
+    }
+
+    /**
+     * Removes card art of all cards which are not in the given list.
+     * Used when the card was deleted remotely and its digital card id is not known anymore.
+     *
+     * @param digitalCardIds Digital card ids of existing cards.
+     */
+    public synchronized void retainAll(@NonNull final Collection<String> digitalCardIds) {
+        ensureIndexLoaded();
+
+        final List<String> orphans = new ArrayList<>();
+        for (final String loopCardId : mEntries.keySet()) {
+            if (!digitalCardIds.contains(loopCardId)) {
+                orphans.add(loopCardId);
+            }
+        }
+
+        for (final String loopCardId : orphans) {
+            mCardArtCache.remove(loopCardId);
+            removeEntry(loopCardId);
+            fileOf(loopCardId).delete();
+        }
+
+        if (!orphans.isEmpty()) {
+            AppLoggerHelper.debug(TAG, "Removed card art of " + orphans.size() + " deleted cards");
+            scheduleIndexWrite();
+        }
+    }
+
+    /**
+     * Removes all the card art. Used together with wiping of the SDK data.
+     */
+    public synchronized void clear() {
+        mCardArtCache.clear();
+        mEntries.clear();
+        mTotalSize = 0;
+        mIndexLoaded = true;
+
+        final File[] files = mDirectory != null ? mDirectory.listFiles() : null;
+        if (files != null) {
+            for (final File loopFile : files) {
+                loopFile.delete();
+            }
+        }
+        AppLoggerHelper.debug(TAG, "Removed all card art");
+    }
+
+    /**
+     * Persists the last access times which are otherwise written only with the next change.
+     * Index is written on the background thread, the call does not wait for it.
+     */
+    public synchronized void flush() {
+        if (mIndexLoaded) {
+            scheduleIndexWrite();
+        }
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "CardArtStore{" +
+                "count=" + mEntries.size() +
+                ", totalSize=" + mTotalSize +
+                ", maxSize=" + mMaxSizeBytes +
+                ", evictions=" + mEvictionCount +
+                '}';
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private synchronized boolean needsRevalidation(@NonNull final String digitalCardId) {
+        ensureIndexLoaded();
+
+        final Entry entry = mEntries.get(digitalCardId);
+        return entry != null && System.currentTimeMillis() - entry.mFetchTime > mTtlMs;
+    }
+
+    private static final class Entry {
+        private final long mSize;
+        private long mLastAccess;
+        private long mFetchTime;
+        private final byte[] mHash;
+
+        Entry(final long size, final long lastAccess, final long fetchTime, final byte[] hash) {
+            mSize = size;
+            mLastAccess = lastAccess;
+            mFetchTime = fetchTime;
+            mHash = hash;
+        }
+    }
+
+    @Nullable
+    private Entry findEntry(@NonNull final String digitalCardId) {
+        ensureIndexLoaded();
+
+        final Entry entry = mEntries.get(digitalCardId);
+        if (entry == null) {
+            return migrateLegacyFile(digitalCardId);
+        }
+
+        if (!fileOf(digitalCardId).exists()) {
+            // Somebody removed the file. Forget it so it will be downloaded again.
+            removeEntry(digitalCardId);
+            scheduleIndexWrite();
+            return null;
+        }
+
+        return entry;
+    }
+
+    private File fileOf(@NonNull final String digitalCardId) {
+        return new File(mDirectory, digitalCardId + FILE_SUFFIX);
+    }
+
+    private boolean removeEntry(@NonNull final String digitalCardId) {
+        final Entry entry = mEntries.remove(digitalCardId);
+        if (entry != null) {
+            mTotalSize -= entry.mSize;
+            return true;
+        }
+        return false;
+    }
+
+    private void evictToSize(@Nullable final String keepCardId) {
+        final Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mTotalSize > mMaxSizeBytes && iterator.hasNext()) {
+            final Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(keepCardId)) {
+                continue;
+            }
+
+            iterator.remove();
+            mTotalSize -= eldest.getValue().mSize;
+            mEvictionCount++;
+            fileOf(eldest.getKey()).delete();
+            AppLoggerHelper.debug(TAG, "Evicted card art of " + eldest.getKey() + ": " + this);
+        }
+    }
+
+    @Nullable
+    private Entry migrateLegacyFile(@NonNull final String digitalCardId) {
+        final File legacyFile = mContext.getFileStreamPath(digitalCardId);
+        if (!legacyFile.isFile()) {
+            return null;
+        }
+
+        final byte[] data = readFile(legacyFile);
+        final File file = fileOf(digitalCardId);
+        if (data == null || !legacyFile.renameTo(file)) {
+            legacyFile.delete();
+            return null;
+        }
+
+        // Unknown download time. Let it be revalidated right away.
+        final Entry entry = new Entry(data.length, System.currentTimeMillis(), 0, hash(data));
+        mEntries.put(digitalCardId, entry);
+        mTotalSize += entry.mSize;
+        evictToSize(digitalCardId);
+        scheduleIndexWrite();
+
+        AppLoggerHelper.debug(TAG, "Migrated legacy card art of " + digitalCardId);
+        return entry;
+    }
+
+    private synchronized void loadIndex() {
+        ensureIndexLoaded();
+    }
+
+    private void ensureIndexLoaded() {
+        if (mIndexLoaded) {
+            return;
+        }
+        if (mDirectory == null) {
+            throw new IllegalStateException("CardArtStore is not initialized.");
+        }
+
+        mIndexLoaded = true;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            AppLoggerHelper.error(TAG, "Unable to create " + mDirectory);
+            return;
+        }
+
+        final File indexFile = new File(mDirectory, INDEX_FILE_NAME);
+        if (indexFile.exists()) {
+            readIndex(indexFile);
+        }
+        sweepDirectory();
+    }
+
+    private void readIndex(@NonNull final File indexFile) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION) {
+                throw new IOException("Unknown index format");
+            }
+
+            final int count = input.readInt();
+            long oldestFetchTime = Long.MAX_VALUE;
+            for (int index = 0; index < count; index++) {
+                final String digitalCardId = input.readUTF();
+                final long size = input.readLong();
+                final long lastAccess = input.readLong();
+                final long fetchTime = input.readLong();
+                final byte[] hash = new byte[input.readUnsignedByte()];
+                input.readFully(hash);
+
+                // Entries are written from the least recently used one, which keeps the access order.
+                if (fileOf(digitalCardId).exists()) {
+                    mEntries.put(digitalCardId, new Entry(size, lastAccess, fetchTime, hash));
+                    mTotalSize += size;
+                    oldestFetchTime = Math.min(oldestFetchTime, fetchTime);
+                }
+            }
+            mOldestFetchTime = oldestFetchTime;
+        } catch (final IOException exception) {
+            // Files without index entry are not reachable. Start from scratch.
+            AppLoggerHelper.warn(TAG, "Unable to read card art index: " + exception.getMessage());
+            clear();
+        }
+    }
+
+    /**
+     * Must be called with the lock held. Deletes leftovers of writes interrupted by process death and
+     * adopts art files missing in the index, e.g. when the index write did not make it, so they count
+     * towards the size limit.
+     */
+    private void sweepDirectory() {
+        final File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        final LinkedHashMap<String, Entry> adopted = new LinkedHashMap<>();
+        long adoptedSize = 0;
+        for (final File loopFile : files) {
+            final String name = loopFile.getName();
+            if (name.equals(INDEX_FILE_NAME)) {
+                continue;
+            }
+
+            final String digitalCardId = name.endsWith(FILE_SUFFIX) ? name.substring(0, name.length() - FILE_SUFFIX.length()) : null;
+            if (digitalCardId == null || digitalCardId.isEmpty()) {
+                // Temporary or unknown file.
+                loopFile.delete();
+            } else if (!mEntries.containsKey(digitalCardId)) {
+                // Unknown hash and download time. Let it be revalidated with next access.
+                adopted.put(digitalCardId, new Entry(loopFile.length(), loopFile.lastModified(), 0, new byte[0]));
+                adoptedSize += loopFile.length();
+            }
+        }
+
+        if (adopted.isEmpty()) {
+            return;
+        }
+
+        // Adopted files were not used since the index write, so they go first in the eviction order.
+        final int adoptedCount = adopted.size();
+        adopted.putAll(mEntries);
+        mEntries.clear();
+        mEntries.putAll(adopted);
+        mTotalSize += adoptedSize;
+        evictToSize(null);
+        scheduleIndexWrite();
+        AppLoggerHelper.debug(TAG, "Adopted " + adoptedCount + " card art files: " + this);
+    }
+
+    /**
+     * Called with the lock held. Subsequent changes are coalesced into a single write.
+     */
+    private void scheduleIndexWrite() {
+        if (!mIndexWriteScheduled) {
+            mIndexWriteScheduled = true;
+            mIndexExecutor.execute(this::writeIndex);
+        }
+    }
+
+    /**
+     * Runs on the index thread only. Takes a snapshot of the entries under the lock and writes it without it.
+     */
+    private void writeIndex() {
+        final File directory;
+        final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        synchronized (this) {
+            mIndexWriteScheduled = false;
+            directory = mDirectory;
+            try (DataOutputStream output = new DataOutputStream(snapshot)) {
+                output.writeInt(INDEX_MAGIC);
+                output.writeInt(INDEX_VERSION);
+                output.writeInt(mEntries.size());
+                long oldestFetchTime = Long.MAX_VALUE;
+                for (final Map.Entry<String, Entry> loopEntry : mEntries.entrySet()) {
+                    final Entry entry = loopEntry.getValue();
+                    oldestFetchTime = Math.min(oldestFetchTime, entry.mFetchTime);
+                    output.writeUTF(loopEntry.getKey());
+                    output.writeLong(entry.mSize);
+                    output.writeLong(entry.mLastAccess);
+                    output.writeLong(entry.mFetchTime);
+                    output.writeByte(entry.mHash.length);
+                    output.write(entry.mHash);
+                }
+                // Every change of the entries ends up here, so the published value follows them.
+                mOldestFetchTime = oldestFetchTime;
+            } catch (final IOException exception) {
+                // Memory stream does not fail.
+                throw new IllegalStateException(exception);
+            }
+        }
+
+        if (directory == null || (!directory.isDirectory() && !directory.mkdirs())) {
+            return;
+        }
+
+        final File indexFile = new File(directory, INDEX_FILE_NAME);
+        final File tempFile = new File(directory, INDEX_FILE_NAME + TEMP_FILE_SUFFIX);
+        try (FileOutputStream fileStream = new FileOutputStream(tempFile)) {
+            snapshot.writeTo(fileStream);
+            fileStream.getFD().sync();
+        } catch (final IOException exception) {
+            AppLoggerHelper.error(TAG, "Unable to write card art index: " + exception.getMessage());
+            tempFile.delete();
+            return;
+        }
+
+        if (!tempFile.renameTo(indexFile)) {
+            AppLoggerHelper.error(TAG, "Unable to replace card art index.");
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Writes and syncs the data into a unique temporary file, so concurrent downloads of the same card do not clash.
+     *
+     * @return Temporary file to be renamed or {@code null} in case of failure.
+     */
+    @Nullable
+    private static File writeTempFile(@NonNull final File directory,
+                                      @NonNull final String digitalCardId,
+                                      @NonNull final byte[] data) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            AppLoggerHelper.error(TAG, "Unable to create " + directory);
+            return null;
+        }
+
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(digitalCardId, TEMP_FILE_SUFFIX, directory);
+            try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+                outputStream.write(data);
+                outputStream.getFD().sync();
+            }
+            return tempFile;
+        } catch (final IOException exception) {
+            // It's not important in sample app. In worst case it will download card art again.
+            AppLoggerHelper.error(TAG, "writeTempFile(): " + exception.getMessage());
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return null;
+        }
+    }
+
+    @Nullable
+    private static byte[] readFile(@NonNull final File file) {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            final byte[] data = new byte[(int) file.length()];
+            input.readFully(data);
+            return data;
+        } catch (final IOException exception) {
+            AppLoggerHelper.warn(TAG, "readFile(): " + exception.getMessage());
+            return null;
+        }
+    }
+
+    @NonNull
+    private static byte[] hash(@NonNull final byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (final NoSuchAlgorithmException exception) {
+            // SHA-256 is mandatory on all Android versions.
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    //endregion
+}
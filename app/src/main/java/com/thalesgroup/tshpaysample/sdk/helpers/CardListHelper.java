@@ -15,29 +15,53 @@ import com.gemalto.mfs.mwsdk.cdcvm.DeviceKeyguardSupport;
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCard;
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardErrorCodes;
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardManager;
-import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardStatus;
 import com.gemalto.mfs.mwsdk.dcm.cdcvm.DeviceCVMManager;
 import com.gemalto.mfs.mwsdk.exception.DeviceCVMException;
 import com.gemalto.mfs.mwsdk.payment.CHVerificationMethod;
 import com.gemalto.mfs.mwsdk.utils.async.AbstractAsyncHandler;
 import com.gemalto.mfs.mwsdk.utils.async.AsyncResult;
+import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Loads all digitalized cards together with their {@link CardSnapshot}s.
+ * <p/>
+ * Cards with a valid snapshot in the {@link CardSnapshotStore} cost no SDK call. Remaining snapshots
+ * are requested in parallel with at most {@link #DEFAULT_MAX_CONCURRENCY} (or the value given to the
+ * constructor) requests in flight. Result keeps the order of the card ids returned by
+ * {@link DigitalizedCardManager#getAllCards}. Cards which snapshot failed to load are reported one by one
+ * through {@link Delegate#onCardError} and left out of the result.
+ */
 public final class CardListHelper extends AbstractAsyncHandler<String[]> {
 
     //region Defines
 
+    private static final String TAG = CardListHelper.class.getSimpleName();
+
+    /**
+     * Default number of card snapshot requests running at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
     public interface Delegate {
         void onSuccess(final List<CardWrapper> cardWrappers);
 
         void onError(final String error);
+
+        /**
+         * Called for each card which snapshot could not be loaded, before {@link #onSuccess(List)}.
+         */
+        default void onCardError(final String digitalizedCardId, final String error) {
+            AppLoggerHelper.error(TAG, "Failed to load card snapshot of " + digitalizedCardId + ": " + error);
+        }
     }
 
     private final Delegate mDelegate;
     private final Context mContext;
+    private final int mMaxConcurrency;
 
     //endregion
 
@@ -45,10 +69,21 @@ public final class CardListHelper extends AbstractAsyncHandler<String[]> {
 
     public CardListHelper(@NonNull final Context context,
                           @NonNull final Delegate delegate) {
+        this(context, delegate, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    public CardListHelper(@NonNull final Context context,
+                          @NonNull final Delegate delegate,
+                          final int maxConcurrency) {
         super();
 
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be positive: " + maxConcurrency);
+        }
+
         mContext = context;
         mDelegate = delegate;
+        mMaxConcurrency = maxConcurrency;
     }
 
     //endregion
@@ -66,17 +101,7 @@ public final class CardListHelper extends AbstractAsyncHandler<String[]> {
     @Override
     public void onComplete(final AsyncResult<String[]> asyncResult) {
         if (asyncResult.isSuccessful()) {
-            final List<CardWrapper> retValue = new ArrayList<>();
-            for (final String loopCard : asyncResult.getResult()) {
-                final DigitalizedCard digitalizedCard = DigitalizedCardManager.getDigitalizedCard(loopCard);
-                final AsyncResult<DigitalizedCardStatus> digitalizedCardStatusAsyncResult = digitalizedCard.getCardState(null).waitToComplete();
-                if(digitalizedCardStatusAsyncResult.isSuccessful()){
-                    retValue.add(new CardWrapper(digitalizedCard, digitalizedCardStatusAsyncResult.getResult()));
-                } else {
-                    AppLoggerHelper.error("CardListHelper", "Failed to load card status: " + digitalizedCardStatusAsyncResult.getErrorMessage());
-                }
-            }
-            mDelegate.onSuccess(retValue);
+            new CardStateLoader(asyncResult.getResult()).start();
         } else {
             final int errorCode = asyncResult.getErrorCode();
 
@@ -113,4 +138,112 @@ public final class CardListHelper extends AbstractAsyncHandler<String[]> {
     }
     //endregion
 
+    //region Private Helpers
+
+    /**
+     * Fans out the card snapshot requests for one {@link DigitalizedCardManager#getAllCards} result.
+     * SDK may call the handlers from any thread, so all shared state is guarded by the loader itself.
+     */
+    private final class CardStateLoader {
+        private final String[] mCardIds;
+        private final CardWrapper[] mCardWrappers;
+        private final String[] mErrors;
+        private final long mStartTime;
+        private int mNextIndex;
+        private int mRemaining;
+        private long mLatencySum;
+        private long mLatencyMax;
+
+        CardStateLoader(final String[] cardIds) {
+            mCardIds = cardIds == null ? new String[0] : cardIds;
+            mCardWrappers = new CardWrapper[mCardIds.length];
+            mErrors = new String[mCardIds.length];
+            mRemaining = mCardIds.length;
+            mStartTime = System.nanoTime();
+        }
+
+        void start() {
+            if (mCardIds.length == 0) {
+                mDelegate.onSuccess(new ArrayList<>());
+                return;
+            }
+
+            for (int index = 0; index < Math.min(mMaxConcurrency, mCardIds.length); index++) {
+                requestNext();
+            }
+        }
+
+        private void requestNext() {
+            final int index;
+            synchronized (this) {
+                if (mNextIndex >= mCardIds.length) {
+                    return;
+                }
+                index = mNextIndex++;
+            }
+
+            final long requestTime = System.nanoTime();
+            final DigitalizedCard digitalizedCard = DigitalizedCardManager.getDigitalizedCard(mCardIds[index]);
+            SdkHelper.getInstance().getCardSnapshotStore().get(mCardIds[index], new CardSnapshotStore.Delegate() {
+                @Override
+                public void onSuccess(@NonNull final CardSnapshot snapshot) {
+                    onCardFinished(index, requestTime, new CardWrapper(digitalizedCard, snapshot), null);
+                }
+
+                @Override
+                public void onError(final String error) {
+                    onCardFinished(index, requestTime, null, error);
+                }
+            });
+        }
+
+        private void onCardFinished(final int index,
+                                    final long requestTime,
+                                    final CardWrapper cardWrapper,
+                                    final String error) {
+            final long latency = System.nanoTime() - requestTime;
+            final boolean finished;
+            synchronized (this) {
+                mCardWrappers[index] = cardWrapper;
+                mErrors[index] = error;
+                mLatencySum += latency;
+                mLatencyMax = Math.max(mLatencyMax, latency);
+                finished = --mRemaining == 0;
+            }
+
+            if (finished) {
+                deliver();
+            } else {
+                requestNext();
+            }
+        }
+
+        private void deliver() {
+            // All the writes happened before the last decrement of mRemaining under the same lock.
+            final List<CardWrapper> retValue = new ArrayList<>(mCardIds.length);
+            for (int index = 0; index < mCardIds.length; index++) {
+                if (mCardWrappers[index] != null) {
+                    retValue.add(mCardWrappers[index]);
+                } else {
+                    mDelegate.onCardError(mCardIds[index], mErrors[index]);
+                }
+            }
+
+            AppLoggerHelper.debug(TAG, "Loaded " + retValue.size() + "/" + mCardIds.length
+                    + " card snapshots in " + toMillis(System.nanoTime() - mStartTime)
+                    + " ms (sum of card latencies " + toMillis(mLatencySum)
+                    + " ms, slowest " + toMillis(mLatencyMax)
+                    + " ms, concurrency " + Math.min(mMaxConcurrency, mCardIds.length) + ") "
+                    + SdkHelper.getInstance().getCardSnapshotStore());
+
+            mDelegate.onSuccess(retValue);
+        }
+
+        private long toMillis(final long nanos) {
+            return nanos / 1_000_000L;
+        }
+    }
+
+    //endregion
+
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Handle of an asynchronous {@link CardWrapper} operation or {@link CardSnapshotStore} request.
+ * <p/>
+ * Request is cancelled together with the lifecycle owner it was bound to or explicitly by {@link #cancel()}.
+ * Cancelled request releases its delegate, so the pending SDK call does not keep the UI alive and
+ * its result is neither decoded nor delivered. Operation itself (e.g. card suspension) is not reverted.
+ *
+ * @param <D> Type of the delegate.
+ */
+public final class CardRequest<D> implements LifecycleEventObserver {
+
+    //region Defines
+
+    private final AtomicReference<D> mDelegate;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean mCancelled;
+
+    // Accessed only on the main thread.
+    private LifecycleOwner mOwner;
+
+    //endregion
+
+    //region Life Cycle
+
+    CardRequest(@Nullable final LifecycleOwner owner,
+                @Nullable final D delegate) {
+        mDelegate = new AtomicReference<>(delegate);
+
+        if (owner != null) {
+            runOnMainThread(() -> bind(owner));
+        }
+    }
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Detaches the delegate from the pending operation. Safe to call from any thread and multiple times.
+     */
+    public void cancel() {
+        mCancelled = true;
+        release();
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    //endregion
+
+    //region Protected API
+
+    /**
+     * @return Delegate for an intermediate result or {@code null} if the request was cancelled.
+     */
+    @Nullable
+    D getDelegate() {
+        return mDelegate.get();
+    }
+
+    /**
+     * Marks the request as finished.
+     *
+     * @return Delegate for the final result or {@code null} if the request was cancelled.
+     */
+    @Nullable
+    D finish() {
+        return release();
+    }
+
+    //endregion
+
+    //region LifecycleEventObserver
+
+    @Override
+    public void onStateChanged(@NonNull final LifecycleOwner source,
+                               @NonNull final Lifecycle.Event event) {
+        if (event == Lifecycle.Event.ON_DESTROY) {
+            cancel();
+        }
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    @Nullable
+    private D release() {
+        final D retValue = mDelegate.getAndSet(null);
+        runOnMainThread(this::unbind);
+        return retValue;
+    }
+
+    private void bind(@NonNull final LifecycleOwner owner) {
+        // Request might be already done or the owner already gone.
+        if (mDelegate.get() == null) {
+            return;
+        }
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            cancel();
+            return;
+        }
+
+        mOwner = owner;
+        mOwner.getLifecycle().addObserver(this);
+    }
+
+    private void unbind() {
+        if (mOwner != null) {
+            mOwner.getLifecycle().removeObserver(this);
+            mOwner = null;
+        }
+    }
+
+    private void runOnMainThread(@NonNull final Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mHandler.post(runnable);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardState;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardStatus;
+import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.PendingCardActivation;
+
+import java.util.Objects;
+
+/**
+ * Immutable view of everything the UI displays about one card at a given moment.
+ * <p/>
+ * Snapshots are created and cached by the {@link CardSnapshotStore}. Changes like a new default
+ * card or a new card status produce a new instance.
+ */
+public final class CardSnapshot {
+
+    //region Defines
+
+    private final String mTokenizedCardId;
+    private final String mDigitalCardId;
+    private final DigitalizedCardStatus mStatus;
+    private final String mLastFourDigits;
+    private final String mPanExpiry;
+    private final PendingCardActivation mPendingActivation;
+    private final boolean mDefault;
+
+    //endregion
+
+    //region Life Cycle
+
+    CardSnapshot(@NonNull final String tokenizedCardId,
+                 @Nullable final String digitalCardId,
+                 @NonNull final DigitalizedCardStatus status,
+                 @Nullable final String lastFourDigits,
+                 @Nullable final String panExpiry,
+                 @Nullable final PendingCardActivation pendingActivation,
+                 final boolean isDefault) {
+        mTokenizedCardId = tokenizedCardId;
+        mDigitalCardId = digitalCardId;
+        mStatus = status;
+        mLastFourDigits = lastFourDigits;
+        mPanExpiry = panExpiry;
+        mPendingActivation = pendingActivation;
+        mDefault = isDefault;
+    }
+
+    //endregion
+
+    //region Public API
+
+    @NonNull
+    public String getTokenizedCardId() {
+        return mTokenizedCardId;
+    }
+
+    /**
+     * @return Digital card id used as the card art handle or {@code null} if it's not known.
+     */
+    @Nullable
+    public String getDigitalCardId() {
+        return mDigitalCardId;
+    }
+
+    @NonNull
+    public DigitalizedCardStatus getStatus() {
+        return mStatus;
+    }
+
+    @NonNull
+    public DigitalizedCardState getState() {
+        return mStatus.getState();
+    }
+
+    @Nullable
+    public String getLastFourDigits() {
+        return mLastFourDigits;
+    }
+
+    @Nullable
+    public String getPanExpiry() {
+        return mPanExpiry;
+    }
+
+    /**
+     * @return Pending activation of a suspended card or {@code null} if there is none.
+     */
+    @Nullable
+    public PendingCardActivation getPendingActivation() {
+        return mPendingActivation;
+    }
+
+    public boolean isDefault() {
+        return mDefault;
+    }
+
+    /**
+     * @return {@code True} if both snapshots would be displayed the same way.
+     */
+    public boolean hasSameContent(@NonNull final CardSnapshot other) {
+        return mTokenizedCardId.equals(other.mTokenizedCardId)
+                && getState() == other.getState()
+                && mDefault == other.mDefault
+                && (mPendingActivation == null) == (other.mPendingActivation == null)
+                && Objects.equals(mLastFourDigits, other.mLastFourDigits)
+                && Objects.equals(mPanExpiry, other.mPanExpiry)
+                && Objects.equals(mDigitalCardId, other.mDigitalCardId);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CardSnapshot{" +
+                "tokenizedCardId=" + mTokenizedCardId +
+                ", state=" + getState() +
+                ", last4=" + mLastFourDigits +
+                ", default=" + mDefault +
+                ", pendingActivation=" + (mPendingActivation != null) +
+                '}';
+    }
+
+    //endregion
+
+    //region Package API
+
+    @NonNull
+    CardSnapshot withDefault(final boolean isDefault) {
+        if (isDefault == mDefault) {
+            return this;
+        }
+        return new CardSnapshot(mTokenizedCardId, mDigitalCardId, mStatus, mLastFourDigits, mPanExpiry, mPendingActivation, isDefault);
+    }
+
+    @NonNull
+    CardSnapshot withStatus(@NonNull final DigitalizedCardStatus status) {
+        return new CardSnapshot(mTokenizedCardId, mDigitalCardId, status, mLastFourDigits, mPanExpiry, mPendingActivation, mDefault);
+    }
+
+    //endregion
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCard;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardDetails;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardManager;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardState;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardStatus;
+import com.gemalto.mfs.mwsdk.mobilegateway.MobileGatewayManager;
+import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.PendingCardActivation;
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds and caches one {@link CardSnapshot} per tokenized card id.
+ * <p/>
+ * Card list, card pages and payment screens all read the same snapshot, so a card which did not
+ * change costs no SDK call at all. Snapshot is dropped by {@link #invalidate(String)} when the card
+ * lifecycle operation or a push message changes the card. Card details (last four digits and expiry)
+ * do not change with the card state and are kept until {@link #remove(String)}, so rebuilding an
+ * invalidated snapshot costs only the card state request.
+ * <p/>
+ * Concurrent requests for the same card share one build, whichever thread started it. Delegates are
+ * therefore always called on the main thread, directly when the snapshot is cached and requested
+ * from the main thread. Request can be bound to a lifecycle owner or cancelled like other {@link CardRequest}s.
+ */
+public final class CardSnapshotStore {
+
+    //region Defines
+
+    private static final String TAG = CardSnapshotStore.class.getSimpleName();
+
+    public interface Delegate {
+        void onSuccess(@NonNull final CardSnapshot snapshot);
+
+        void onError(final String error);
+    }
+
+    private final Map<String, CardSnapshot> mSnapshots = new HashMap<>();
+    private final Map<String, DigitalizedCardDetails> mDetails = new HashMap<>();
+    private final Map<String, Build> mBuilds = new HashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Incremented with each invalidation of the card. Builds started before are not cached.
+    private final Map<String, Integer> mGenerations = new HashMap<>();
+    private String mDefaultCardId;
+    private int mHitCount;
+    private int mBuildCount;
+    private int mCoalescedCount;
+    private int mSdkCallCount;
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Returns the cached snapshot or builds a new one.
+     *
+     * @param tokenizedCardId Tokenized card id.
+     * @param delegate        Callback with the snapshot, called on the main thread.
+     * @return Request handle which can be used to cancel the delivery.
+     */
+    @NonNull
+    public CardRequest<Delegate> get(@NonNull final String tokenizedCardId,
+                                     @NonNull final Delegate delegate) {
+        return get(tokenizedCardId, null, delegate);
+    }
+
+    /**
+     * Returns the cached snapshot or builds a new one.
+     *
+     * @param tokenizedCardId Tokenized card id.
+     * @param owner           Lifecycle owner which cancels the request when destroyed. Typically the view lifecycle owner.
+     * @param delegate        Callback with the snapshot, called on the main thread.
+     * @return Request handle which can be used to cancel the delivery.
+     */
+    @NonNull
+    public CardRequest<Delegate> get(@NonNull final String tokenizedCardId,
+                                     @Nullable final LifecycleOwner owner,
+                                     @NonNull final Delegate delegate) {
+        final CardRequest<Delegate> retValue = new CardRequest<>(owner, delegate);
+        final CardSnapshot cached;
+        final Build build;
+        synchronized (this) {
+            cached = mSnapshots.get(tokenizedCardId);
+            if (cached != null) {
+                mHitCount++;
+                build = null;
+            } else {
+                final Build pending = mBuilds.get(tokenizedCardId);
+                if (pending != null && pending.mGeneration == getGeneration(tokenizedCardId)) {
+                    pending.mRequests.add(retValue);
+                    mCoalescedCount++;
+                    return retValue;
+                }
+
+                build = new Build(tokenizedCardId, getGeneration(tokenizedCardId));
+                build.mRequests.add(retValue);
+                mBuilds.put(tokenizedCardId, build);
+                mBuildCount++;
+            }
+        }
+
+        if (cached != null) {
+            deliver(Collections.singletonList(retValue), cached, null);
+        } else {
+            build.start();
+        }
+        return retValue;
+    }
+
+    /**
+     * @return Cached snapshot or {@code null} if it's not available right now.
+     */
+    @Nullable
+    public synchronized CardSnapshot peek(@NonNull final String tokenizedCardId) {
+        return mSnapshots.get(tokenizedCardId);
+    }
+
+    /**
+     * Replaces the status of the cached snapshot with the one already provided by the SDK,
+     * e.g. after a transaction consumed the payment keys.
+     */
+    public void updateStatus(@NonNull final String tokenizedCardId,
+                             @NonNull final DigitalizedCardStatus status) {
+        synchronized (this) {
+            final CardSnapshot cached = mSnapshots.get(tokenizedCardId);
+            if (cached != null && cached.getState() == status.getState()) {
+                mSnapshots.put(tokenizedCardId, cached.withStatus(status));
+                return;
+            }
+        }
+
+        // State change affects other values like pending activation. Build it again.
+        invalidate(tokenizedCardId);
+    }
+
+    /**
+     * Updates the default flag of all cached snapshots. No SDK call is needed.
+     *
+     * @param defaultCardId Tokenized card id of the new default card or {@code null} if there is none.
+     */
+    public synchronized void onDefaultCardChanged(@Nullable final String defaultCardId) {
+        mDefaultCardId = defaultCardId;
+        for (final Map.Entry<String, CardSnapshot> loopEntry : mSnapshots.entrySet()) {
+            loopEntry.setValue(loopEntry.getValue().withDefault(loopEntry.getKey().equals(defaultCardId)));
+        }
+    }
+
+    /**
+     * Drops the snapshot of the card after its state has changed. Card details are kept.
+     */
+    public synchronized void invalidate(@NonNull final String tokenizedCardId) {
+        mSnapshots.remove(tokenizedCardId);
+        mGenerations.put(tokenizedCardId, getGeneration(tokenizedCardId) + 1);
+    }
+
+    /**
+     * Drops everything known about the card, e.g. after it was deleted or its token was updated.
+     */
+    public synchronized void remove(@NonNull final String tokenizedCardId) {
+        invalidate(tokenizedCardId);
+        mDetails.remove(tokenizedCardId);
+    }
+
+    public synchronized void clear() {
+        // Builds in flight must not store data of the wiped cards.
+        for (final String loopCardId : mBuilds.keySet()) {
+            mGenerations.put(loopCardId, getGeneration(loopCardId) + 1);
+        }
+        mSnapshots.clear();
+        mDetails.clear();
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "CardSnapshotStore{" +
+                "size=" + mSnapshots.size() +
+                ", hits=" + mHitCount +
+                ", builds=" + mBuildCount +
+                ", coalesced=" + mCoalescedCount +
+                ", sdkCalls=" + mSdkCallCount +
+                '}';
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private int getGeneration(@NonNull final String tokenizedCardId) {
+        final Integer generation = mGenerations.get(tokenizedCardId);
+        return generation != null ? generation : 0;
+    }
+
+    /**
+     * Delivers the snapshot or the error on the main thread. Cancelled requests are skipped.
+     */
+    private void deliver(@NonNull final List<CardRequest<Delegate>> requests,
+                         @Nullable final CardSnapshot snapshot,
+                         @Nullable final String error) {
+        final Runnable delivery = () -> {
+            for (final CardRequest<Delegate> loopRequest : requests) {
+                final Delegate delegate = loopRequest.finish();
+                if (delegate == null) {
+                    continue;
+                }
+
+                if (snapshot != null) {
+                    delegate.onSuccess(snapshot);
+                } else {
+                    delegate.onError(error);
+                }
+            }
+        };
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            delivery.run();
+        } else {
+            mHandler.post(delivery);
+        }
+    }
+
+    /**
+     * One snapshot build with all the callers waiting for it.
+     */
+    private final class Build {
+        private final String mTokenizedCardId;
+        private final int mGeneration;
+        private final List<CardRequest<Delegate>> mRequests = new ArrayList<>();
+
+        Build(final String tokenizedCardId, final int generation) {
+            mTokenizedCardId = tokenizedCardId;
+            mGeneration = generation;
+        }
+
+        void start() {
+            final DigitalizedCard digitalizedCard = DigitalizedCardManager.getDigitalizedCard(mTokenizedCardId);
+            if (digitalizedCard == null) {
+                fail("Card not found: " + mTokenizedCardId);
+                return;
+            }
+
+            synchronized (CardSnapshotStore.this) {
+                mSdkCallCount++;
+            }
+            digitalizedCard.getCardState(new AsyncHelperCardState(new AsyncHelperCardState.Delegate() {
+                @Override
+                public void onSuccess(final DigitalizedCardStatus value) {
+                    loadDetails(digitalizedCard, value);
+                }
+
+                @Override
+                public void onError(final String error) {
+                    fail(error);
+                }
+            }));
+        }
+
+        private void loadDetails(@NonNull final DigitalizedCard digitalizedCard,
+                                 @NonNull final DigitalizedCardStatus status) {
+            final DigitalizedCardDetails details;
+            synchronized (CardSnapshotStore.this) {
+                details = mDetails.get(mTokenizedCardId);
+                if (details == null) {
+                    mSdkCallCount++;
+                }
+            }
+
+            if (details != null) {
+                finish(status, details);
+                return;
+            }
+
+            digitalizedCard.getCardDetails(new AsyncHelperCardDetails(new AsyncHelperCardDetails.Delegate() {
+                @Override
+                public void onSuccess(final DigitalizedCardDetails value) {
+                    synchronized (CardSnapshotStore.this) {
+                        if (mGeneration == getGeneration(mTokenizedCardId)) {
+                            mDetails.put(mTokenizedCardId, value);
+                        }
+                    }
+                    finish(status, value);
+                }
+
+                @Override
+                public void onError(final String error) {
+                    fail(error);
+                }
+            }));
+        }
+
+        private void finish(@NonNull final DigitalizedCardStatus status,
+                            @NonNull final DigitalizedCardDetails details) {
+            final String digitalCardId = DigitalizedCardManager.getDigitalCardId(mTokenizedCardId);
+
+            // Only suspended cards can wait for the activation.
+            PendingCardActivation pendingActivation = null;
+            if (status.getState() == DigitalizedCardState.SUSPENDED && digitalCardId != null) {
+                pendingActivation = MobileGatewayManager.INSTANCE.getCardEnrollmentService().getPendingCardActivation(digitalCardId);
+            }
+
+            final CardSnapshot snapshot;
+            final List<CardRequest<Delegate>> requests;
+            synchronized (CardSnapshotStore.this) {
+                snapshot = new CardSnapshot(mTokenizedCardId, digitalCardId, status,
+                        details.getLastFourDigits(), details.getPanExpiry(), pendingActivation,
+                        mTokenizedCardId.equals(mDefaultCardId));
+
+                // Card was invalidated meanwhile. Deliver the result, but do not keep it.
+                if (mGeneration == getGeneration(mTokenizedCardId)) {
+                    mSnapshots.put(mTokenizedCardId, snapshot);
+                }
+                requests = detach();
+            }
+
+            deliver(requests, snapshot, null);
+        }
+
+        private void fail(final String error) {
+            AppLoggerHelper.error(TAG, "Failed to build snapshot of " + mTokenizedCardId + ": " + error);
+
+            final List<CardRequest<Delegate>> requests;
+            synchronized (CardSnapshotStore.this) {
+                requests = detach();
+            }
+
+            deliver(requests, null, error);
+        }
+
+        // Must be called with the store lock held.
+        @NonNull
+        private List<CardRequest<Delegate>> detach() {
+            if (mBuilds.get(mTokenizedCardId) == this) {
+                mBuilds.remove(mTokenizedCardId);
+            }
+            return new ArrayList<>(mRequests);
+        }
+    }
+
+    //endregion
+}
@@ -5,17 +5,19 @@
 package com.thalesgroup.tshpaysample.sdk.helpers;
 
 import android.content.Context;
-import android.graphics.BitmapFactory;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.lifecycle.LifecycleOwner;
 
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCard;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardDetails;
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardManager;
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardState;
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardStatus;
@@ -24,28 +26,14 @@ import com.gemalto.mfs.mwsdk.mobilegateway.MGCardEnrollmentService;
 import com.gemalto.mfs.mwsdk.mobilegateway.MGCardLifeCycleManager;
 import com.gemalto.mfs.mwsdk.mobilegateway.MobileGatewayError;
 import com.gemalto.mfs.mwsdk.mobilegateway.MobileGatewayManager;
-import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.CardArt;
-import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.CardArtType;
-import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.CardBitmap;
 import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.PendingCardActivation;
-import com.gemalto.mfs.mwsdk.mobilegateway.exception.NoSuchCardException;
 import com.gemalto.mfs.mwsdk.mobilegateway.listener.MGCardLifecycleEventListener;
 import com.gemalto.mfs.mwsdk.payment.PaymentBusinessManager;
 import com.gemalto.mfs.mwsdk.payment.PaymentBusinessService;
-import com.gemalto.mfs.mwsdk.provisioning.ProvisioningServiceManager;
-import com.gemalto.mfs.mwsdk.provisioning.listener.PushServiceListener;
-import com.gemalto.mfs.mwsdk.provisioning.model.ProvisioningServiceError;
-import com.gemalto.mfs.mwsdk.provisioning.model.ProvisioningServiceMessage;
-import com.gemalto.mfs.mwsdk.provisioning.sdkconfig.ProvisioningBusinessService;
 import com.thalesgroup.tshpaysample.sdk.SdkHelper;
-import com.thalesgroup.tshpaysample.sdk.push.TshPush;
+import com.thalesgroup.tshpaysample.sdk.payment.PaymentFlightRecorder;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
-import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-
 public class CardWrapper {
 
     //region Defines
@@ -64,6 +52,7 @@ public class CardWrapper {
     private final DigitalizedCard mDigitalizedCard;
 
     private DigitalizedCardStatus mDigitalizedCardStatus;
+    private final CardSnapshot mSnapshot;
 
     //endregion
 
@@ -73,12 +62,21 @@ public class CardWrapper {
         mCardId = cardId;
         mDigitalizedCard = DigitalizedCardManager.getDigitalizedCard(cardId);
         mDigitalizedCardStatus = null;
+        mSnapshot = null;
     }
 
     public CardWrapper(final DigitalizedCard card, final DigitalizedCardStatus cardStatus) {
         mCardId = card.getTokenizedCardID();
         mDigitalizedCard = card;
         mDigitalizedCardStatus = cardStatus;
+        mSnapshot = null;
+    }
+
+    public CardWrapper(final DigitalizedCard card, @NonNull final CardSnapshot snapshot) {
+        mCardId = card.getTokenizedCardID();
+        mDigitalizedCard = card;
+        mDigitalizedCardStatus = snapshot.getStatus();
+        mSnapshot = snapshot;
     }
 
     //endregion
@@ -90,15 +88,64 @@ public class CardWrapper {
     }
 
     public String getDigitalCardId() {
+        if (mSnapshot != null && mSnapshot.getDigitalCardId() != null) {
+            return mSnapshot.getDigitalCardId();
+        }
         return DigitalizedCardManager.getDigitalCardId(mCardId);
     }
 
-    public void getDigitalizedCardDetails(final AsyncHelperCardDetails.Delegate delegate) {
-        mDigitalizedCard.getCardDetails(new AsyncHelperCardDetails(delegate));
+    /**
+     * @return Snapshot this wrapper was created with or {@code null} if it was created without one.
+     */
+    @Nullable
+    public CardSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    public CardRequest<AsyncHelperCardDetails.Delegate> getDigitalizedCardDetails(@Nullable final LifecycleOwner owner,
+                                                                                  @NonNull final AsyncHelperCardDetails.Delegate delegate) {
+        final CardRequest<AsyncHelperCardDetails.Delegate> retValue = new CardRequest<>(owner, delegate);
+        mDigitalizedCard.getCardDetails(new AsyncHelperCardDetails(new AsyncHelperCardDetails.Delegate() {
+            @Override
+            public void onSuccess(final DigitalizedCardDetails value) {
+                final AsyncHelperCardDetails.Delegate target = retValue.finish();
+                if (target != null) {
+                    target.onSuccess(value);
+                }
+            }
+
+            @Override
+            public void onError(final String error) {
+                final AsyncHelperCardDetails.Delegate target = retValue.finish();
+                if (target != null) {
+                    target.onError(error);
+                }
+            }
+        }));
+        return retValue;
     }
 
-    public void getDigitalizedCardState(final AsyncHelperCardState.Delegate delegate) {
-        mDigitalizedCard.getCardState(new AsyncHelperCardState(delegate));
+    public CardRequest<AsyncHelperCardState.Delegate> getDigitalizedCardState(@Nullable final LifecycleOwner owner,
+                                                                              @NonNull final AsyncHelperCardState.Delegate delegate) {
+        final CardRequest<AsyncHelperCardState.Delegate> retValue = new CardRequest<>(owner, delegate);
+        mDigitalizedCard.getCardState(new AsyncHelperCardState(new AsyncHelperCardState.Delegate() {
+            @Override
+            public void onSuccess(final DigitalizedCardStatus value) {
+                final AsyncHelperCardState.Delegate target = retValue.finish();
+                if (target != null) {
+                    target.onSuccess(value);
+                }
+            }
+
+            @Override
+            public void onError(final String error) {
+                final AsyncHelperCardState.Delegate target = retValue.finish();
+                if (target != null) {
+                    target.onError(error);
+                }
+            }
+        }));
+        return retValue;
     }
 
     public boolean isActive(){
@@ -111,24 +158,23 @@ public class CardWrapper {
         return mCardId.equals(SdkHelper.getInstance().getTshPaymentListener().getDefaultCardId().getValue());
     }
 
-    public void setDefault(@Nullable final CardActionDelegate delegate) {
+    public CardRequest<CardActionDelegate> setDefault(@Nullable final LifecycleOwner owner,
+                                                      @Nullable final CardActionDelegate delegate) {
+        final CardRequest<CardActionDelegate> retValue = new CardRequest<>(owner, delegate);
         mDigitalizedCard.setDefault(PaymentType.CONTACTLESS, new AsyncHandlerVoid(new AsyncHandlerVoid.Delegate() {
             @Override
             public void onSuccess() {
                 SdkHelper.getInstance().getTshPaymentListener().onDefaultCardIdChanged(mDigitalizedCard.getTokenizedCardID());
-                if (delegate != null) {
-                    delegate.onFinished(true, null);
-                }
+                finishAction(retValue, true, null);
             }
 
             @Override
             public void onError(final String error) {
-                if (delegate != null) {
-                    delegate.onFinished(false, error);
-                }
+                finishAction(retValue, false, error);
                 AppLoggerHelper.error(TAG, "setDefault() failed with error: " + error);
             }
         }));
+        return retValue;
     }
 
     public PendingCardActivation getPendingActivation() {
@@ -150,7 +196,7 @@ public class CardWrapper {
                 SdkHelper.getInstance().getTshPaymentListener().saveDefaultAsPreferredCard();
 
                 // Set the selected card as the new default temporarily.
-                setDefault((result, error) -> {
+                setDefault(null, (result, error) -> {
                     // Do nothing in case of error. Error itself is already logged in the setDefault method
                     if(result) {
                         new Handler(Looper.getMainLooper()).post(() -> {
@@ -164,240 +210,226 @@ public class CardWrapper {
 
     }
 
-    public void getCardArt(@NonNull final Context context,
-                           @NonNull final CardArtDelegate delegate) {
+    public CardRequest<CardArtDelegate> getCardArt(@NonNull final Context context,
+                                                   @Nullable final LifecycleOwner owner,
+                                                   @NonNull final CardArtDelegate delegate) {
+        return getCardArt(context, 0, 0, owner, delegate);
+    }
+
+    /**
+     * Loads the card art downsampled to the given view size.
+     * Cached bitmap is returned right away, otherwise the stored file is read and decoded in
+     * the background and the result is delivered on the main thread.
+     *
+     * @param context      Android context.
+     * @param targetWidth  Width of the target view in pixels or 0 for full size image.
+     * @param targetHeight Height of the target view in pixels or 0 for full size image.
+     * @param owner        Lifecycle which cancels the request once destroyed or {@code null}.
+     * @param delegate     Callback with the result.
+     * @return Handle to cancel the request, e.g. when the view gets bound to another card.
+     */
+    public CardRequest<CardArtDelegate> getCardArt(@NonNull final Context context,
+                                                   final int targetWidth,
+                                                   final int targetHeight,
+                                                   @Nullable final LifecycleOwner owner,
+                                                   @NonNull final CardArtDelegate delegate) {
+        final CardRequest<CardArtDelegate> retValue = new CardRequest<>(owner, delegate);
+
+        // Do not hold the activity in pending callbacks.
+        final Resources resources = context.getResources();
+
         // Prevent crash in edge cases.
         final String digitalCardId = getDigitalCardId();
         if (digitalCardId == null) {
-            delegate.onCardArtFinished(null, false);
-            return;
+            finishCardArt(retValue, null, false);
+            return retValue;
         }
 
-        // First check if we already have some image locally.
-        final byte[] imageBytes = readFromFile(context, digitalCardId);
-        if (imageBytes.length > 0) {
-            // Some image found. Let's try to create drawable out of it.
-            final Drawable image = new BitmapDrawable(context.getResources(), BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length));
-            delegate.onCardArtFinished(image, false);
-        } else {
-            // Next request is downloading data from server which might take some time.
-            // Give UI some default card meanwhile.
-            delegate.onCardArtFinished(null, true);
-
-            // Download actual card art data from backend.
-            final MobileGatewayManager gatewayManager = MobileGatewayManager.INSTANCE;
-            try {
-                final CardArt cardArt = gatewayManager.getCardArt(digitalCardId);
-                cardArt.getBitmap(CardArtType.CARD_BACKGROUND_COMBINED, new AsyncHandlerCardBitmap(new AsyncHandlerCardBitmap.Delegate() {
-                    @Override
-                    public void onSuccess(final CardBitmap value) {
-                        // Store current data for future use.
-                        writeToFile(context, digitalCardId, value.getResource());
+        // Decoded image from the memory cache.
+        final Bitmap cachedBitmap = SdkHelper.getInstance().getCardArtCache().get(digitalCardId, targetWidth, targetHeight);
+        if (cachedBitmap != null) {
+            finishCardArt(retValue, new BitmapDrawable(resources, cachedBitmap), false);
+            return retValue;
+        }
 
-                        // Return image in first thread.
-                        final Drawable image = new BitmapDrawable(context.getResources(), BitmapFactory.decodeByteArray(value.getResource(), 0, value.getResource().length));
-                        new Handler(Looper.getMainLooper()).post(() -> delegate.onCardArtFinished(image, false));
-                    }
+        // Next check if we already have some image locally.
+        SdkHelper.getInstance().getCardArtLoader().load(digitalCardId, targetWidth, targetHeight, new CardArtLoader.Callback() {
+            @Override
+            public void onLoaded(@Nullable final Bitmap bitmap) {
+                if (bitmap != null) {
+                    finishCardArt(retValue, new BitmapDrawable(resources, bitmap), false);
+                    revalidateCardArtIfNeeded(digitalCardId);
+                } else {
+                    downloadCardArt(resources, digitalCardId, targetWidth, targetHeight, retValue);
+                }
+            }
 
-                    @Override
-                    public void onError(final String error) {
-                        AppLoggerHelper.error(TAG, error);
-                        new Handler(Looper.getMainLooper()).post(() -> delegate.onCardArtFinished(null, false));
-                    }
-                }));
-            } catch (final NoSuchCardException exception) {
-                AppLoggerHelper.error(TAG, exception.getMessage());
-                delegate.onCardArtFinished(null, false);
+            @Override
+            public boolean isCancelled() {
+                return retValue.isCancelled();
             }
-        }
+        });
+
+        return retValue;
     }
 
-    public void deleteCard(@NonNull final CardActionDelegate delegate) {
+    public CardRequest<CardActionDelegate> deleteCard(@Nullable final LifecycleOwner owner,
+                                                      @NonNull final CardActionDelegate delegate) {
+        final CardRequest<CardActionDelegate> retValue = new CardRequest<>(owner, delegate);
         final MGCardLifeCycleManager cardLifeCycleManager = MobileGatewayManager.INSTANCE.getCardLifeCycleManager();
         cardLifeCycleManager.deleteCard(getDigitalCardId(), new MGCardLifecycleEventListener() {
             @Override
             public void onSuccess(final String digitalCardId) {
-                delegate.onFinished(true, null);
+                SdkHelper.getInstance().getCardArtStore().remove(digitalCardId);
+                SdkHelper.getInstance().getCardSnapshotStore().remove(mCardId);
+                SdkHelper.getInstance().getReplenishmentForecaster().remove(mCardId);
+                finishAction(retValue, true, null);
             }
 
             @Override
             public void onError(final String digitalCardId,
                                 final MobileGatewayError mobileGatewayError) {
                 AppLoggerHelper.error(TAG, mobileGatewayError.getMessage());
-                delegate.onFinished(false, mobileGatewayError.getMessage());
+                finishAction(retValue, false, mobileGatewayError.getMessage());
             }
         });
+        return retValue;
     }
 
-    public void suspendCard(@NonNull final CardActionDelegate delegate) {
+    public CardRequest<CardActionDelegate> suspendCard(@Nullable final LifecycleOwner owner,
+                                                       @NonNull final CardActionDelegate delegate) {
+        final CardRequest<CardActionDelegate> retValue = new CardRequest<>(owner, delegate);
         final MGCardLifeCycleManager cardLifeCycleManager = MobileGatewayManager.INSTANCE.getCardLifeCycleManager();
         cardLifeCycleManager.suspendCard(getDigitalCardId(), new MGCardLifecycleEventListener() {
             @Override
             public void onSuccess(final String digitalCardId) {
-                delegate.onFinished(true, null);
+                SdkHelper.getInstance().getCardSnapshotStore().invalidate(mCardId);
+                finishAction(retValue, true, null);
             }
 
             @Override
             public void onError(final String digitalCardId,
                                 final MobileGatewayError mobileGatewayError) {
                 AppLoggerHelper.error(TAG, mobileGatewayError.getMessage());
-                delegate.onFinished(false, mobileGatewayError.getMessage());
+                finishAction(retValue, false, mobileGatewayError.getMessage());
             }
         });
+        return retValue;
     }
 
-    public void resumeCard(@NonNull final CardActionDelegate delegate) {
+    public CardRequest<CardActionDelegate> resumeCard(@Nullable final LifecycleOwner owner,
+                                                      @NonNull final CardActionDelegate delegate) {
+        final CardRequest<CardActionDelegate> retValue = new CardRequest<>(owner, delegate);
         final MGCardLifeCycleManager cardLifeCycleManager = MobileGatewayManager.INSTANCE.getCardLifeCycleManager();
         cardLifeCycleManager.resumeCard(getDigitalCardId(), new MGCardLifecycleEventListener() {
             @Override
             public void onSuccess(final String digitalCardId) {
-                delegate.onFinished(true, null);
+                SdkHelper.getInstance().getCardSnapshotStore().invalidate(mCardId);
+                finishAction(retValue, true, null);
             }
 
             @Override
             public void onError(final String digitalCardId,
                                 final MobileGatewayError mobileGatewayError) {
                 AppLoggerHelper.error(TAG, mobileGatewayError.getMessage());
-                delegate.onFinished(false, mobileGatewayError.getMessage());
+                finishAction(retValue, false, mobileGatewayError.getMessage());
             }
         });
+        return retValue;
     }
 
     public void replenishKeysIfNeeded(final boolean forcedReplenishment) {
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(forcedReplenishment
+                ? PaymentFlightRecorder.Type.REPLENISHMENT_FORCED
+                : PaymentFlightRecorder.Type.REPLENISHMENT_REQUESTED, mCardId);
 
-        // Slight optimization: if we already hold DigitalizedCardStatus
-        // we don't have to fetch it and go straight to the replenishment
-        if(mDigitalizedCardStatus!=null){
-            replenishIfNeeded(forcedReplenishment);
-        } else {
+        // Scheduler merges repeated requests for the same card and loads the status if we do not hold it.
+        SdkHelper.getInstance().getReplenishmentScheduler().request(mCardId, forcedReplenishment, mDigitalizedCardStatus);
+    }
 
-            getDigitalizedCardState(new AsyncHelperCardState.Delegate() {
-                @Override
-                public void onSuccess(final DigitalizedCardStatus value) {
-                    mDigitalizedCardStatus = value;
-                    replenishIfNeeded(forcedReplenishment);
-                }
+    //endregion
 
-                @Override
-                public void onError(final String error) {
-                    AppLoggerHelper.error(TAG, error);
-                }
-            });
+    //region Private Helpers
 
+    private static void finishAction(@NonNull final CardRequest<CardActionDelegate> request,
+                                     final boolean value,
+                                     @Nullable final String message) {
+        final CardActionDelegate delegate = request.finish();
+        if (delegate != null) {
+            delegate.onFinished(value, message);
         }
-
     }
 
-    private void replenishIfNeeded(final boolean forcedReplenishment) {
-        if (mDigitalizedCardStatus != null && mDigitalizedCardStatus.needsReplenishment()) {
-            final ProvisioningBusinessService businessService = ProvisioningServiceManager.getProvisioningBusinessService();
-
-            businessService.sendRequestForReplenishment(mDigitalizedCard.getTokenizedCardID(), new ReplenishmentListener(mDigitalizedCard, forcedReplenishment), forcedReplenishment);
-
+    private static void finishCardArt(@NonNull final CardRequest<CardArtDelegate> request,
+                                      @Nullable final Drawable drawable,
+                                      final boolean loading) {
+        final CardArtDelegate delegate = loading ? request.getDelegate() : request.finish();
+        if (delegate != null) {
+            delegate.onCardArtFinished(drawable, loading);
         }
     }
 
-    //endregion
-
-    //region Private Helpers
-
     /**
-     * By using this listener instead of the generic one in TshPush we will observe only the result
-     * of calling the ProvisioningBusinessService#sendRequestForReplenishment() API which uses
-     * same PushServiceListener API, but there is no push message processing involved.
+     * Downloads the card art again in the background if the stored one is too old.
+     * Store drops the decoded image from the memory cache when the issuer changed the art,
+     * so the next bind shows the new version.
      */
+    private static void revalidateCardArtIfNeeded(@NonNull final String digitalCardId) {
+        SdkHelper.getInstance().getCardArtStore().whenRevalidationNeeded(digitalCardId, () -> {
+            AppLoggerHelper.debug(TAG, "Revalidating card art of " + digitalCardId);
+            SdkHelper.getInstance().getCardArtDownloader().download(digitalCardId, new CardArtDownloader.Delegate() {
+                @Override
+                public void onSuccess(@NonNull final byte[] data) {
+                    // Already stored by the downloader.
+                }
 
-    private static class ReplenishmentListener implements PushServiceListener {
-
-        private static final String TAG = ReplenishmentListener.class.getSimpleName();
-        private final DigitalizedCard mDigitalizedCard;
-        private final boolean mWasForced;
-
-        public ReplenishmentListener(final DigitalizedCard digitalizedCard,
-                                     final boolean wasForced){
-            mDigitalizedCard = digitalizedCard;
-            mWasForced = wasForced;
-        }
-
-
-        @Override
-        public void onError(final ProvisioningServiceError provisioningServiceError) {
-            AppLoggerHelper.error(TAG, String.format("Failed to send replenishment request for card %s, wasForced=%b, ProvisioningServiceError: %s:%s",
-                    mDigitalizedCard.getTokenizedCardID(), mWasForced,
-                    provisioningServiceError.getSdkErrorCode(), provisioningServiceError.getErrorMessage())
-            );
-        }
-
-        @Override
-        public void onUnsupportedPushContent(final Bundle bundle) {
-
-            // This should never ever happen in the replenishment use case as we are not passing
-            // a push message, but just in case we log it
-            AppLoggerHelper.warn(TAG,  "Hit onUnsupportedPushContent() when attempting to replenish card " + mDigitalizedCard.getTokenizedCardID());
-        }
-
-        @Override
-        public void onServerMessage(final String tokenizedCardId,
-                                    final ProvisioningServiceMessage provisioningServiceMessage) {
-            // Should not go through here either, but let's log it in case we will
-            AppLoggerHelper.debug(TAG, String.format("onServerMessage(%s, %s) when replenishing card %s", tokenizedCardId, provisioningServiceMessage.getMsgCode(), mDigitalizedCard.getTokenizedCardID()));
-        }
-
-        @Override
-        public void onComplete() {
-
-            // For MC card it only means that we sent out the replenishment request and we need to wait
-            // a push message to come once the SUKs are prepared to be fetched from the backend.
-            AppLoggerHelper.info(TAG, String.format("Replenishment request for card %s (wasForced=%b) was COMPLETED", mDigitalizedCard.getTokenizedCardID(), mWasForced));
-
-            // For Visa card this means we are done and the card is ready with new LUK
-            // Thus we'll check if it is a Visa card and if so we'll reuse the push message handling code to notify the user
-            final String digitalCardId = DigitalizedCardManager.getDigitalCardId(mDigitalizedCard.getTokenizedCardID());
-
-            if(digitalCardId != null && digitalCardId.startsWith("HCESDKVTS")){
-                AppLoggerHelper.debug(TAG, "Emitting replenishment message for card: " + digitalCardId);
-                final TshPush tshPush = SdkHelper.getInstance().getPush();
-                tshPush.onVisaCardReplenished(mDigitalizedCard.getTokenizedCardID());
-                tshPush.onComplete();
-            }
-        }
+                @Override
+                public void onError(final String error) {
+                    // Keep the current art. It will be revalidated with next access.
+                }
+            });
+        });
     }
 
-    private static void writeToFile(final Context context,
-                                    final String fileName,
-                                    final byte[] data) {
-        try {
-            final FileOutputStream outputStream = context.openFileOutput(fileName, Context.MODE_PRIVATE);
-            outputStream.write(data);
-            outputStream.close();
-        } catch (final IOException exception) {
-            // It's not important in same app. In worst case it will download card art again.
-            AppLoggerHelper.error(TAG, "writeTofile(): " + exception.getMessage());
-        }
+    private static void downloadCardArt(@NonNull final Resources resources,
+                                        @NonNull final String digitalCardId,
+                                        final int targetWidth,
+                                        final int targetHeight,
+                                        @NonNull final CardRequest<CardArtDelegate> request) {
+        // Next request is downloading data from server which might take some time.
+        // Give UI some default card meanwhile.
+        finishCardArt(request, null, true);
+
+        // Download actual card art data from backend. Concurrent requests for the same card share one download.
+        // Download itself continues even for cancelled request, so the art is stored for the next bind.
+        SdkHelper.getInstance().getCardArtDownloader().download(digitalCardId, new CardArtDownloader.Delegate() {
+            @Override
+            public void onSuccess(@NonNull final byte[] data) {
+                if (request.isCancelled()) {
+                    return;
+                }
 
-    }
+                // Return image in first thread.
+                SdkHelper.getInstance().getCardArtLoader().decode(digitalCardId, data, targetWidth, targetHeight, new CardArtLoader.Callback() {
+                    @Override
+                    public void onLoaded(@Nullable final Bitmap bitmap) {
+                        finishCardArt(request, bitmap != null ? new BitmapDrawable(resources, bitmap) : null, false);
+                    }
 
-    private static byte[] readFromFile(final Context context,
-                                       final String fileName) {
-        final byte[] buffer = new byte[1024];
-
-        try {
-            final FileInputStream inputStream = context.openFileInput(fileName);
-            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            int bytesRead = inputStream.read(buffer);
-            while (bytesRead != -1) {
-                outputStream.write(buffer, 0, bytesRead);
-                bytesRead = inputStream.read(buffer);
+                    @Override
+                    public boolean isCancelled() {
+                        return request.isCancelled();
+                    }
+                });
             }
-            inputStream.close();
 
-            return outputStream.toByteArray();
-        } catch (final IOException exception) {
-            // It's not important in sample app. In worst case it will download card art again.
-            AppLoggerHelper.warn(TAG, "readFromFile(): " + exception.getMessage());
-        }
-
-        return new byte[0];
+            @Override
+            public void onError(final String error) {
+                if (!request.isCancelled()) {
+                    new Handler(Looper.getMainLooper()).post(() -> finishCardArt(request, null, false));
+                }
+            }
+        });
     }
 
     //endregion
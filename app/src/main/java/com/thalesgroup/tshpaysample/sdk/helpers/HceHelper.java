@@ -3,12 +3,11 @@ package com.thalesgroup.tshpaysample.sdk.helpers;
 import android.app.Activity;
 import android.content.ComponentName;
 import android.content.Context;
-import android.nfc.NfcManager;
 import android.nfc.cardemulation.CardEmulation;
 
 import androidx.annotation.NonNull;
 
-import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentHceService;
+import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
 public class HceHelper {
@@ -18,17 +17,8 @@ public class HceHelper {
     public enum LifeCycleHandler { ON_RESUME, ON_PAUSE, ON_STOP}
 
     public static boolean doesDeviceSupportHCE(@NonNull final Context context) {
-        final boolean hasNfc = context.getPackageManager().hasSystemFeature("android.hardware.nfc");
-        final boolean supportsNfc = context.getPackageManager().hasSystemFeature("android.hardware.nfc.hce");
-
-        AppLoggerHelper.debug(TAG, String.format("doesDeviceSupportHCE(): Has NFC: %b; Supports HCE: %b", hasNfc, supportsNfc));
-
-        if (!hasNfc || !supportsNfc){
-            AppLoggerHelper.warn(TAG, "doesDeviceSupportHCE(): The device does no have NFC interface or does not support HCE!");
-            return false;
-        }
-
-        return true;
+        // Resolved once by HceRoutingState.
+        return SdkHelper.getInstance().getHceRoutingState().isHceSupported();
     }
 
     /***
@@ -42,28 +32,27 @@ public class HceHelper {
      * @param handler
      */
     public static void handleForegroundPreference(@NonNull final Activity activity, @NonNull final LifeCycleHandler handler) {
-        AppLoggerHelper.debug(TAG, String.format("handleForegroundPreference(): activity=%s, handler=%s", activity.getClass().getSimpleName(), handler));
+        AppLoggerHelper.debug(TAG, "handleForegroundPreference(): activity=%s, handler=%s", activity.getClass().getSimpleName(), handler);
 
-        if(!doesDeviceSupportHCE(activity)) {
+        final HceRoutingState routingState = SdkHelper.getInstance().getHceRoutingState();
+        final CardEmulation cardEmulation = routingState.getCardEmulation();
+        if (cardEmulation == null) {
             return;
         }
 
-        if(isHceServiceSetAsDefault(activity)) {
+        if (routingState.isDefaultService()) {
             AppLoggerHelper.debug(TAG, "HCE service is already set as default => no need to bother with foreground preference");
             return;
         }
 
-        final NfcManager manager = (NfcManager) activity.getSystemService(Context.NFC_SERVICE);
-        final CardEmulation cardEmulation = CardEmulation.getInstance(manager.getDefaultAdapter());
-
-        if (cardEmulation.categoryAllowsForegroundPreference(CardEmulation.CATEGORY_PAYMENT)){
+        if (routingState.isForegroundPreferenceAllowed()) {
             if(handler == LifeCycleHandler.ON_RESUME) {
-                final ComponentName appHceComponent = new ComponentName(activity, TshPaymentHceService.class.getCanonicalName());
+                final ComponentName appHceComponent = routingState.getHceComponent();
                 final boolean success = cardEmulation.setPreferredService(activity, appHceComponent);
                 if(success) {
-                    AppLoggerHelper.debug(TAG, String.format("Preferred HCE service was set to %s ", appHceComponent));
+                    AppLoggerHelper.debug(TAG, "Preferred HCE service was set to %s ", appHceComponent);
                 } else {
-                    AppLoggerHelper.error(TAG, String.format("Failed to set app component %s as preferred HCE service", appHceComponent));
+                    AppLoggerHelper.error(TAG, "Failed to set app component %s as preferred HCE service", appHceComponent);
                 }
             } else if (handler == LifeCycleHandler.ON_PAUSE) {
                 cardEmulation.unsetPreferredService(activity);
@@ -77,11 +66,7 @@ public class HceHelper {
     }
 
     public static boolean isHceServiceSetAsDefault(@NonNull final Context context){
-        final ComponentName appHceComponent = new ComponentName(context, TshPaymentHceService.class.getCanonicalName());
-        final NfcManager manager = (NfcManager) context.getSystemService(Context.NFC_SERVICE);
-        final CardEmulation cardEmulation = CardEmulation.getInstance(manager.getDefaultAdapter());
-
-        return cardEmulation.isDefaultServiceForCategory(appHceComponent, CardEmulation.CATEGORY_PAYMENT);
+        // Cached value. Called from the transaction start, so it must not do any IPC.
+        return SdkHelper.getInstance().getHceRoutingState().isDefaultService();
     }
 }
-
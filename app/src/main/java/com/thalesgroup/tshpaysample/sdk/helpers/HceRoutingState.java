@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.nfc.NfcAdapter;
+import android.nfc.NfcManager;
+import android.nfc.cardemulation.CardEmulation;
+import android.os.Build;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentHceService;
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+/**
+ * Cached NFC routing of the app's HCE service.
+ * <p/>
+ * Device capabilities and the {@link CardEmulation} instance are resolved once. Default service and
+ * foreground preference status cost a binder call each, so they are refreshed only when the app comes
+ * to the foreground and when the system reports a change of the preferred payment service.
+ * Transaction callbacks read the cached values without any IPC.
+ */
+public final class HceRoutingState {
+
+    //region Defines
+
+    private static final String TAG = HceRoutingState.class.getSimpleName();
+
+    private ComponentName mHceComponent;
+    private CardEmulation mCardEmulation;
+    private volatile boolean mHceSupported;
+    private volatile boolean mDefaultService;
+    private volatile boolean mForegroundPreferenceAllowed;
+
+    // Accessed only on the main thread.
+    private int mStartedActivities;
+    private int mRefreshCount;
+
+    //endregion
+
+    //region Public API
+
+    public void init(@NonNull final Context context) {
+        final Context appContext = context.getApplicationContext();
+
+        mHceComponent = new ComponentName(appContext, TshPaymentHceService.class.getCanonicalName());
+        mHceSupported = queryHceSupport(appContext.getPackageManager());
+        if (mHceSupported) {
+            final NfcManager manager = (NfcManager) appContext.getSystemService(Context.NFC_SERVICE);
+            final NfcAdapter adapter = manager != null ? manager.getDefaultAdapter() : null;
+            mCardEmulation = adapter != null ? CardEmulation.getInstance(adapter) : null;
+        }
+        refresh("init");
+
+        // Preferred payment service change is broadcast only since Android 11. Older versions rely on app resume.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            appContext.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(final Context receiverContext, final Intent intent) {
+                    refresh("preferred payment changed");
+                }
+            }, new IntentFilter(NfcAdapter.ACTION_PREFERRED_PAYMENT_CHANGED));
+        }
+
+        if (appContext instanceof Application) {
+            ((Application) appContext).registerActivityLifecycleCallbacks(new ForegroundCallbacks());
+        }
+    }
+
+    /**
+     * Reads the routing status from the system again.
+     *
+     * @param reason Reason of the refresh for logging.
+     */
+    public void refresh(@NonNull final String reason) {
+        final CardEmulation cardEmulation = mCardEmulation;
+        if (cardEmulation == null) {
+            mDefaultService = false;
+            mForegroundPreferenceAllowed = false;
+            return;
+        }
+
+        mDefaultService = cardEmulation.isDefaultServiceForCategory(mHceComponent, CardEmulation.CATEGORY_PAYMENT);
+        mForegroundPreferenceAllowed = cardEmulation.categoryAllowsForegroundPreference(CardEmulation.CATEGORY_PAYMENT);
+        mRefreshCount++;
+
+        AppLoggerHelper.debug(TAG, "refresh(%s): %s", reason, this);
+    }
+
+    public boolean isHceSupported() {
+        return mHceSupported;
+    }
+
+    public boolean isDefaultService() {
+        return mDefaultService;
+    }
+
+    public boolean isForegroundPreferenceAllowed() {
+        return mForegroundPreferenceAllowed;
+    }
+
+    /**
+     * @return Card emulation of the default adapter or {@code null} if the device does not support HCE.
+     */
+    @Nullable
+    public CardEmulation getCardEmulation() {
+        return mCardEmulation;
+    }
+
+    @NonNull
+    public ComponentName getHceComponent() {
+        return mHceComponent;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "HceRoutingState{" +
+                "hceSupported=" + mHceSupported +
+                ", defaultService=" + mDefaultService +
+                ", foregroundPreferenceAllowed=" + mForegroundPreferenceAllowed +
+                ", refreshes=" + mRefreshCount +
+                '}';
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private static boolean queryHceSupport(@NonNull final PackageManager packageManager) {
+        final boolean hasNfc = packageManager.hasSystemFeature(PackageManager.FEATURE_NFC);
+        final boolean supportsHce = packageManager.hasSystemFeature(PackageManager.FEATURE_NFC_HOST_CARD_EMULATION);
+
+        AppLoggerHelper.debug(TAG, "queryHceSupport(): Has NFC: %b; Supports HCE: %b", hasNfc, supportsHce);
+
+        if (!hasNfc || !supportsHce) {
+            AppLoggerHelper.warn(TAG, "queryHceSupport(): The device does no have NFC interface or does not support HCE!");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Refreshes the state each time the app comes to the foreground. User might have changed
+     * the payment settings meanwhile.
+     */
+    private final class ForegroundCallbacks implements Application.ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityStarted(@NonNull final Activity activity) {
+            if (mStartedActivities++ == 0) {
+                refresh("app resumed");
+            }
+        }
+
+        @Override
+        public void onActivityStopped(@NonNull final Activity activity) {
+            mStartedActivities = Math.max(0, mStartedActivities - 1);
+        }
+
+        @Override
+        public void onActivityCreated(@NonNull final Activity activity,
+                                      @Nullable final Bundle savedInstanceState) {
+            // Not relevant.
+        }
+
+        @Override
+        public void onActivityResumed(@NonNull final Activity activity) {
+            // Not relevant.
+        }
+
+        @Override
+        public void onActivityPaused(@NonNull final Activity activity) {
+            // Not relevant.
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(@NonNull final Activity activity,
+                                                @NonNull final Bundle outState) {
+            // Not relevant.
+        }
+
+        @Override
+        public void onActivityDestroyed(@NonNull final Activity activity) {
+            // Not relevant.
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCard;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardManager;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardStatus;
+import com.thalesgroup.tshpaysample.sdk.SdkHelper;
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Predicts when each card runs out of payment keys and asks for new ones ahead of it.
+ * <p/>
+ * Consumption rate of a card is estimated from the time of its last {@link #MAX_PAYMENTS} payments.
+ * Together with the number of keys left reported after each transaction it gives the expected time
+ * of exhaustion. Cards expected to run out within {@link #LEAD_TIME_MS} are replenished once the
+ * device is online and there was no payment for {@link #IDLE_DELAY_MS}, so the user does not find
+ * out at the terminal. Number of keys is updated also by statuses loaded outside of the payment and
+ * after each replenishment, so the model never keeps asking ahead for a card which got its keys.
+ */
+public final class ReplenishmentForecaster {
+
+    //region Defines
+
+    private static final String TAG = ReplenishmentForecaster.class.getSimpleName();
+
+    private static final String PREFERENCES_NAME = "replenishment_forecast";
+    private static final String KEY_PAYMENTS_SUFFIX = ".payments";
+    private static final String KEY_KEYS_SUFFIX = ".keys";
+
+    private static final int MAX_PAYMENTS = 16;
+    private static final int MIN_PAYMENTS = 3;
+    private static final long LEAD_TIME_MS = 24 * 60 * 60 * 1000L;
+    private static final long IDLE_DELAY_MS = 60 * 1000L;
+
+    private final Map<String, CardModel> mCards = new HashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mEvaluateRunnable = this::evaluate;
+    private volatile Context mContext;
+    private SharedPreferences mPreferences;
+    private long mLastPaymentActivity;
+
+    private int mPaymentCount;
+    private int mOutOfKeysCount;
+    private int mOutOfKeysForecastedCount;
+    private int mRequestedAheadCount;
+    private int mForecastSamples;
+    private double mForecastErrorSum;
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Events recorded before init are not persisted and their models are dropped, so they never
+     * overwrite the stored history.
+     */
+    public synchronized void init(@NonNull final Context context) {
+        final Context appContext = context.getApplicationContext();
+        mPreferences = appContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mCards.clear();
+        mContext = appContext;
+    }
+
+    /**
+     * Records a completed payment of the card.
+     */
+    public void onPayment(@Nullable final String tokenizedCardId) {
+        if (tokenizedCardId == null) {
+            return;
+        }
+
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            final CardModel model = getModel(tokenizedCardId);
+            model.mPayments.addLast(now);
+            while (model.mPayments.size() > MAX_PAYMENTS) {
+                model.mPayments.removeFirst();
+            }
+            mPaymentCount++;
+            mLastPaymentActivity = now;
+            save(tokenizedCardId, model);
+        }
+    }
+
+    /**
+     * Records the number of keys left reported by the SDK and schedules the forecast.
+     */
+    public void onStatus(@NonNull final String tokenizedCardId,
+                         @NonNull final DigitalizedCardStatus status) {
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            updateKeys(tokenizedCardId, status, now, true);
+            mLastPaymentActivity = now;
+        }
+
+        scheduleEvaluation(IDLE_DELAY_MS);
+    }
+
+    /**
+     * Records the number of keys left of the status loaded outside of the payment.
+     */
+    public synchronized void onStatusLoaded(@NonNull final String tokenizedCardId,
+                                            @NonNull final DigitalizedCardStatus status) {
+        updateKeys(tokenizedCardId, status, System.currentTimeMillis(), false);
+    }
+
+    /**
+     * Loads the current status of the card which got new keys, so the model does not keep the old count.
+     */
+    public void onReplenished(@NonNull final String tokenizedCardId) {
+        final DigitalizedCard digitalizedCard = DigitalizedCardManager.getDigitalizedCard(tokenizedCardId);
+        if (digitalizedCard == null) {
+            return;
+        }
+
+        digitalizedCard.getCardState(new AsyncHelperCardState(new AsyncHelperCardState.Delegate() {
+            @Override
+            public void onSuccess(final DigitalizedCardStatus value) {
+                SdkHelper.getInstance().getCardSnapshotStore().updateStatus(tokenizedCardId, value);
+                onStatusLoaded(tokenizedCardId, value);
+            }
+
+            @Override
+            public void onError(final String error) {
+                AppLoggerHelper.warn(TAG, "Failed to load status of replenished card %s: %s", tokenizedCardId, error);
+            }
+        }));
+    }
+
+    /**
+     * Checks the real number of keys before the card is replenished ahead.
+     *
+     * @return {@code True} if the card with the given status is still expected to run out within the lead time.
+     */
+    public synchronized boolean isRunningOut(@NonNull final String tokenizedCardId,
+                                             @NonNull final DigitalizedCardStatus status) {
+        final long now = System.currentTimeMillis();
+        final CardModel model = updateKeys(tokenizedCardId, status, now, false);
+        final long timeToExhaustion = model.getTimeToExhaustion(now);
+        return timeToExhaustion >= 0 && timeToExhaustion <= LEAD_TIME_MS;
+    }
+
+    /**
+     * Records the payment which failed at the terminal because the card had no keys.
+     */
+    public synchronized void onOutOfKeys(@Nullable final String tokenizedCardId) {
+        mOutOfKeysCount++;
+        mLastPaymentActivity = System.currentTimeMillis();
+
+        final CardModel model = tokenizedCardId != null ? getModel(tokenizedCardId) : null;
+        if (model != null && model.getRate() > 0) {
+            // Model had a forecast, but did not act on time.
+            mOutOfKeysForecastedCount++;
+        }
+
+        AppLoggerHelper.warn(TAG, "Out of keys at POS: %s", this);
+    }
+
+    /**
+     * Checks all known cards and replenishes those expected to run out soon.
+     * Does nothing while offline or shortly after a payment.
+     */
+    public void evaluate() {
+        if (mContext == null) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final long idleIn;
+        synchronized (this) {
+            idleIn = mLastPaymentActivity + IDLE_DELAY_MS - now;
+        }
+        if (idleIn > 0) {
+            scheduleEvaluation(idleIn);
+            return;
+        }
+        if (!isOnline()) {
+            // Network callback will evaluate again once we are back online.
+            return;
+        }
+
+        final List<String> toReplenish = new ArrayList<>();
+        synchronized (this) {
+            for (final Map.Entry<String, CardModel> loopEntry : mCards.entrySet()) {
+                final CardModel model = loopEntry.getValue();
+                final long timeToExhaustion = model.getTimeToExhaustion(now);
+                if (!model.mRequestedAhead && timeToExhaustion >= 0 && timeToExhaustion <= LEAD_TIME_MS) {
+                    AppLoggerHelper.info(TAG, () -> "Card " + loopEntry.getKey() + " expected to run out of keys in "
+                            + timeToExhaustion / 60_000 + " min");
+                    // Persisted, so the next process start does not ask again.
+                    model.mRequestedAhead = true;
+                    save(loopEntry.getKey(), model);
+                    mRequestedAheadCount++;
+                    toReplenish.add(loopEntry.getKey());
+                }
+            }
+        }
+
+        for (final String loopCardId : toReplenish) {
+            SdkHelper.getInstance().getReplenishmentScheduler().requestAhead(loopCardId);
+        }
+    }
+
+    /**
+     * Drops the model of a card which is no longer present.
+     */
+    public synchronized void remove(@NonNull final String tokenizedCardId) {
+        mCards.remove(tokenizedCardId);
+        if (mPreferences != null) {
+            mPreferences.edit()
+                    .remove(tokenizedCardId + KEY_PAYMENTS_SUFFIX)
+                    .remove(tokenizedCardId + KEY_KEYS_SUFFIX)
+                    .apply();
+        }
+    }
+
+    public synchronized void clear() {
+        mCards.clear();
+        if (mPreferences != null) {
+            mPreferences.edit().clear().apply();
+        }
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        final int attempts = mPaymentCount + mOutOfKeysCount;
+        return "ReplenishmentForecaster{" +
+                "cards=" + mCards.size() +
+                ", payments=" + mPaymentCount +
+                ", outOfKeysAtPos=" + mOutOfKeysCount +
+                String.format(Locale.US, " (%.2f%%)", attempts > 0 ? 100.0 * mOutOfKeysCount / attempts : 0.0) +
+                ", outOfKeysDespiteForecast=" + mOutOfKeysForecastedCount +
+                ", requestedAhead=" + mRequestedAheadCount +
+                String.format(Locale.US, ", keysForecastMae=%.2f", mForecastSamples > 0 ? mForecastErrorSum / mForecastSamples : 0.0) +
+                " (" + mForecastSamples + " samples)" +
+                '}';
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private void scheduleEvaluation(final long delayMs) {
+        mHandler.removeCallbacks(mEvaluateRunnable);
+        mHandler.postDelayed(mEvaluateRunnable, delayMs);
+    }
+
+    private boolean isOnline() {
+        final ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return false;
+        }
+
+        final Network network = connectivityManager.getActiveNetwork();
+        final NetworkCapabilities capabilities = network != null ? connectivityManager.getNetworkCapabilities(network) : null;
+        return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+    }
+
+    /**
+     * Updates the number of keys of the card. Must be called with the lock held.
+     *
+     * @param payment {@code True} if the status comes right after a payment, so the forecast can be checked.
+     */
+    @NonNull
+    private CardModel updateKeys(@NonNull final String tokenizedCardId,
+                                 @NonNull final DigitalizedCardStatus status,
+                                 final long now,
+                                 final boolean payment) {
+        final CardModel model = getModel(tokenizedCardId);
+        final int keysLeft = status.getNumberOfPaymentsLeft();
+        final double rate = model.getRate();
+
+        if (model.mKeysAt > 0 && keysLeft <= model.mKeysLeft) {
+            // Compare keys used since the last status with the expected consumption.
+            if (payment && rate > 0) {
+                final double predictedUsed = rate * (now - model.mKeysAt);
+                mForecastErrorSum += Math.abs(predictedUsed - (model.mKeysLeft - keysLeft));
+                mForecastSamples++;
+            }
+        } else if (model.mKeysAt > 0) {
+            // Card got new keys. It can be replenished ahead again.
+            model.mRequestedAhead = false;
+        }
+
+        model.mKeysLeft = keysLeft;
+        model.mKeysAt = now;
+        save(tokenizedCardId, model);
+        return model;
+    }
+
+    // Must be called with the lock held.
+    @NonNull
+    private CardModel getModel(@NonNull final String tokenizedCardId) {
+        CardModel retValue = mCards.get(tokenizedCardId);
+        if (retValue == null) {
+            retValue = load(tokenizedCardId);
+            mCards.put(tokenizedCardId, retValue);
+        }
+        return retValue;
+    }
+
+    @NonNull
+    private CardModel load(@NonNull final String tokenizedCardId) {
+        final CardModel retValue = new CardModel();
+        if (mPreferences == null) {
+            return retValue;
+        }
+
+        try {
+            final String payments = mPreferences.getString(tokenizedCardId + KEY_PAYMENTS_SUFFIX, "");
+            for (final String loopValue : payments.split(",")) {
+                if (!loopValue.isEmpty()) {
+                    retValue.mPayments.addLast(Long.parseLong(loopValue));
+                }
+            }
+
+            // Keys left, time of the status and whether the card was already requested ahead.
+            final String[] keys = mPreferences.getString(tokenizedCardId + KEY_KEYS_SUFFIX, "").split(",");
+            if (keys.length >= 2) {
+                retValue.mKeysLeft = Integer.parseInt(keys[0]);
+                retValue.mKeysAt = Long.parseLong(keys[1]);
+                retValue.mRequestedAhead = keys.length > 2 && "1".equals(keys[2]);
+            }
+        } catch (final NumberFormatException exception) {
+            // Start over. Model will learn the rate again.
+            AppLoggerHelper.warn(TAG, "Ignoring corrupted forecast data: " + exception.getMessage());
+            return new CardModel();
+        }
+
+        return retValue;
+    }
+
+    private void save(@NonNull final String tokenizedCardId,
+                      @NonNull final CardModel model) {
+        if (mPreferences == null) {
+            return;
+        }
+
+        final StringBuilder payments = new StringBuilder();
+        for (final Long loopPayment : model.mPayments) {
+            if (payments.length() > 0) {
+                payments.append(',');
+            }
+            payments.append(loopPayment);
+        }
+
+        mPreferences.edit()
+                .putString(tokenizedCardId + KEY_PAYMENTS_SUFFIX, payments.toString())
+                .putString(tokenizedCardId + KEY_KEYS_SUFFIX, model.mKeysLeft + "," + model.mKeysAt + "," + (model.mRequestedAhead ? 1 : 0))
+                .apply();
+    }
+
+    /**
+     * Consumption history of one card. Guarded by the forecaster lock.
+     */
+    private static final class CardModel {
+        private final Deque<Long> mPayments = new ArrayDeque<>();
+        private int mKeysLeft;
+        private long mKeysAt;
+        private boolean mRequestedAhead;
+
+        /**
+         * @return Payments per millisecond or 0 if there is not enough history.
+         */
+        double getRate() {
+            if (mPayments.size() < MIN_PAYMENTS) {
+                return 0;
+            }
+
+            final long span = mPayments.getLast() - mPayments.getFirst();
+            return span > 0 ? (double) (mPayments.size() - 1) / span : 0;
+        }
+
+        /**
+         * @return Expected milliseconds until the keys run out or -1 if it can't be estimated.
+         */
+        long getTimeToExhaustion(final long now) {
+            final double rate = getRate();
+            if (rate <= 0 || mKeysAt <= 0) {
+                return -1;
+            }
+
+            final double keysLeftNow = mKeysLeft - rate * (now - mKeysAt);
+            return keysLeftNow <= 0 ? 0 : (long) (keysLeftNow / rate);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.helpers;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCard;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardManager;
+import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardStatus;
+import com.gemalto.mfs.mwsdk.provisioning.ProvisioningServiceManager;
+import com.gemalto.mfs.mwsdk.provisioning.listener.PushServiceListener;
+import com.gemalto.mfs.mwsdk.provisioning.model.ProvisioningServiceError;
+import com.gemalto.mfs.mwsdk.provisioning.model.ProvisioningServiceMessage;
+import com.gemalto.mfs.mwsdk.provisioning.sdkconfig.ProvisioningBusinessService;
+import com.thalesgroup.tshpaysample.sdk.SdkHelper;
+import com.thalesgroup.tshpaysample.sdk.push.TshPush;
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Single entry point for all payment key replenishment requests.
+ * <p/>
+ * At most one request per tokenized card id is waiting or in flight. Further requests for the same
+ * card are merged into it. A forced request supersedes a non-forced one: it upgrades the waiting
+ * request or it is sent right after the one in flight. Failed requests are retried with exponential
+ * backoff and jitter. Request without any result within {@link #IN_FLIGHT_TIMEOUT_MS} counts as failed,
+ * late result of such attempt is ignored. The default card is always sent first.
+ * <p/>
+ * Requests made ahead of time by the {@link ReplenishmentForecaster} are sent as forced even if
+ * the SDK does not report the card as needing replenishment yet.
+ */
+public final class ReplenishmentScheduler {
+
+    //region Defines
+
+    private static final String TAG = ReplenishmentScheduler.class.getSimpleName();
+
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BACKOFF_BASE_MS = 2_000;
+    private static final long BACKOFF_MAX_MS = 5 * 60 * 1000;
+    private static final long IN_FLIGHT_TIMEOUT_MS = 2 * 60 * 1000;
+
+    private final Map<String, Request> mRequests = new LinkedHashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Random mRandom = new Random();
+    private int mInFlightCount;
+    private int mRequestedCount;
+    private int mCoalescedCount;
+    private int mSentCount;
+    private int mFailedCount;
+    private int mSkippedCount;
+    private int mAheadCount;
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Requests replenishment of the card if it needs it.
+     *
+     * @param tokenizedCardId Tokenized card id.
+     * @param forced          Forced replenishment, e.g. when the backend or the payment reported missing keys.
+     * @param status          Already known card status or {@code null} to load it before sending.
+     */
+    public void request(@NonNull final String tokenizedCardId,
+                        final boolean forced,
+                        @Nullable final DigitalizedCardStatus status) {
+        enqueue(tokenizedCardId, forced, false, status);
+    }
+
+    /**
+     * Requests replenishment of the card which is expected to run out of keys soon.
+     *
+     * @param tokenizedCardId Tokenized card id.
+     */
+    public void requestAhead(@NonNull final String tokenizedCardId) {
+        enqueue(tokenizedCardId, false, true, null);
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "ReplenishmentScheduler{" +
+                "pending=" + mRequests.size() +
+                ", inFlight=" + mInFlightCount +
+                ", requested=" + mRequestedCount +
+                ", coalesced=" + mCoalescedCount +
+                ", sent=" + mSentCount +
+                ", sentAhead=" + mAheadCount +
+                ", failed=" + mFailedCount +
+                ", skipped=" + mSkippedCount +
+                '}';
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private void enqueue(@NonNull final String tokenizedCardId,
+                         final boolean forced,
+                         final boolean ahead,
+                         @Nullable final DigitalizedCardStatus status) {
+        synchronized (this) {
+            mRequestedCount++;
+
+            final Request existing = mRequests.get(tokenizedCardId);
+            if (existing != null) {
+                mCoalescedCount++;
+                if (existing.mInFlight) {
+                    // Send forced one again once the current request finishes.
+                    existing.mForcedFollowUp |= forced && !existing.mForced;
+                } else {
+                    existing.mForced |= forced;
+                    existing.mAhead |= ahead;
+                    if (status != null) {
+                        existing.mStatus = status;
+                    }
+                }
+                AppLoggerHelper.debug(TAG, "Merged replenishment request of %s (forced=%b)", tokenizedCardId, forced);
+                return;
+            }
+
+            final Request request = new Request(tokenizedCardId, forced, status);
+            request.mAhead = ahead;
+            mRequests.put(tokenizedCardId, request);
+        }
+
+        dispatch();
+    }
+
+    private void dispatch() {
+        final String defaultCardId = SdkHelper.getInstance().getTshPaymentListener().getDefaultCardId().getValue();
+        final long now = SystemClock.elapsedRealtime();
+        final List<Request> toSend = new ArrayList<>();
+
+        synchronized (this) {
+            // Default card goes first, the rest in the order of the requests.
+            final Request defaultRequest = defaultCardId != null ? mRequests.get(defaultCardId) : null;
+            if (defaultRequest != null && isReady(defaultRequest, now) && mInFlightCount < MAX_IN_FLIGHT) {
+                start(defaultRequest, toSend);
+            }
+
+            for (final Request loopRequest : mRequests.values()) {
+                if (mInFlightCount >= MAX_IN_FLIGHT) {
+                    break;
+                }
+                if (isReady(loopRequest, now)) {
+                    start(loopRequest, toSend);
+                }
+            }
+        }
+
+        for (final Request loopRequest : toSend) {
+            send(loopRequest);
+        }
+    }
+
+    // Must be called with the lock held.
+    private boolean isReady(@NonNull final Request request, final long now) {
+        return !request.mInFlight && request.mNotBefore <= now;
+    }
+
+    // Must be called with the lock held.
+    private void start(@NonNull final Request request, @NonNull final List<Request> toSend) {
+        request.mInFlight = true;
+        request.mAttempt++;
+        mInFlightCount++;
+        toSend.add(request);
+    }
+
+    private void send(@NonNull final Request request) {
+        final DigitalizedCardStatus status;
+        final boolean forced;
+        final boolean ahead;
+        final int attempt;
+        synchronized (this) {
+            status = request.mStatus;
+            forced = request.mForced;
+            ahead = request.mAhead;
+            attempt = request.mAttempt;
+        }
+
+        // SDK does not guarantee any callback. Do not let the card wait forever.
+        mHandler.postAtTime(() -> onRequestFailed(request, attempt, "No result in " + IN_FLIGHT_TIMEOUT_MS + " ms"),
+                request, SystemClock.uptimeMillis() + IN_FLIGHT_TIMEOUT_MS);
+
+        if (status != null) {
+            sendIfNeeded(request, attempt, status, forced, ahead);
+            return;
+        }
+
+        final DigitalizedCard digitalizedCard = DigitalizedCardManager.getDigitalizedCard(request.mTokenizedCardId);
+        digitalizedCard.getCardState(new AsyncHelperCardState(new AsyncHelperCardState.Delegate() {
+            @Override
+            public void onSuccess(final DigitalizedCardStatus value) {
+                SdkHelper.getInstance().getCardSnapshotStore().updateStatus(request.mTokenizedCardId, value);
+                SdkHelper.getInstance().getReplenishmentForecaster().onStatusLoaded(request.mTokenizedCardId, value);
+                sendIfNeeded(request, attempt, value, forced, ahead);
+            }
+
+            @Override
+            public void onError(final String error) {
+                onRequestFailed(request, attempt, error);
+            }
+        }));
+    }
+
+    private void sendIfNeeded(@NonNull final Request request,
+                              final int attempt,
+                              @NonNull final DigitalizedCardStatus status,
+                              final boolean forced,
+                              final boolean ahead) {
+        // Forecast might be based on an old number of keys. Ask ahead only if the real one is running out.
+        final boolean needed = status.needsReplenishment()
+                || (ahead && SdkHelper.getInstance().getReplenishmentForecaster().isRunningOut(request.mTokenizedCardId, status));
+        if (!needed) {
+            synchronized (this) {
+                mSkippedCount++;
+            }
+            onRequestFinished(request, attempt);
+            return;
+        }
+
+        // SDK would ignore non-forced request while the card has enough keys.
+        final boolean sendForced = forced || (ahead && !status.needsReplenishment());
+        synchronized (this) {
+            mSentCount++;
+            if (ahead) {
+                mAheadCount++;
+            }
+        }
+
+        final ProvisioningBusinessService businessService = ProvisioningServiceManager.getProvisioningBusinessService();
+        businessService.sendRequestForReplenishment(request.mTokenizedCardId, new ReplenishmentListener(request, attempt, sendForced), sendForced);
+    }
+
+    /**
+     * Ends the attempt unless it has already ended, e.g. by the timeout.
+     * Must be called with the lock held.
+     *
+     * @return {@code False} if the result belongs to an attempt which is not in flight anymore.
+     */
+    private boolean endAttempt(@NonNull final Request request, final int attempt) {
+        if (!request.mInFlight || request.mAttempt != attempt || mRequests.get(request.mTokenizedCardId) != request) {
+            return false;
+        }
+
+        request.mInFlight = false;
+        mInFlightCount--;
+        mHandler.removeCallbacksAndMessages(request);
+        return true;
+    }
+
+    // Must be called with the lock held.
+    private void remove(@NonNull final Request request) {
+        mRequests.remove(request.mTokenizedCardId);
+        if (request.mForcedFollowUp) {
+            mRequests.put(request.mTokenizedCardId, new Request(request.mTokenizedCardId, true, null));
+        }
+    }
+
+    private void onRequestFinished(@NonNull final Request request,
+                                   final int attempt) {
+        synchronized (this) {
+            if (!endAttempt(request, attempt)) {
+                AppLoggerHelper.debug(TAG, "Ignoring late result of %s", request.mTokenizedCardId);
+                return;
+            }
+            remove(request);
+        }
+
+        AppLoggerHelper.debug(TAG, "Replenishment of %s finished: %s", request.mTokenizedCardId, this);
+        dispatch();
+    }
+
+    private void onRequestFailed(@NonNull final Request request,
+                                 final int attempt,
+                                 final String error) {
+        final long delay;
+        synchronized (this) {
+            if (!endAttempt(request, attempt)) {
+                AppLoggerHelper.debug(TAG, "Ignoring late failure of %s: %s", request.mTokenizedCardId, error);
+                return;
+            }
+            mFailedCount++;
+
+            if (request.mAttempt >= MAX_ATTEMPTS) {
+                // Forced request which came meanwhile gets its own attempts.
+                remove(request);
+                delay = -1;
+            } else {
+                // Status might change meanwhile. Load it again before the next attempt.
+                final long backoff = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << (request.mAttempt - 1));
+                delay = backoff / 2 + (long) (mRandom.nextDouble() * backoff);
+                request.mStatus = null;
+                request.mForced |= request.mForcedFollowUp;
+                request.mForcedFollowUp = false;
+                request.mNotBefore = SystemClock.elapsedRealtime() + delay;
+            }
+        }
+
+        if (delay < 0) {
+            AppLoggerHelper.error(TAG, "Giving up replenishment of %s after %d attempts: %s. %s",
+                    request.mTokenizedCardId, request.mAttempt, error, this);
+            dispatch();
+        } else {
+            AppLoggerHelper.warn(TAG, "Replenishment of %s failed (%s), attempt %d, retry in %d ms",
+                    request.mTokenizedCardId, error, request.mAttempt, delay);
+            mHandler.postDelayed(this::dispatch, delay);
+        }
+    }
+
+    /**
+     * Replenishment request of one card. Guarded by the scheduler lock.
+     */
+    private static final class Request {
+        private final String mTokenizedCardId;
+        private boolean mForced;
+        private boolean mForcedFollowUp;
+        private boolean mAhead;
+        private DigitalizedCardStatus mStatus;
+        private boolean mInFlight;
+        private int mAttempt;
+        private long mNotBefore;
+
+        Request(final String tokenizedCardId,
+                final boolean forced,
+                final DigitalizedCardStatus status) {
+            mTokenizedCardId = tokenizedCardId;
+            mForced = forced;
+            mStatus = status;
+        }
+    }
+
+    /**
+     * By using this listener instead of the generic one in TshPush we will observe only the result
+     * of calling the ProvisioningBusinessService#sendRequestForReplenishment() API which uses
+     * same PushServiceListener API, but there is no push message processing involved.
+     */
+    private final class ReplenishmentListener implements PushServiceListener {
+
+        private final Request mRequest;
+        private final int mAttempt;
+        private final boolean mWasForced;
+
+        ReplenishmentListener(final Request request,
+                              final int attempt,
+                              final boolean wasForced) {
+            mRequest = request;
+            mAttempt = attempt;
+            mWasForced = wasForced;
+        }
+
+        @Override
+        public void onError(final ProvisioningServiceError provisioningServiceError) {
+            AppLoggerHelper.error(TAG, "Failed to send replenishment request for card %s, wasForced=%b, ProvisioningServiceError: %s:%s",
+                    mRequest.mTokenizedCardId, mWasForced,
+                    provisioningServiceError.getSdkErrorCode(), provisioningServiceError.getErrorMessage());
+
+            onRequestFailed(mRequest, mAttempt, provisioningServiceError.getErrorMessage());
+        }
+
+        @Override
+        public void onUnsupportedPushContent(final Bundle bundle) {
+
+            // This should never ever happen in the replenishment use case as we are not passing
+            // a push message. No other callback follows, so count it as a failed attempt.
+            AppLoggerHelper.warn(TAG, "Hit onUnsupportedPushContent() when attempting to replenish card %s", mRequest.mTokenizedCardId);
+            onRequestFailed(mRequest, mAttempt, "Unsupported push content");
+        }
+
+        @Override
+        public void onServerMessage(final String tokenizedCardId,
+                                    final ProvisioningServiceMessage provisioningServiceMessage) {
+            // Should not go through here either, but let's log it in case we will
+            AppLoggerHelper.debug(TAG, "onServerMessage(%s, %s) when replenishing card %s", tokenizedCardId, provisioningServiceMessage.getMsgCode(), mRequest.mTokenizedCardId);
+        }
+
+        @Override
+        public void onComplete() {
+
+            // For MC card it only means that we sent out the replenishment request and we need to wait
+            // a push message to come once the SUKs are prepared to be fetched from the backend.
+            AppLoggerHelper.info(TAG, "Replenishment request for card %s (wasForced=%b) was COMPLETED", mRequest.mTokenizedCardId, mWasForced);
+
+            // For Visa card this means we are done and the card is ready with new LUK
+            // Thus we'll check if it is a Visa card and if so we'll reuse the push message handling code to notify the user
+            final String digitalCardId = DigitalizedCardManager.getDigitalCardId(mRequest.mTokenizedCardId);
+
+            if(digitalCardId != null && digitalCardId.startsWith("HCESDKVTS")){
+                AppLoggerHelper.debug(TAG, "Emitting replenishment message for card: %s", digitalCardId);
+                SdkHelper.getInstance().whenPushReady(() -> {
+                    final TshPush tshPush = SdkHelper.getInstance().getPush();
+                    tshPush.onVisaCardReplenished(mRequest.mTokenizedCardId);
+                    tshPush.onComplete();
+                });
+            }
+
+            onRequestFinished(mRequest, mAttempt);
+        }
+    }
+
+    //endregion
+}
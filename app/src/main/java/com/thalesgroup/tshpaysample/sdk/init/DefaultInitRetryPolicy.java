@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.init;
+
+import androidx.annotation.NonNull;
+
+import com.gemalto.mfs.mwsdk.sdkconfig.SDKInitializeErrorCode;
+
+import java.util.Random;
+
+/**
+ * Retries failures of SDK components and storage as they are, wipes only data which can't be migrated
+ * and waits with exponential backoff and jitter in between. Component and storage failures never wipe
+ * the data. Once the attempts run out, init fails and the user can retry it later.
+ */
+public class DefaultInitRetryPolicy implements InitRetryPolicy {
+
+    //region Defines
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BACKOFF_BASE_MS = 1_000;
+    private static final long BACKOFF_MAX_MS = 30_000;
+
+    private final Random mRandom = new Random();
+
+    //endregion
+
+    //region InitRetryPolicy
+
+    @NonNull
+    @Override
+    public Classification classify(@NonNull final SDKInitializeErrorCode errorCode,
+                                   final int failedAttempts) {
+        switch (errorCode) {
+            case INTERNAL_COMPONENT_ERROR:
+            case SDK_INIT_FAILED:
+            case STORAGE_COMPONENT_ERROR:
+                // Storage might be just locked or busy. Wiping it would delete all cards.
+                return Classification.TRANSIENT;
+            case INVALID_PREVIOUS_VERSION:
+            case ASM_INIT_ERROR:
+            case ASM_MIGRATION_ERROR:
+                return Classification.NEEDS_WIPE;
+            default:
+                return Classification.FATAL;
+        }
+    }
+
+    @Override
+    public int getMaxAttempts() {
+        return MAX_ATTEMPTS;
+    }
+
+    @Override
+    public long getRetryDelayMs(final int failedAttempts) {
+        final long backoff = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(failedAttempts - 1, 16));
+        return backoff / 2 + (long) (mRandom.nextDouble() * backoff);
+    }
+
+    //endregion
+}
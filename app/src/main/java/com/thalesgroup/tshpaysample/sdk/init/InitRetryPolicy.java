@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.init;
+
+import androidx.annotation.NonNull;
+
+import com.gemalto.mfs.mwsdk.sdkconfig.SDKInitializeErrorCode;
+
+/**
+ * Decides how {@link TshInit} reacts to a failed SDK init attempt.
+ */
+public interface InitRetryPolicy {
+
+    enum Classification {
+        // Retry with the current data.
+        TRANSIENT,
+        // Data are not usable anymore. Wipe them and retry.
+        NEEDS_WIPE,
+        // Retry will not help.
+        FATAL
+    }
+
+    /**
+     * @param errorCode      Error of the failed attempt.
+     * @param failedAttempts Number of attempts which failed so far including this one. Starts with 1.
+     * @return How to continue. Ignored once {@link #getMaxAttempts()} attempts failed.
+     */
+    @NonNull
+    Classification classify(@NonNull final SDKInitializeErrorCode errorCode,
+                            final int failedAttempts);
+
+    /**
+     * @return Total number of attempts including the first one.
+     */
+    int getMaxAttempts();
+
+    /**
+     * @param failedAttempts Number of attempts which failed so far. Starts with 1.
+     * @return Delay before the next attempt.
+     */
+    long getRetryDelayMs(final int failedAttempts);
+}
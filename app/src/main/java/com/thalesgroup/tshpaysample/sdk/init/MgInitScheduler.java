@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.init;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.util.Locale;
+
+/**
+ * Decides when the Mobile Gateway configuration runs, so it never competes with a contactless payment.
+ * <p/>
+ * MG is configured right away when the user opened the app from the launcher. While a transaction
+ * is in progress it is held back until the transaction ends or {@link #MAX_HOLD_MS} elapses. Otherwise
+ * it runs as soon as the main thread gets idle. Idle trigger is armed only once the first activity or the HCE
+ * service was created, because on a cold start from a POS tap the main thread gets idle before the HCE service
+ * reports the transaction. Process started by something else arms it after {@link #ARM_TIMEOUT_MS}.
+ * <p/>
+ * All state is accessed only on the main thread.
+ */
+public final class MgInitScheduler {
+
+    //region Defines
+
+    private static final String TAG = MgInitScheduler.class.getSimpleName();
+
+    /**
+     * Upper bound of a hold in case the SDK never reports the end of the transaction.
+     */
+    private static final long MAX_HOLD_MS = 10_000;
+
+    /**
+     * Upper bound of the wait for an activity or the HCE service, e.g. when the process was started by a push.
+     */
+    private static final long ARM_TIMEOUT_MS = 5_000;
+
+    private static final String TRIGGER_LAUNCHER = "launcher";
+    private static final String TRIGGER_IDLE = "idle";
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mHoldTimeoutRunnable = this::onHoldTimeout;
+    private final Runnable mArmRunnable = this::arm;
+    private final MessageQueue.IdleHandler mIdleHandler = () -> {
+        mIdleHandlerRegistered = false;
+        run(TRIGGER_IDLE);
+        return false;
+    };
+
+    private Runnable mTask;
+    private long mRequestedAt;
+    private long mHoldStartedAt;
+    private boolean mLauncherStart;
+    private boolean mTransactionInProgress;
+    private boolean mIdleHandlerRegistered;
+    private boolean mArmed;
+
+    private int mRunCount;
+    private int mHoldCount;
+    private int mHoldTimeoutCount;
+    private long mHeldMs;
+    private long mLastDeferralMs;
+    private long mMaxDeferralMs;
+    private String mLastTrigger;
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Schedules the MG configuration. Ignored while a previous one is still waiting.
+     *
+     * @param task MG configuration.
+     */
+    public void schedule(@NonNull final Runnable task) {
+        mHandler.post(() -> {
+            if (mTask != null) {
+                return;
+            }
+
+            mTask = task;
+            mRequestedAt = SystemClock.elapsedRealtime();
+            if (!mArmed) {
+                mHandler.postDelayed(mArmRunnable, ARM_TIMEOUT_MS);
+            }
+            dispatch();
+        });
+    }
+
+    /**
+     * Process was started, because the user opened the app. There is no payment to protect.
+     */
+    public void onLauncherStart() {
+        mHandler.post(() -> {
+            mLauncherStart = true;
+            dispatch();
+        });
+    }
+
+    /**
+     * First activity or the HCE service was created. From now on it is known whether a payment needs protection.
+     */
+    public void onEntryPointStarted() {
+        mHandler.post(this::arm);
+    }
+
+    /**
+     * NFC field was detected or the first APDU was received.
+     */
+    public void onTransactionStarted() {
+        mHandler.post(() -> {
+            if (!mTransactionInProgress) {
+                mTransactionInProgress = true;
+                mHoldStartedAt = SystemClock.elapsedRealtime();
+                if (mTask != null) {
+                    mHoldCount++;
+                }
+            }
+            removeIdleHandler();
+            mHandler.removeCallbacks(mHoldTimeoutRunnable);
+            mHandler.postDelayed(mHoldTimeoutRunnable, MAX_HOLD_MS);
+        });
+    }
+
+    /**
+     * Transaction was completed, failed or is waiting for the user authentication.
+     */
+    public void onTransactionFinished() {
+        mHandler.post(this::releaseHold);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "MgInitScheduler{" +
+                "runs=" + mRunCount +
+                ", lastTrigger=" + mLastTrigger +
+                ", lastDeferral=" + mLastDeferralMs + " ms" +
+                ", maxDeferral=" + mMaxDeferralMs + " ms" +
+                ", holds=" + mHoldCount +
+                ", holdTimeouts=" + mHoldTimeoutCount +
+                ", held=" + mHeldMs + " ms" +
+                '}';
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private void dispatch() {
+        if (mTask == null || mTransactionInProgress) {
+            return;
+        }
+
+        if (mLauncherStart) {
+            removeIdleHandler();
+            run(TRIGGER_LAUNCHER);
+        } else if (mArmed && !mIdleHandlerRegistered) {
+            mIdleHandlerRegistered = true;
+            Looper.getMainLooper().getQueue().addIdleHandler(mIdleHandler);
+        }
+    }
+
+    private void run(@NonNull final String trigger) {
+        if (mTask == null || mTransactionInProgress) {
+            return;
+        }
+
+        final Runnable task = mTask;
+        mTask = null;
+
+        mLastDeferralMs = SystemClock.elapsedRealtime() - mRequestedAt;
+        mMaxDeferralMs = Math.max(mMaxDeferralMs, mLastDeferralMs);
+        mLastTrigger = trigger;
+        mRunCount++;
+
+        AppLoggerHelper.debug(TAG, String.format(Locale.US, "Configuring MG after %d ms (%s). %s",
+                mLastDeferralMs, trigger, this));
+        task.run();
+    }
+
+    private void releaseHold() {
+        mHandler.removeCallbacks(mHoldTimeoutRunnable);
+        if (mTransactionInProgress) {
+            mTransactionInProgress = false;
+            mHeldMs += SystemClock.elapsedRealtime() - mHoldStartedAt;
+        }
+        dispatch();
+    }
+
+    private void arm() {
+        mHandler.removeCallbacks(mArmRunnable);
+        if (!mArmed) {
+            mArmed = true;
+            dispatch();
+        }
+    }
+
+    private void onHoldTimeout() {
+        mHoldTimeoutCount++;
+        AppLoggerHelper.warn(TAG, "Transaction end was not reported within " + MAX_HOLD_MS + " ms");
+        releaseHold();
+    }
+
+    private void removeIdleHandler() {
+        if (mIdleHandlerRegistered) {
+            mIdleHandlerRegistered = false;
+            Looper.getMainLooper().getQueue().removeIdleHandler(mIdleHandler);
+        }
+    }
+
+    //endregion
+}
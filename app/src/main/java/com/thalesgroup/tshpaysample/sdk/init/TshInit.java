@@ -8,7 +8,9 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -36,21 +38,65 @@ import com.gemalto.mfs.mwsdk.sdkconfig.SDKError;
 import com.gemalto.mfs.mwsdk.sdkconfig.SDKInitializeErrorCode;
 import com.gemalto.mfs.mwsdk.sdkconfig.SDKSetupProgressState;
 import com.thalesgroup.tshpaysample.R;
+import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
 public class TshInit {
 
     //region Defines
 
     private static final String TAG = TshInit.class.getSimpleName();
 
-    protected static final int INIT_DELAY_MS = 700;
-    protected static final int INIT_RETRY_DELAY_MS = 2500;
-    protected static final int INIT_ATTEMPTS = 3;
+    /**
+     * Maximum number of continuations waiting for the SDK to be ready.
+     */
+    protected static final int READY_QUEUE_CAPACITY = 64;
 
     protected Context mContext;
     protected int mInitAttemptCount = 0;
     protected MutableLiveData<TshInitState> mInitState = new MutableLiveData<>(new TshInitState(TshInitStateEnum.INACTIVE));
+    protected final MgInitScheduler mMgInitScheduler = new MgInitScheduler();
+    protected Executor mCpsExecutor;
+    protected Executor mMgExecutor;
+    protected InitRetryPolicy mRetryPolicy = new DefaultInitRetryPolicy();
+    protected InitSdkCallback mCpsCallback;
+    protected InitSdkCallback mMgCallback;
+
+    /**
+     * Independently initialized parts of the SDK. Combined state is published through {@link #getSdkInitState()}.
+     */
+    public enum Component {
+        CPS,
+        MG,
+        WSE
+    }
+
+    // State of each component and the last published combination. Guarded by mComponentStates.
+    private final Map<Component, TshInitState> mComponentStates = new EnumMap<>(Component.class);
+    private TshInitState mPublishedState;
+
+    // Init metrics. Guarded by mComponentStates.
+    private final Map<Component, Long> mComponentStartTimes = new EnumMap<>(Component.class);
+    private final Map<Component, Long> mComponentDurations = new EnumMap<>(Component.class);
+    private int mTransientRetryCount;
+    private int mWipeCount;
+
+    // One-shot barrier opened with the first successful init. Guarded by itself.
+    private final Deque<ReadyContinuation> mReadyQueue = new ArrayDeque<>();
+    private boolean mReady;
+    private int mReadyQueuedCount;
+    private int mReadyImmediateCount;
+    private int mReadyDroppedCount;
+    private int mReadyQueuePeak;
 
     public interface InitSdkCallback {
         void onSuccess();
@@ -72,31 +118,26 @@ public class TshInit {
         PaymentExperienceSettings.setPaymentExperience(mContext, PaymentExperience.ONE_TAP_ENABLED);
 
         // Notify UI, that we started with SDK init.
-        updateState(TshInitStateEnum.INIT_IN_PROGRESS);
+        updateState(Component.CPS, TshInitStateEnum.INIT_IN_PROGRESS, null);
+        updateState(Component.MG, TshInitStateEnum.INIT_IN_PROGRESS, null);
+
+        // CPS and MG are independent. Each of them is initialised on its own thread and tracks its own state.
+        // Threads are created once and kept for the process lifetime, SDK may still deliver callbacks there
+        // after init. Repeated init and retry reuse them.
+        if (mCpsExecutor == null) {
+            mCpsExecutor = createExecutor("TshInit-CPS");
+            mMgExecutor = createExecutor("TshInit-MG");
+        }
 
-        // CPS and MG might be initialised independently, however in order to keep
-        // code simpler and not keep track for multiple states, we would do it in series.
-        initCpsSdk(new InitSdkCallback() {
+        mCpsCallback = new InitSdkCallback() {
             @Override
             public void onSuccess() {
+                registerDeviceCVMPreEntryReceiver();
 
-                // Init of MG component is delayed in case that app cold starts when POS is tapped
-                // because it could slow down the payment processing otherwise
-                new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                    initMgSdk(new InitSdkCallback() {
-                        @Override
-                        public void onSuccess() {
-                            updateState(TshInitStateEnum.INIT_SUCCESSFUL);
-                        }
-
-                        @Override
-                        public void onError(final String error) {
-                            updateState(TshInitStateEnum.INIT_FAILED, error);
-                        }
-                    });
-                }, INIT_DELAY_MS);
+                // Payments are possible from now on.
+                updateState(Component.CPS, TshInitStateEnum.INIT_SUCCESSFUL, null);
 
-                registerDeviceCVMPreEntryReceiver();
+                checkWalletSecureEnrollment();
             }
 
             @Override
@@ -104,7 +145,75 @@ public class TshInit {
                 // Informational only. Actual error is handled by updateInitState.
                 AppLoggerHelper.error(TAG, "InitSdkCallback#onError(): " + error);
             }
-        });
+        };
+        mCpsExecutor.execute(() -> initCpsSdk(mCpsCallback));
+
+        // Init of MG component is held back in case that app cold starts when POS is tapped
+        // because it could slow down the payment processing otherwise.
+        mMgCallback = new InitSdkCallback() {
+            @Override
+            public void onSuccess() {
+                updateState(Component.MG, TshInitStateEnum.INIT_SUCCESSFUL, null);
+            }
+
+            @Override
+            public void onError(final String error) {
+                updateState(Component.MG, TshInitStateEnum.INIT_FAILED, error);
+            }
+        };
+        mMgInitScheduler.schedule(() -> mMgExecutor.execute(() -> initMgSdk(mMgCallback)));
+    }
+
+    /**
+     * Starts init of each failed component again, e.g. on user request. CPS gets the full number
+     * of attempts of the retry policy again. Does nothing for components which did not fail.
+     */
+    public void retry() {
+        if (getComponentState(Component.CPS).getState() == TshInitStateEnum.INIT_FAILED) {
+            updateState(Component.CPS, TshInitStateEnum.INIT_IN_PROGRESS, null);
+            mCpsExecutor.execute(() -> {
+                mInitAttemptCount = 0;
+                initCpsSdk(mCpsCallback);
+            });
+        }
+        if (getComponentState(Component.MG).getState() == TshInitStateEnum.INIT_FAILED) {
+            updateState(Component.MG, TshInitStateEnum.INIT_IN_PROGRESS, null);
+            mMgExecutor.execute(() -> initMgSdk(mMgCallback));
+        }
+        if (getComponentState(Component.WSE).getState() == TshInitStateEnum.INIT_FAILED) {
+            mCpsExecutor.execute(this::checkWalletSecureEnrollment);
+        }
+    }
+
+    /**
+     * Runs the continuation exactly once as soon as the SDK is initialized. If it already is,
+     * continuation is handed to the executor right away. Nothing is kept once it has been run,
+     * so later init state changes (e.g. another successful init after a retry) do not run it again.
+     *
+     * @param executor     Executor used to run the continuation.
+     * @param continuation Code which needs initialized SDK.
+     * @return {@code False} if the continuation was dropped because too many of them are already waiting.
+     */
+    public boolean whenReady(@NonNull final Executor executor,
+                             @NonNull final Runnable continuation) {
+        synchronized (mReadyQueue) {
+            if (!mReady) {
+                if (mReadyQueue.size() >= READY_QUEUE_CAPACITY) {
+                    mReadyDroppedCount++;
+                    AppLoggerHelper.warn(TAG, "whenReady(): Queue is full, dropping continuation. " + getReadyStats());
+                    return false;
+                }
+
+                mReadyQueue.add(new ReadyContinuation(executor, continuation));
+                mReadyQueuedCount++;
+                mReadyQueuePeak = Math.max(mReadyQueuePeak, mReadyQueue.size());
+                return true;
+            }
+            mReadyImmediateCount++;
+        }
+
+        executor.execute(continuation);
+        return true;
     }
 
     public void performWseIfNeeded(@NonNull final InitSdkCallback callback) {
@@ -160,36 +269,211 @@ public class TshInit {
         }
     }
 
+    @NonNull
+    public TshInitState getComponentState(@NonNull final Component component) {
+        synchronized (mComponentStates) {
+            final TshInitState state = mComponentStates.get(component);
+            return state != null ? state : new TshInitState(TshInitStateEnum.INACTIVE);
+        }
+    }
+
+    public MgInitScheduler getMgInitScheduler() {
+        return mMgInitScheduler;
+    }
+
+    /**
+     * Replaces the policy used for failed CPS init attempts. Must be called before {@link #init(Context)}.
+     */
+    public void setRetryPolicy(@NonNull final InitRetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
+    @NonNull
+    public String getInitStats() {
+        synchronized (mComponentStates) {
+            return "InitStats{" +
+                    "durations=" + mComponentDurations +
+                    ", cpsAttempts=" + mInitAttemptCount +
+                    ", transientRetries=" + mTransientRetryCount +
+                    ", wipes=" + mWipeCount +
+                    '}';
+        }
+    }
+
     //endregion
 
     //region Protected Helpers
 
-    protected void updateState(@NonNull final TshInitStateEnum state) {
+    protected void checkWalletSecureEnrollment() {
         // Wallet secure enrollment is expensive task and so we are calling in only when it's
         // necessary. During SDK init it's required only in case of migration when
         // we already have some tokens enrolled. Otherwise it will be done during initial
-        // card enrollment.
+        // card enrollment. It needs only CPS, so it does not wait for MG.
         final EnrollingBusinessService enrollingService = ProvisioningServiceManager.getEnrollingBusinessService();
-        if (state == TshInitStateEnum.INIT_SUCCESSFUL && enrollingService.isEnrolled() == EnrollmentStatus.ENROLLMENT_COMPLETE) {
+        if (enrollingService.isEnrolled() == EnrollmentStatus.ENROLLMENT_COMPLETE) {
+            updateState(Component.WSE, TshInitStateEnum.INIT_IN_PROGRESS, null);
             performWseIfNeeded(new InitSdkCallback() {
                 @Override
                 public void onSuccess() {
-                    updateState(state, null);
+                    updateState(Component.WSE, TshInitStateEnum.INIT_SUCCESSFUL, null);
                 }
 
                 @Override
                 public void onError(final String error) {
-                    updateState(TshInitStateEnum.INIT_FAILED, error);
+                    updateState(Component.WSE, TshInitStateEnum.INIT_FAILED, error);
                 }
             });
         } else {
-            updateState(state, null);
+            updateState(Component.WSE, TshInitStateEnum.INIT_SUCCESSFUL, null);
         }
     }
 
-    protected void updateState(@NonNull final TshInitStateEnum state,
+    protected void updateState(@NonNull final Component component,
+                               @NonNull final TshInitStateEnum state,
                                @Nullable final String error) {
-        mInitState.postValue(new TshInitState(state, error));
+        updateState(component, state, error, 0);
+    }
+
+    protected void updateState(@NonNull final Component component,
+                               @NonNull final TshInitStateEnum state,
+                               @Nullable final String error,
+                               final int attempt) {
+        final TshInitState combinedState;
+        synchronized (mComponentStates) {
+            mComponentStates.put(component, new TshInitState(state, error, attempt));
+            recordTiming(component, state);
+            combinedState = combineStates();
+
+            // Do not notify observers when the combination did not change.
+            if (mPublishedState != null
+                    && mPublishedState.getState() == combinedState.getState()
+                    && mPublishedState.getAttempt() == combinedState.getAttempt()
+                    && Objects.equals(mPublishedState.getError(), combinedState.getError())) {
+                return;
+            }
+            mPublishedState = combinedState;
+        }
+
+        AppLoggerHelper.debug(TAG, "%s %s => %s", component, state, combinedState);
+        mInitState.postValue(combinedState);
+
+        if (combinedState.getState() == TshInitStateEnum.INIT_SUCCESSFUL) {
+            AppLoggerHelper.info(TAG, "SDK init completed. " + getInitStats());
+            releaseReadyContinuations();
+        } else if (combinedState.getState() == TshInitStateEnum.INIT_FAILED) {
+            AppLoggerHelper.error(TAG, "SDK init failed. " + getInitStats());
+        }
+    }
+
+    // Must be called with mComponentStates lock held.
+    private void recordTiming(@NonNull final Component component,
+                              @NonNull final TshInitStateEnum state) {
+        final long now = SystemClock.elapsedRealtime();
+        switch (state) {
+            case INIT_IN_PROGRESS:
+                // Duration of the component includes all of its retries.
+                if (!mComponentStartTimes.containsKey(component)) {
+                    mComponentStartTimes.put(component, now);
+                }
+                break;
+            case INIT_SUCCESSFUL:
+            case INIT_FAILED:
+                final Long startedAt = mComponentStartTimes.get(component);
+                mComponentDurations.put(component, startedAt != null ? now - startedAt : 0);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Must be called with mComponentStates lock held.
+    @NonNull
+    private TshInitState combineStates() {
+        // Any failure is reported first, then pending retry.
+        for (final TshInitState loopState : mComponentStates.values()) {
+            if (loopState.getState() == TshInitStateEnum.INIT_FAILED) {
+                return loopState;
+            }
+        }
+        for (final TshInitState loopState : mComponentStates.values()) {
+            if (loopState.getState() == TshInitStateEnum.INIT_RETRYING) {
+                return loopState;
+            }
+        }
+
+        boolean allSuccessful = true;
+        boolean anyStarted = false;
+        for (final Component loopComponent : Component.values()) {
+            final TshInitState state = mComponentStates.get(loopComponent);
+            allSuccessful &= state != null && state.getState() == TshInitStateEnum.INIT_SUCCESSFUL;
+            anyStarted |= state != null && state.getState() != TshInitStateEnum.INACTIVE;
+        }
+
+        final TshInitState cpsState = mComponentStates.get(Component.CPS);
+        if (allSuccessful) {
+            return new TshInitState(TshInitStateEnum.INIT_SUCCESSFUL);
+        } else if (cpsState != null && cpsState.getState() == TshInitStateEnum.INIT_SUCCESSFUL) {
+            return new TshInitState(TshInitStateEnum.INIT_PAYMENT_READY);
+        } else if (anyStarted) {
+            return new TshInitState(TshInitStateEnum.INIT_IN_PROGRESS);
+        } else {
+            return new TshInitState(TshInitStateEnum.INACTIVE);
+        }
+    }
+
+    @NonNull
+    private static Executor createExecutor(@NonNull final String name) {
+        // Looper thread, because SDK might hand its callbacks to the thread which started it.
+        final HandlerThread thread = new HandlerThread(name);
+        thread.start();
+        return new Handler(thread.getLooper())::post;
+    }
+
+    private void releaseReadyContinuations() {
+        final List<ReadyContinuation> continuations;
+        synchronized (mReadyQueue) {
+            if (mReady) {
+                return;
+            }
+            mReady = true;
+            continuations = new ArrayList<>(mReadyQueue);
+            mReadyQueue.clear();
+        }
+
+        long maxWaitMs = 0;
+        for (final ReadyContinuation loopContinuation : continuations) {
+            maxWaitMs = Math.max(maxWaitMs, SystemClock.elapsedRealtime() - loopContinuation.mQueuedAt);
+            loopContinuation.mExecutor.execute(loopContinuation.mRunnable);
+        }
+
+        final long longestWaitMs = maxWaitMs;
+        AppLoggerHelper.debug(TAG, () -> "SDK ready, released " + continuations.size() + " continuations (longest wait "
+                + longestWaitMs + " ms). " + getReadyStats());
+    }
+
+    @NonNull
+    private String getReadyStats() {
+        synchronized (mReadyQueue) {
+            return "ReadyBarrier{" +
+                    "ready=" + mReady +
+                    ", pending=" + mReadyQueue.size() +
+                    ", queued=" + mReadyQueuedCount +
+                    ", immediate=" + mReadyImmediateCount +
+                    ", dropped=" + mReadyDroppedCount +
+                    ", peak=" + mReadyQueuePeak +
+                    '}';
+        }
+    }
+
+    private static final class ReadyContinuation {
+        private final Executor mExecutor;
+        private final Runnable mRunnable;
+        private final long mQueuedAt = SystemClock.elapsedRealtime();
+
+        ReadyContinuation(final Executor executor, final Runnable runnable) {
+            mExecutor = executor;
+            mRunnable = runnable;
+        }
     }
 
 
@@ -235,42 +519,55 @@ public class TshInit {
         return new SDKControllerListener() {
             @Override
             public void onError(final SDKError<SDKInitializeErrorCode> initializeError) {
-                // Internal callback only.
-                callback.onError(initializeError.getErrorMessage());
-
-                // Update data layer and notify UI.
-                updateState(TshInitStateEnum.INIT_FAILED, initializeError.getErrorMessage());
+                final SDKInitializeErrorCode errorCode = initializeError.getErrorCode();
+                final String errorMessage = initializeError.getErrorMessage();
 
-                if (initializeError.getErrorCode() == SDKInitializeErrorCode.SDK_INITIALIZED) {
+                if (errorCode == SDKInitializeErrorCode.SDK_INITIALIZED) {
                     callback.onSuccess();
-                } else if (SDKInitializeErrorCode.SDK_INITIALIZING_IN_PROGRESS == initializeError.getErrorCode()) {
+                    return;
+                } else if (errorCode == SDKInitializeErrorCode.SDK_INITIALIZING_IN_PROGRESS) {
                     AppLoggerHelper.info(TAG, "SDK_INITIALIZING_IN_PROGRESS");
-                } else if (mInitAttemptCount < INIT_ATTEMPTS && (
-                        SDKInitializeErrorCode.INTERNAL_COMPONENT_ERROR == initializeError.getErrorCode() ||
-                                SDKInitializeErrorCode.SDK_INIT_FAILED == initializeError.getErrorCode() ||
-                                SDKInitializeErrorCode.STORAGE_COMPONENT_ERROR == initializeError.getErrorCode() ||
-                                SDKInitializeErrorCode.INVALID_PREVIOUS_VERSION == initializeError.getErrorCode() ||
-                                SDKInitializeErrorCode.ASM_INIT_ERROR == initializeError.getErrorCode() ||
-                                SDKInitializeErrorCode.ASM_MIGRATION_ERROR == initializeError.getErrorCode())) {
+                    return;
+                }
 
-                    try {
+                // Internal callback only.
+                callback.onError(errorMessage);
 
+                final InitRetryPolicy.Classification classification = mRetryPolicy.classify(errorCode, mInitAttemptCount);
+                AppLoggerHelper.warn(TAG, "CPS init attempt %d failed: %s (%s)", mInitAttemptCount, errorCode, classification);
+
+                if (classification == InitRetryPolicy.Classification.FATAL || mInitAttemptCount >= mRetryPolicy.getMaxAttempts()) {
+                    // Update data layer and notify UI.
+                    updateState(Component.CPS, TshInitStateEnum.INIT_FAILED, errorMessage);
+                    return;
+                }
+
+                if (classification == InitRetryPolicy.Classification.NEEDS_WIPE) {
+                    try {
                         SDKDataController.INSTANCE.wipeAll(mContext);
-                        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                            initCpsSdk(callback);
-                        }, INIT_RETRY_DELAY_MS);
+                        SdkHelper.getInstance().getCardArtStore().clear();
+                        SdkHelper.getInstance().getCardSnapshotStore().clear();
+                        SdkHelper.getInstance().getReplenishmentForecaster().clear();
                     } catch (final Exception exception) {
-                        callback.onError(initializeError.getErrorMessage() + " e::" + exception.getMessage());
+                        updateState(Component.CPS, TshInitStateEnum.INIT_FAILED, errorMessage + " e::" + exception.getMessage());
+                        return;
                     }
+                }
 
-
-                } else {
-                    callback.onError(initializeError.getErrorMessage());
-
-                    // Update data layer and notify UI.
-                    updateState(TshInitStateEnum.INIT_FAILED, initializeError.getErrorMessage());
+                synchronized (mComponentStates) {
+                    if (classification == InitRetryPolicy.Classification.NEEDS_WIPE) {
+                        mWipeCount++;
+                    } else {
+                        mTransientRetryCount++;
+                    }
                 }
 
+                // Not a failure yet. Tell UI which attempt comes next.
+                final long delayMs = mRetryPolicy.getRetryDelayMs(mInitAttemptCount);
+                updateState(Component.CPS, TshInitStateEnum.INIT_RETRYING, null, mInitAttemptCount + 1);
+                new Handler(Looper.getMainLooper()).postDelayed(() -> {
+                    mCpsExecutor.execute(() -> initCpsSdk(callback));
+                }, delayMs);
             }
 
             @Override
@@ -7,15 +7,20 @@ package com.thalesgroup.tshpaysample.sdk.init;
 public class TshInitState {
     private final TshInitStateEnum mState;
     private final String mError;
+    private final int mAttempt;
 
     public TshInitState(final TshInitStateEnum state) {
-        mState = state;
-        mError = null;
+        this(state, null);
     }
 
     public TshInitState(final TshInitStateEnum state, final String error) {
+        this(state, error, 0);
+    }
+
+    public TshInitState(final TshInitStateEnum state, final String error, final int attempt) {
         mState = state;
         mError = error;
+        mAttempt = attempt;
     }
 
     public TshInitStateEnum getState() {
@@ -25,6 +30,19 @@ public class TshInitState {
     public String getError() {
         return mError;
     }
+
+    /**
+     * @return Number of the upcoming attempt for {@link TshInitStateEnum#INIT_RETRYING}, otherwise 0.
+     */
+    public int getAttempt() {
+        return mAttempt;
+    }
+
+    @Override
+    public String toString() {
+        final String attempt = mAttempt > 0 ? "#" + mAttempt : "";
+        return mError != null ? mState + attempt + "(" + mError + ")" : mState + attempt;
+    }
 }
 
 
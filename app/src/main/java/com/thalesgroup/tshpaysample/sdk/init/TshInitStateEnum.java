@@ -4,5 +4,9 @@ public enum TshInitStateEnum {
     INACTIVE,
     INIT_IN_PROGRESS,
     INIT_FAILED,
+    // Previous attempt failed, next one is scheduled.
+    INIT_RETRYING,
+    // CPS is ready and payments are possible. Mobile Gateway or wallet secure enrollment is still running.
+    INIT_PAYMENT_READY,
     INIT_SUCCESSFUL
 }
@@ -0,0 +1,357 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.logger;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds the archive of secure log files and app diagnostics on a background thread.
+ * <p/>
+ * Secure log files are encrypted, so they are stored without compression. STORED entries need their
+ * CRC up front, which would mean reading each file twice. CRC of every file is therefore kept in
+ * an index together with its size and modification time, and rolled files which did not change since
+ * the last export are read only once. Files are copied with a large buffer, and only the length seen
+ * at the start is copied, so the log which is being written meanwhile does not break the entry.
+ * <p/>
+ * Archive is written to a temporary file first, so an interrupted export never leaves a broken archive behind.
+ */
+public final class SecureLogExporter {
+
+    //region Defines
+
+    private static final String TAG = SecureLogExporter.class.getSimpleName();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INDEX_VERSION = 1;
+    private static final String INDEX_FILE = "export.idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    public interface Delegate {
+        /**
+         * Called on the main thread whenever the progress moves.
+         *
+         * @param percent Progress of the export in the range 0 - 100.
+         */
+        void onProgress(final int percent);
+
+        /**
+         * Called on the main thread once the export is done.
+         *
+         * @param archive Created archive or {@code null} if the export failed.
+         */
+        void onFinished(@Nullable final File archive);
+    }
+
+    /**
+     * Diagnostics which are not files yet. Written into the working directory before archiving.
+     */
+    public interface Artifact {
+        void writeTo(@NonNull final OutputStream outputStream) throws IOException;
+    }
+
+    private static final class Source {
+        private final String mName;
+        private final File mFile;
+        private final boolean mStored;
+
+        Source(@NonNull final String name, @NonNull final File file, final boolean stored) {
+            mName = name;
+            mFile = file;
+            mStored = stored;
+        }
+    }
+
+    private static final class IndexEntry {
+        private final long mLength;
+        private final long mLastModified;
+        private final long mCrc;
+
+        IndexEntry(final long length, final long lastModified, final long crc) {
+            mLength = length;
+            mLastModified = lastModified;
+            mCrc = crc;
+        }
+    }
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, TAG));
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean mRunning = new AtomicBoolean();
+    private final File mWorkDir;
+
+    // Accessed only on the export thread.
+    private Map<String, IndexEntry> mIndex;
+    private int mReportedPercent;
+
+    //endregion
+
+    //region Life Cycle
+
+    /**
+     * @param workDir Directory for the archive, the artifacts and the index. Typically inside the cache dir.
+     */
+    public SecureLogExporter(@NonNull final File workDir) {
+        mWorkDir = workDir;
+    }
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Starts the export unless another one is running.
+     *
+     * @param logFiles    Secure log files. Stored without compression.
+     * @param artifacts   Diagnostics keyed by the entry name. Written on the export thread and compressed.
+     * @param archiveName File name of the archive inside the working directory.
+     * @param delegate    Progress and result listener.
+     * @return {@code False} if the export was already running.
+     */
+    public boolean export(@NonNull final List<File> logFiles,
+                          @NonNull final Map<String, Artifact> artifacts,
+                          @NonNull final String archiveName,
+                          @NonNull final Delegate delegate) {
+        if (!mRunning.compareAndSet(false, true)) {
+            AppLoggerHelper.warn(TAG, "Export is already running");
+            return false;
+        }
+
+        mExecutor.execute(() -> {
+            File retValue = null;
+            try {
+                retValue = exportBlocking(logFiles, artifacts, archiveName, delegate);
+            } catch (final IOException | RuntimeException exception) {
+                AppLoggerHelper.exception(TAG, "Failed to export secure log", exception);
+            } finally {
+                mRunning.set(false);
+            }
+
+            final File archive = retValue;
+            mHandler.post(() -> delegate.onFinished(archive));
+        });
+        return true;
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    @NonNull
+    private File exportBlocking(@NonNull final List<File> logFiles,
+                                @NonNull final Map<String, Artifact> artifacts,
+                                @NonNull final String archiveName,
+                                @NonNull final Delegate delegate) throws IOException {
+        if (!mWorkDir.isDirectory() && !mWorkDir.mkdirs()) {
+            throw new IOException("Cannot create " + mWorkDir);
+        }
+        if (mIndex == null) {
+            mIndex = loadIndex();
+        }
+
+        final List<Source> sources = new ArrayList<>();
+        for (final File loopFile : logFiles) {
+            if (loopFile.isFile()) {
+                sources.add(new Source(loopFile.getName(), loopFile, true));
+            }
+        }
+        for (final Map.Entry<String, Artifact> loopArtifact : artifacts.entrySet()) {
+            final File file = new File(mWorkDir, loopArtifact.getKey());
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+                loopArtifact.getValue().writeTo(outputStream);
+            }
+            sources.add(new Source(loopArtifact.getKey(), file, false));
+        }
+
+        // Snapshot of the lengths. Active log keeps growing, we copy only what is there now.
+        final long[] lengths = new long[sources.size()];
+        long totalBytes = 0;
+        for (int loopIndex = 0; loopIndex < lengths.length; loopIndex++) {
+            lengths[loopIndex] = sources.get(loopIndex).mFile.length();
+            totalBytes += lengths[loopIndex];
+        }
+
+        mReportedPercent = -1;
+        reportProgress(delegate, 0, totalBytes);
+
+        final File temp = new File(mWorkDir, archiveName + TEMP_SUFFIX);
+        final Map<String, IndexEntry> newIndex = new HashMap<>();
+        try {
+            writeArchive(temp, sources, lengths, newIndex, delegate, totalBytes);
+        } catch (final IOException exception) {
+            if (!temp.delete()) {
+                AppLoggerHelper.warn(TAG, "Failed to delete incomplete %s", temp);
+            }
+            throw exception;
+        }
+
+        // Replace the previous archive only with a complete one.
+        final File retValue = new File(mWorkDir, archiveName);
+        if (retValue.exists() && !retValue.delete()) {
+            throw new IOException("Cannot delete previous " + retValue);
+        }
+        if (!temp.renameTo(retValue)) {
+            throw new IOException("Cannot rename " + temp);
+        }
+
+        // Drop index entries of files which were deleted by rolling.
+        mIndex = newIndex;
+        saveIndex(newIndex);
+
+        AppLoggerHelper.info(TAG, "Exported %d files, %d bytes", sources.size(), totalBytes);
+        return retValue;
+    }
+
+    private void writeArchive(@NonNull final File archive,
+                              @NonNull final List<Source> sources,
+                              @NonNull final long[] lengths,
+                              @NonNull final Map<String, IndexEntry> newIndex,
+                              @NonNull final Delegate delegate,
+                              final long totalBytes) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long doneBytes = 0;
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive), BUFFER_SIZE))) {
+            for (int loopIndex = 0; loopIndex < lengths.length; loopIndex++) {
+                final Source source = sources.get(loopIndex);
+                final long length = lengths[loopIndex];
+
+                final ZipEntry entry = new ZipEntry(source.mName);
+                entry.setTime(source.mFile.lastModified());
+                if (source.mStored) {
+                    final IndexEntry indexEntry = indexEntry(source.mFile, length, buffer);
+                    newIndex.put(source.mFile.getAbsolutePath(), indexEntry);
+
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(length);
+                    entry.setCompressedSize(length);
+                    entry.setCrc(indexEntry.mCrc);
+                }
+
+                zipOutputStream.putNextEntry(entry);
+                try (InputStream inputStream = new FileInputStream(source.mFile)) {
+                    long remaining = length;
+                    while (remaining > 0) {
+                        final int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (read < 0) {
+                            throw new IOException(source.mName + " shrank during export");
+                        }
+                        zipOutputStream.write(buffer, 0, read);
+                        remaining -= read;
+                        doneBytes += read;
+                        reportProgress(delegate, doneBytes, totalBytes);
+                    }
+                }
+                zipOutputStream.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * @return Cached CRC of the first {@code length} bytes of the file or the newly computed one.
+     */
+    @NonNull
+    private IndexEntry indexEntry(@NonNull final File file,
+                                  final long length,
+                                  @NonNull final byte[] buffer) throws IOException {
+        final long lastModified = file.lastModified();
+        final IndexEntry cached = mIndex.get(file.getAbsolutePath());
+        if (cached != null && cached.mLength == length && cached.mLastModified == lastModified) {
+            return cached;
+        }
+
+        final CRC32 crc = new CRC32();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            long remaining = length;
+            while (remaining > 0) {
+                final int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException(file.getName() + " shrank during export");
+                }
+                crc.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        return new IndexEntry(length, lastModified, crc.getValue());
+    }
+
+    private void reportProgress(@NonNull final Delegate delegate,
+                                final long doneBytes,
+                                final long totalBytes) {
+        final int percent = totalBytes > 0 ? (int) (doneBytes * 100 / totalBytes) : 100;
+        if (percent != mReportedPercent) {
+            mReportedPercent = percent;
+            mHandler.post(() -> delegate.onProgress(percent));
+        }
+    }
+
+    @NonNull
+    private Map<String, IndexEntry> loadIndex() {
+        final Map<String, IndexEntry> retValue = new HashMap<>();
+        final File file = new File(mWorkDir, INDEX_FILE);
+        if (!file.exists()) {
+            return retValue;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != INDEX_VERSION) {
+                return retValue;
+            }
+            final int count = input.readInt();
+            for (int loopIndex = 0; loopIndex < count; loopIndex++) {
+                final String path = input.readUTF();
+                retValue.put(path, new IndexEntry(input.readLong(), input.readLong(), input.readLong()));
+            }
+        } catch (final IOException exception) {
+            // Index is only an optimisation. Start over.
+            AppLoggerHelper.warn(TAG, "Ignoring unreadable export index: %s", exception.getMessage());
+            retValue.clear();
+        }
+        return retValue;
+    }
+
+    private void saveIndex(@NonNull final Map<String, IndexEntry> index) {
+        final File file = new File(mWorkDir, INDEX_FILE);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(INDEX_VERSION);
+            output.writeInt(index.size());
+            for (final Map.Entry<String, IndexEntry> loopEntry : index.entrySet()) {
+                output.writeUTF(loopEntry.getKey());
+                output.writeLong(loopEntry.getValue().mLength);
+                output.writeLong(loopEntry.getValue().mLastModified);
+                output.writeLong(loopEntry.getValue().mCrc);
+            }
+        } catch (final IOException exception) {
+            AppLoggerHelper.warn(TAG, "Failed to save export index: %s", exception.getMessage());
+        }
+    }
+
+    //endregion
+}
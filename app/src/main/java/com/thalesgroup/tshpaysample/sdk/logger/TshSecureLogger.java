@@ -10,6 +10,7 @@ import android.content.Intent;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.FileProvider;
 
 import com.gemalto.mfs.mwsdk.payment.sdkconfig.SDKInitializer;
@@ -18,15 +19,16 @@ import com.thalesgroup.gemalto.securelog.SecureLog;
 import com.thalesgroup.gemalto.securelog.SecureLogConfig;
 import com.thalesgroup.gemalto.securelog.SecureLogLevel;
 import com.thalesgroup.tshpaysample.BuildConfig;
+import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.Map;
 
 public class TshSecureLogger {
 
@@ -77,8 +79,13 @@ public class TshSecureLogger {
     };
 
     private static final String TAG = TshSecureLogger.class.getSimpleName();
+    private static final String EXPORT_DIRECTORY = "secure_log_export";
+    private static final String ARCHIVE_FILE = "secure_log.zip";
+    private static final String FLIGHT_RECORDER_FILE = "payment_flight_recorder.bin";
+    private static final String PAYMENT_LATENCY_FILE = "payment_latency.txt";
 
     private SecureLog mSecureLog;
+    private SecureLogExporter mExporter;
 
     //endregion
 
@@ -105,85 +112,84 @@ public class TshSecureLogger {
         mSecureLog = SDKInitializer.INSTANCE.configureSecureLog(builder.build());
     }
 
-    public void deleteLogs() {
+    /**
+     * Writes app diagnostics (e.g. payment latency) into the secure log, so it is part of the shared logs.
+     */
+    public void log(@NonNull final String tag, @NonNull final String message) {
         if (mSecureLog == null) {
             AppLoggerHelper.error(TAG, "Secure logging is not initialised");
             return;
         }
 
-        mSecureLog.deleteFiles();
+        mSecureLog.i(tag, message);
     }
 
-    public void shareSecureLog(final Activity activity) {
+    public void deleteLogs() {
         if (mSecureLog == null) {
             AppLoggerHelper.error(TAG, "Secure logging is not initialised");
             return;
         }
 
-        final List<File> files = mSecureLog.getFiles();
-        if (files == null) {
-            // No log to share
+        mSecureLog.deleteFiles();
+    }
+
+    /**
+     * Exports the secure log together with the payment diagnostics on a background thread
+     * and offers the archive to share once it is done.
+     *
+     * @param activity Activity which starts the share intent. Skipped if it is gone meanwhile.
+     * @param delegate Optional progress listener.
+     */
+    public void shareSecureLog(@NonNull final Activity activity,
+                               @Nullable final SecureLogExporter.Delegate delegate) {
+        if (mSecureLog == null) {
+            AppLoggerHelper.error(TAG, "Secure logging is not initialised");
             return;
         }
 
-        // get parent file as the directory
-        final File directory = files.get(0).getParentFile();
-        final String outputZipPath = activity.getCacheDir().getAbsolutePath() + "/temp.zip";
-
-        final Thread zipTask = new Thread(() -> {
-            final File file = new File(outputZipPath);
-            // delete existing cached zip
-            if (!file.exists()) {
-                file.delete();
-            }
+        if (mExporter == null) {
+            mExporter = new SecureLogExporter(new File(activity.getCacheDir(), EXPORT_DIRECTORY));
+        }
 
-            zipFolder(directory.getAbsolutePath(), outputZipPath);
+        // There might be no log at all in release builds, but the payment diagnostics are still worth sharing.
+        final List<File> files = mSecureLog.getFiles();
 
-            // try to share the file by email
-            final Intent emailIntent = new Intent(Intent.ACTION_SEND);
-            emailIntent.setType("text/plain");
-            emailIntent.putExtra(Intent.EXTRA_EMAIL, new String[]{"youremail@xxx.com"});
-            emailIntent.putExtra(Intent.EXTRA_SUBJECT, "SecureLog files");
-            emailIntent.putExtra(Intent.EXTRA_TEXT, "Attachment with logs.");
+        final Map<String, SecureLogExporter.Artifact> artifacts = new LinkedHashMap<>();
+        artifacts.put(FLIGHT_RECORDER_FILE, SdkHelper.getInstance().getPaymentFlightRecorder()::writeTo);
+        artifacts.put(PAYMENT_LATENCY_FILE, outputStream -> outputStream.write(SdkHelper.getInstance()
+                .getTshPaymentListener().getPaymentLatencyTracer().toString().getBytes(StandardCharsets.UTF_8)));
 
-            if (!file.exists() || !file.canRead()) {
-                return;
+        mExporter.export(files != null ? new ArrayList<>(files) : Collections.emptyList(), artifacts, ARCHIVE_FILE, new SecureLogExporter.Delegate() {
+            @Override
+            public void onProgress(final int percent) {
+                if (delegate != null) {
+                    delegate.onProgress(percent);
+                }
             }
 
-            final Uri uri = FileProvider.getUriForFile(activity, BuildConfig.APPLICATION_ID + ".provider", file);
-            emailIntent.putExtra(Intent.EXTRA_STREAM, uri);
-            activity.startActivity(Intent.createChooser(emailIntent, "Pick an Email provider"));
-        });
-
-        zipTask.run();
-    }
-
-    //endregion
+            @Override
+            public void onFinished(@Nullable final File archive) {
+                if (delegate != null) {
+                    delegate.onFinished(archive);
+                }
 
-    //region Private Helpers
-
-    private void zipFolder(final String inputFolderPath, final String outZipPath) {
-        try {
-            final FileOutputStream fos = new FileOutputStream(outZipPath);
-            final ZipOutputStream zos = new ZipOutputStream(fos);
-            final File srcFile = new File(inputFolderPath);
-            final File[] files = srcFile.listFiles();
-
-            for (final File file : files) {
-                final byte[] buffer = new byte[1024];
-                final FileInputStream fis = new FileInputStream(file);
-                zos.putNextEntry(new ZipEntry(file.getName()));
-                int length;
-                while ((length = fis.read(buffer)) > 0) {
-                    zos.write(buffer, 0, length);
+                if (archive == null || activity.isFinishing() || activity.isDestroyed()) {
+                    return;
                 }
-                zos.closeEntry();
-                fis.close();
+
+                // try to share the file by email
+                final Intent emailIntent = new Intent(Intent.ACTION_SEND);
+                emailIntent.setType("text/plain");
+                emailIntent.putExtra(Intent.EXTRA_EMAIL, new String[]{"youremail@xxx.com"});
+                emailIntent.putExtra(Intent.EXTRA_SUBJECT, "SecureLog files");
+                emailIntent.putExtra(Intent.EXTRA_TEXT, "Attachment with logs.");
+
+                final Uri uri = FileProvider.getUriForFile(activity, BuildConfig.APPLICATION_ID + ".provider", archive);
+                emailIntent.putExtra(Intent.EXTRA_STREAM, uri);
+                emailIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                activity.startActivity(Intent.createChooser(emailIntent, "Pick an Email provider"));
             }
-            zos.close();
-        } catch (final IOException ioe) {
-            AppLoggerHelper.error(TAG, ioe.getMessage());
-        }
+        });
     }
 
     //endregion
@@ -0,0 +1,293 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.payment;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.gemalto.mfs.mwsdk.payment.PaymentServiceErrorCode;
+import com.thalesgroup.tshpaysample.utlis.Amount;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Always-on flight recorder of payment events.
+ * <p/>
+ * Keeps the last {@link #CAPACITY} events in a preallocated ring buffer. Writers claim a slot by
+ * an atomic increment and never block or allocate, so recording is cheap enough for release builds.
+ * Each slot is guarded by its sequence number, so the export skips slots overwritten while reading.
+ * <p/>
+ * Export is a compact big-endian binary file, see {@link #writeTo(OutputStream)}. It is turned back to
+ * text by {@link #decode(InputStream, StringBuilder)}, which does not use any Android API.
+ */
+public final class PaymentFlightRecorder {
+
+    //region Defines
+
+    /**
+     * Recorded event types. Only append new values, the ordinal is stored in the exported file.
+     */
+    public enum Type {
+        HCE_SERVICE_CREATED,
+        HCE_SERVICE_DESTROYED,
+        FIRST_TAP_COMPLETED,
+        TRANSACTION_STARTED,
+        AUTHENTICATION_REQUIRED,
+        READY_TO_TAP,
+        CREDENTIALS_TIMEOUT,
+        TRANSACTION_INTERRUPTED,
+        TRANSACTION_COMPLETED,
+        NEXT_TRANSACTION_READY,
+        ERROR,
+        REPLENISHMENT_REQUESTED,
+        REPLENISHMENT_FORCED
+    }
+
+    public static final int NO_VALUE = -1;
+
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_CARDS = 32;
+    private static final int UNKNOWN_CARD = 0xFF;
+    private static final long NO_AMOUNT = Amount.UNKNOWN.toWire();
+
+    private static final int MAGIC = 0x54504652; // "TPFR"
+    private static final int VERSION = 1;
+
+    // Cached, because Enum#values() clones the array on each call.
+    private static final Type[] TYPES = Type.values();
+
+    // Sequence number of the event in the slot, 0 while the slot is being written.
+    private final AtomicLongArray mSequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray mTimes = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray mValues = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray mAmounts = new AtomicLongArray(CAPACITY);
+    private final AtomicLong mNext = new AtomicLong();
+
+    // Cards seen by the recorder. Events store only the index into this table.
+    private final AtomicReferenceArray<String> mCards = new AtomicReferenceArray<>(MAX_CARDS);
+    private final AtomicInteger mCardCount = new AtomicInteger();
+
+    //endregion
+
+    //region Public API
+
+    public void record(@NonNull final Type type) {
+        record(type, null, NO_AMOUNT, NO_VALUE, NO_VALUE);
+    }
+
+    public void record(@NonNull final Type type,
+                       @Nullable final String cardId) {
+        record(type, cardId, NO_AMOUNT, NO_VALUE, NO_VALUE);
+    }
+
+    public void record(@NonNull final Type type,
+                       @Nullable final String cardId,
+                       @NonNull final Amount amount) {
+        record(type, cardId, amount.toWire(), NO_VALUE, NO_VALUE);
+    }
+
+    /**
+     * Records the event. Can be called from any thread and does not allocate.
+     *
+     * @param type        Type of the event.
+     * @param cardId      Tokenized card id or {@code null} if not known.
+     * @param amountWire  Amount in the {@link Amount#toWire()} form.
+     * @param retriesLeft Retries left of the interrupted transaction or {@link #NO_VALUE}.
+     * @param errorCode   Error code or {@link #NO_VALUE}.
+     */
+    public void record(@NonNull final Type type,
+                       @Nullable final String cardId,
+                       final long amountWire,
+                       final int retriesLeft,
+                       final int errorCode) {
+        final long sequence = mNext.incrementAndGet();
+        final int slot = (int) (sequence & MASK);
+
+        mSequences.set(slot, 0);
+        mTimes.set(slot, SystemClock.elapsedRealtimeNanos());
+        mValues.set(slot, pack(type, cardIndex(cardId), retriesLeft, errorCode));
+        mAmounts.set(slot, amountWire);
+        mSequences.set(slot, sequence);
+    }
+
+    /**
+     * Writes the recorded events in the binary form.
+     * <p/>
+     * Layout: magic, version, wall clock millis and elapsed realtime nanos at the time of export,
+     * card table (count and last 4 chars of each id), error code names (count and names), event count
+     * and the events ordered from the oldest. Event is sequence, elapsed realtime nanos, packed value
+     * (type, card index, retries left, error code) and amount in the {@link Amount#toWire()} form.
+     */
+    public void writeTo(@NonNull final OutputStream outputStream) throws IOException {
+        final DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeLong(System.currentTimeMillis());
+        output.writeLong(SystemClock.elapsedRealtimeNanos());
+
+        final int cardCount = Math.min(mCardCount.get(), MAX_CARDS);
+        output.writeByte(cardCount);
+        for (int loopIndex = 0; loopIndex < cardCount; loopIndex++) {
+            final String cardId = mCards.get(loopIndex);
+            output.writeUTF(cardId == null ? "" : cardId.substring(Math.max(0, cardId.length() - 4)));
+        }
+
+        final PaymentServiceErrorCode[] errorCodes = PaymentServiceErrorCode.values();
+        output.writeShort(errorCodes.length);
+        for (final PaymentServiceErrorCode loopCode : errorCodes) {
+            output.writeUTF(loopCode.name());
+        }
+
+        // Copy consistent slots first. Writers keep going meanwhile.
+        final long last = mNext.get();
+        final long first = Math.max(1, last - CAPACITY + 1);
+        final long[] events = new long[(int) (last - first + 1) * 4];
+        int count = 0;
+        for (long loopSequence = first; loopSequence <= last; loopSequence++) {
+            final int slot = (int) (loopSequence & MASK);
+            if (mSequences.get(slot) != loopSequence) {
+                continue;
+            }
+            final long time = mTimes.get(slot);
+            final long value = mValues.get(slot);
+            final long amount = mAmounts.get(slot);
+            if (mSequences.get(slot) != loopSequence) {
+                continue;
+            }
+            events[count * 4] = loopSequence;
+            events[count * 4 + 1] = time;
+            events[count * 4 + 2] = value;
+            events[count * 4 + 3] = amount;
+            count++;
+        }
+
+        output.writeInt(count);
+        for (int loopIndex = 0; loopIndex < count * 4; loopIndex++) {
+            output.writeLong(events[loopIndex]);
+        }
+        output.flush();
+    }
+
+    /**
+     * Decodes the file created by {@link #writeTo(OutputStream)} into one line per event.
+     */
+    public static void decode(@NonNull final InputStream inputStream,
+                              @NonNull final StringBuilder output) throws IOException {
+        final DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a payment flight recorder file");
+        }
+        final int version = input.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version: " + version);
+        }
+        final long exportedAtMillis = input.readLong();
+        final long exportedAtNanos = input.readLong();
+
+        final String[] cards = new String[input.readUnsignedByte()];
+        for (int loopIndex = 0; loopIndex < cards.length; loopIndex++) {
+            cards[loopIndex] = input.readUTF();
+        }
+        final String[] errorCodes = new String[input.readUnsignedShort()];
+        for (int loopIndex = 0; loopIndex < errorCodes.length; loopIndex++) {
+            errorCodes[loopIndex] = input.readUTF();
+        }
+
+        final int count = input.readInt();
+        for (int loopIndex = 0; loopIndex < count; loopIndex++) {
+            final long sequence = input.readLong();
+            final long time = input.readLong();
+            final long value = input.readLong();
+            final long amount = input.readLong();
+
+            final int typeOrdinal = (int) (value >>> 56);
+            final int cardIndex = (int) (value >>> 48) & 0xFF;
+            final int retriesLeft = (short) (value >>> 32);
+            final int errorCode = (int) value;
+
+            output.append(String.format(Locale.US, "#%d %tT.%<tL %s",
+                    sequence,
+                    exportedAtMillis - (exportedAtNanos - time) / 1_000_000,
+                    typeOrdinal < TYPES.length ? TYPES[typeOrdinal].name() : "TYPE_" + typeOrdinal));
+            if (cardIndex != UNKNOWN_CARD) {
+                output.append(" card=").append(cardIndex < cards.length ? ".." + cards[cardIndex] : "#" + cardIndex);
+            }
+            if (amount != NO_AMOUNT) {
+                output.append(" amount=").append(Amount.fromWire(amount));
+            }
+            if (retriesLeft != NO_VALUE) {
+                output.append(" retriesLeft=").append(retriesLeft);
+            }
+            if (errorCode != NO_VALUE) {
+                output.append(" error=");
+                if (typeOrdinal == Type.ERROR.ordinal() && errorCode >= 0 && errorCode < errorCodes.length) {
+                    output.append(errorCodes[errorCode]);
+                } else {
+                    output.append(errorCode);
+                }
+            }
+            output.append('\n');
+        }
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private static long pack(@NonNull final Type type,
+                             final int cardIndex,
+                             final int retriesLeft,
+                             final int errorCode) {
+        return ((long) type.ordinal() << 56)
+                | ((long) (cardIndex & 0xFF) << 48)
+                | ((long) (retriesLeft & 0xFFFF) << 32)
+                | (errorCode & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return Index of the card in the card table. Card is added if there is still space.
+     */
+    private int cardIndex(@Nullable final String cardId) {
+        if (cardId == null) {
+            return UNKNOWN_CARD;
+        }
+
+        while (true) {
+            final int count = Math.min(mCardCount.get(), MAX_CARDS);
+            for (int loopIndex = 0; loopIndex < count; loopIndex++) {
+                final String loopCard = mCards.get(loopIndex);
+                if (loopCard == null) {
+                    // Slot claimed by another writer which did not store the id yet.
+                    continue;
+                }
+                if (loopCard.equals(cardId)) {
+                    return loopIndex;
+                }
+            }
+
+            if (count == MAX_CARDS) {
+                return UNKNOWN_CARD;
+            }
+            if (mCardCount.compareAndSet(count, count + 1)) {
+                mCards.set(count, cardId);
+                return count;
+            }
+        }
+    }
+
+    //endregion
+}
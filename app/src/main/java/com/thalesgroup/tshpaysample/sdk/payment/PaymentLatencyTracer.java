@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.payment;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * End-to-end latency tracer of contactless payment sessions.
+ * <p/>
+ * Payment callbacks mark the session timeline with monotonic nanosecond timestamps and each finished
+ * phase is recorded into its own log-linear histogram (HDR style, 8 sub-buckets per power of two, so
+ * any value is known within 12.5%). All storage is preallocated and marks do not allocate, so they are
+ * safe to call from the payment callback thread. Only {@link #toString()} allocates.
+ */
+public final class PaymentLatencyTracer {
+
+    //region Defines
+
+    public enum Phase {
+        /** First APDU of the tap until the CVM prompt. */
+        APDU_TO_CVM,
+        /** CVM prompt until the credentials were provided by the user. */
+        CVM_TO_READY,
+        /** Credentials provided until the transaction was completed. Includes waiting for the second tap. */
+        READY_TO_COMPLETION,
+        /** First APDU of the last tap until the transaction was completed. Pure terminal time. */
+        TAP_TO_COMPLETION,
+        /** Transaction completed until the result fragment was displayed. */
+        COMPLETION_TO_UI,
+        /** Transaction completed until the SDK was ready for the next one. */
+        COMPLETION_TO_NEXT_READY
+    }
+
+    /**
+     * Session left open longer than this (e.g. user walked away after the CVM) is not continued by the next tap.
+     */
+    private static final long SESSION_TIMEOUT_NANOS = 60_000_000_000L;
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Covers values up to 2^27 us (~134 s). Longer ones are clamped into the last bucket.
+    static final int BUCKET_COUNT = 25 * SUB_BUCKETS;
+
+    private static final int PHASE_COUNT = Phase.values().length;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0};
+
+    private static final int MARK_TAP = 0;
+    private static final int MARK_CVM = 1;
+    private static final int MARK_READY = 2;
+    private static final int MARK_COMPLETED = 3;
+    private static final int MARK_COUNT = 4;
+
+    // Cached, because Enum#values() clones the array on each call.
+    private final Phase[] mPhases = Phase.values();
+
+    // Histograms. Values are in microseconds.
+    private final long[] mBuckets = new long[PHASE_COUNT * BUCKET_COUNT];
+    private final long[] mCount = new long[PHASE_COUNT];
+    private final long[] mSum = new long[PHASE_COUNT];
+    private final long[] mMin = new long[PHASE_COUNT];
+    private final long[] mMax = new long[PHASE_COUNT];
+
+    // Current session.
+    private final long[] mMarks = new long[MARK_COUNT];
+    private boolean mSessionOpen;
+    private long mSessionLastNanos;
+    private int mSessionRecordedPhases;
+
+    // Session counters.
+    private long mSessions;
+    private long mCompleted;
+    private long mErrors;
+    private long mInterruptions;
+
+    //endregion
+
+    //region Life Cycle
+
+    public PaymentLatencyTracer() {
+        reset();
+    }
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * First APDU of a tap was received.
+     */
+    public synchronized void onTransactionStarted() {
+        final long now = SystemClock.elapsedRealtimeNanos();
+
+        // Second tap of the two tap flow continues the session.
+        if (!mSessionOpen || now - mSessionLastNanos > SESSION_TIMEOUT_NANOS) {
+            for (int loopIndex = 0; loopIndex < MARK_COUNT; loopIndex++) {
+                mMarks[loopIndex] = 0;
+            }
+            mSessionOpen = true;
+            mSessionRecordedPhases = 0;
+            mSessions++;
+        }
+
+        mMarks[MARK_TAP] = now;
+        mSessionLastNanos = now;
+    }
+
+    public synchronized void onAuthenticationRequired() {
+        final long now = mark(MARK_CVM);
+        record(Phase.APDU_TO_CVM, MARK_TAP, now);
+    }
+
+    public synchronized void onReadyToTap() {
+        final long now = mark(MARK_READY);
+        record(Phase.CVM_TO_READY, MARK_CVM, now);
+    }
+
+    public synchronized void onTransactionInterrupted() {
+        mark(-1);
+        mInterruptions++;
+    }
+
+    public synchronized void onTransactionCompleted() {
+        final long now = mark(MARK_COMPLETED);
+        record(Phase.READY_TO_COMPLETION, MARK_READY, now);
+        record(Phase.TAP_TO_COMPLETION, MARK_TAP, now);
+        mCompleted++;
+        mSessionOpen = false;
+    }
+
+    public synchronized void onNextTransactionReady() {
+        final long now = mark(-1);
+        record(Phase.COMPLETION_TO_NEXT_READY, MARK_COMPLETED, now);
+    }
+
+    public synchronized void onError() {
+        mark(-1);
+        mErrors++;
+        mSessionOpen = false;
+    }
+
+    /**
+     * Payment screen displayed the fragment of the given state. Must be called once the fragment is attached.
+     */
+    public synchronized void onStateDisplayed(@NonNull final TshPaymentState state) {
+        if (state == TshPaymentState.STATE_ON_TRANSACTION_COMPLETED) {
+            record(Phase.COMPLETION_TO_UI, MARK_COMPLETED, SystemClock.elapsedRealtimeNanos());
+        }
+    }
+
+    public synchronized void reset() {
+        for (int loopPhase = 0; loopPhase < PHASE_COUNT; loopPhase++) {
+            mCount[loopPhase] = 0;
+            mSum[loopPhase] = 0;
+            mMin[loopPhase] = Long.MAX_VALUE;
+            mMax[loopPhase] = 0;
+        }
+        for (int loopIndex = 0; loopIndex < mBuckets.length; loopIndex++) {
+            mBuckets[loopIndex] = 0;
+        }
+        mSessions = 0;
+        mCompleted = 0;
+        mErrors = 0;
+        mInterruptions = 0;
+    }
+
+    /**
+     * @return Value in microseconds under which lies the given percentile of the phase or {@code 0} if there is no record.
+     */
+    public synchronized long getPercentileMicros(@NonNull final Phase phase, final double percentile) {
+        final int phaseIndex = phase.ordinal();
+        final long count = mCount[phaseIndex];
+        if (count == 0) {
+            return 0;
+        }
+
+        final long threshold = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        final int offset = phaseIndex * BUCKET_COUNT;
+        long cumulative = 0;
+        for (int loopBucket = 0; loopBucket < BUCKET_COUNT; loopBucket++) {
+            cumulative += mBuckets[offset + loopBucket];
+            if (cumulative >= threshold) {
+                return Math.min(bucketUpperBound(loopBucket), mMax[phaseIndex]);
+            }
+        }
+
+        return mMax[phaseIndex];
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        final StringBuilder retValue = new StringBuilder("PaymentLatencyTracer{")
+                .append("sessions=").append(mSessions)
+                .append(", completed=").append(mCompleted)
+                .append(", errors=").append(mErrors)
+                .append(", interruptions=").append(mInterruptions);
+
+        for (final Phase loopPhase : mPhases) {
+            final int phaseIndex = loopPhase.ordinal();
+            final long count = mCount[phaseIndex];
+            retValue.append("\n  ").append(loopPhase).append(": n=").append(count);
+            if (count == 0) {
+                continue;
+            }
+
+            retValue.append(String.format(Locale.US, ", min %.1f, avg %.1f",
+                    mMin[phaseIndex] / 1e3, mSum[phaseIndex] / 1e3 / count));
+            for (final double loopPercentile : PERCENTILES) {
+                retValue.append(String.format(Locale.US, ", p%.0f %.1f",
+                        loopPercentile, getPercentileMicros(loopPhase, loopPercentile) / 1e3));
+            }
+            retValue.append(String.format(Locale.US, ", max %.1f ms", mMax[phaseIndex] / 1e3));
+        }
+
+        return retValue.append('}').toString();
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    /**
+     * Stores the current time into the given mark of the session.
+     *
+     * @param markIndex Index of the mark or {@code -1} to only read the time.
+     * @return Current time.
+     */
+    private long mark(final int markIndex) {
+        final long retValue = SystemClock.elapsedRealtimeNanos();
+        if (markIndex >= 0) {
+            mMarks[markIndex] = retValue;
+        }
+        mSessionLastNanos = retValue;
+        return retValue;
+    }
+
+    /**
+     * Records the phase from the given mark until now. Each phase is recorded at most once per session.
+     */
+    private void record(@NonNull final Phase phase, final int fromMark, final long nowNanos) {
+        final long from = mMarks[fromMark];
+        final int phaseBit = 1 << phase.ordinal();
+        if (from == 0 || (mSessionRecordedPhases & phaseBit) != 0) {
+            return;
+        }
+        mSessionRecordedPhases |= phaseBit;
+
+        final long valueMicros = Math.max(0, (nowNanos - from) / 1_000);
+        final int phaseIndex = phase.ordinal();
+        mBuckets[phaseIndex * BUCKET_COUNT + bucketIndex(valueMicros)]++;
+        mCount[phaseIndex]++;
+        mSum[phaseIndex] += valueMicros;
+        mMin[phaseIndex] = Math.min(mMin[phaseIndex], valueMicros);
+        mMax[phaseIndex] = Math.max(mMax[phaseIndex], valueMicros);
+    }
+
+    static int bucketIndex(final long value) {
+        // Values below the sub-bucket count are stored exactly.
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // Power of two selects the bucket, following bits the linear sub-bucket within it.
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return Math.min((shift + 1) * SUB_BUCKETS + subBucket, BUCKET_COUNT - 1);
+    }
+
+    static long bucketUpperBound(final int bucketIndex) {
+        if (bucketIndex < SUB_BUCKETS) {
+            return bucketIndex;
+        }
+
+        final int shift = bucketIndex / SUB_BUCKETS - 1;
+        final long lowerBound = (long) (SUB_BUCKETS + bucketIndex % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    //endregion
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.payment;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
+
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-process stream of payment state transitions.
+ * <p/>
+ * Holds the latest transition and replays it to each new listener, so the payment screen started
+ * in the middle of the session still shows the current state. Once the session is over, the screen
+ * ends it with {@link #endSession(long)} and nothing is replayed until the next transition. Publishing
+ * never blocks. Listeners are notified on the main thread and skip transitions they have already seen.
+ */
+public final class PaymentStateStream {
+
+    //region Defines
+
+    private static final String TAG = PaymentStateStream.class.getSimpleName();
+
+    /**
+     * Launch of the payment screen is requested again, if it did not subscribe within this time.
+     */
+    private static final long LAUNCH_TIMEOUT_MS = 5_000;
+
+    public interface Listener {
+        void onPaymentStateChanged(@NonNull final Event event);
+    }
+
+    /**
+     * Immutable payment state transition.
+     */
+    public static final class Event {
+        private final long mSequence;
+        private final TshPaymentState mState;
+        private final TshPaymentData mData;
+        private final long mPublishedAtNanos;
+
+        Event(final long sequence,
+              @NonNull final TshPaymentState state,
+              @Nullable final TshPaymentData data) {
+            mSequence = sequence;
+            mState = state;
+            mData = data;
+            mPublishedAtNanos = SystemClock.elapsedRealtimeNanos();
+        }
+
+        public long getSequence() {
+            return mSequence;
+        }
+
+        @NonNull
+        public TshPaymentState getState() {
+            return mState;
+        }
+
+        @Nullable
+        public TshPaymentData getData() {
+            return mData;
+        }
+
+        public long getPublishedAtNanos() {
+            return mPublishedAtNanos;
+        }
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final AtomicReference<Event> mLatest = new AtomicReference<>();
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicLong mLaunchRequestedAt = new AtomicLong(-LAUNCH_TIMEOUT_MS);
+    private final CopyOnWriteArrayList<Subscription> mSubscriptions = new CopyOnWriteArrayList<>();
+
+    // Delivery metrics. Accessed only on the main thread.
+    private int mLiveCount;
+    private long mLiveLatencySumNanos;
+    private long mLiveLatencyMaxNanos;
+    private int mReplayCount;
+    private long mReplayLatencySumNanos;
+    private long mReplayLatencyMaxNanos;
+    private int mLaunchCount;
+
+    //endregion
+
+    //region Public API
+
+    /**
+     * Publishes new transition. Can be called from any thread.
+     */
+    public void publish(@NonNull final TshPaymentState state,
+                        @Nullable final TshPaymentData data) {
+        final Event event = new Event(mSequence.incrementAndGet(), state, data);
+        mLatest.set(event);
+
+        if (!mSubscriptions.isEmpty()) {
+            mHandler.post(() -> deliver(event, false));
+        }
+    }
+
+    /**
+     * Subscribes the listener and replays the latest transition to it unless it has already seen it.
+     * Must be called on the main thread.
+     *
+     * @param lastSequence Sequence of the last transition the listener has handled before, e.g. prior to its stop.
+     */
+    public void subscribe(@NonNull final Listener listener,
+                          final long lastSequence) {
+        final Subscription subscription = new Subscription(listener);
+        subscription.mLastSequence = lastSequence;
+        mSubscriptions.add(subscription);
+
+        // Screen is up, so any pending launch is done.
+        mLaunchRequestedAt.set(-LAUNCH_TIMEOUT_MS);
+
+        final Event latest = mLatest.get();
+        if (latest != null) {
+            deliver(subscription, latest, true);
+        }
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    public void unsubscribe(@NonNull final Listener listener) {
+        for (final Subscription loopSubscription : mSubscriptions) {
+            if (loopSubscription.mListener == listener) {
+                mSubscriptions.remove(loopSubscription);
+            }
+        }
+    }
+
+    /**
+     * Ends the session. Its transitions are not replayed anymore. Transition published after the given
+     * one starts a new session and is kept. Can be called from any thread.
+     *
+     * @param lastSequence Sequence of the last transition of the session.
+     */
+    public void endSession(final long lastSequence) {
+        final Event latest = mLatest.get();
+        if (latest != null && latest.mSequence <= lastSequence) {
+            mLatest.compareAndSet(latest, null);
+        }
+    }
+
+    @Nullable
+    public Event getLatest() {
+        return mLatest.get();
+    }
+
+    /**
+     * Decides whether the caller should launch the screen which subscribes to this stream.
+     * Only one caller wins until the screen subscribes or {@link #LAUNCH_TIMEOUT_MS} passes.
+     *
+     * @return {@code True} if nobody listens and launch is not already on the way.
+     */
+    public boolean claimLaunch() {
+        if (!mSubscriptions.isEmpty()) {
+            return false;
+        }
+
+        final long now = SystemClock.elapsedRealtime();
+        final long requestedAt = mLaunchRequestedAt.get();
+        if (now - requestedAt < LAUNCH_TIMEOUT_MS || !mLaunchRequestedAt.compareAndSet(requestedAt, now)) {
+            return false;
+        }
+
+        mHandler.post(() -> mLaunchCount++);
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PaymentStateStream{" +
+                "published=" + mSequence.get() +
+                ", launches=" + mLaunchCount +
+                String.format(Locale.US, ", live=%d (avg %.2f ms, max %.2f ms)",
+                        mLiveCount, average(mLiveLatencySumNanos, mLiveCount), mLiveLatencyMaxNanos / 1e6) +
+                String.format(Locale.US, ", replayed=%d (avg %.2f ms, max %.2f ms)",
+                        mReplayCount, average(mReplayLatencySumNanos, mReplayCount), mReplayLatencyMaxNanos / 1e6) +
+                '}';
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private void deliver(@NonNull final Event event, final boolean replay) {
+        for (final Subscription loopSubscription : mSubscriptions) {
+            deliver(loopSubscription, event, replay);
+        }
+    }
+
+    private void deliver(@NonNull final Subscription subscription,
+                         @NonNull final Event event,
+                         final boolean replay) {
+        // Replay might have already delivered this or even newer transition.
+        if (event.mSequence <= subscription.mLastSequence) {
+            return;
+        }
+        subscription.mLastSequence = event.mSequence;
+
+        subscription.mListener.onPaymentStateChanged(event);
+
+        // Replay latency includes the launch of the screen. Live one is the pure in-process hop.
+        final long latencyNanos = SystemClock.elapsedRealtimeNanos() - event.mPublishedAtNanos;
+        if (replay) {
+            mReplayCount++;
+            mReplayLatencySumNanos += latencyNanos;
+            mReplayLatencyMaxNanos = Math.max(mReplayLatencyMaxNanos, latencyNanos);
+        } else {
+            mLiveCount++;
+            mLiveLatencySumNanos += latencyNanos;
+            mLiveLatencyMaxNanos = Math.max(mLiveLatencyMaxNanos, latencyNanos);
+        }
+
+        AppLoggerHelper.debug(TAG, "%s delivered in %.2f ms%s",
+                event.mState, latencyNanos / 1e6, replay ? " (replay)" : "");
+    }
+
+    private static double average(final long sumNanos, final int count) {
+        return count > 0 ? sumNanos / 1e6 / count : 0.0;
+    }
+
+    private static final class Subscription {
+        private final Listener mListener;
+        private long mLastSequence;
+
+        Subscription(final Listener listener) {
+            mListener = listener;
+        }
+    }
+
+    //endregion
+}
@@ -5,15 +5,15 @@
 package com.thalesgroup.tshpaysample.sdk.payment;
 
 import com.gemalto.mfs.mwsdk.payment.CHVerificationMethod;
+import com.thalesgroup.tshpaysample.utlis.Amount;
 
 public class TshPaymentAuthenticationRequestData extends TshPaymentData {
     private final CHVerificationMethod mMethod;
 
     public TshPaymentAuthenticationRequestData(final CHVerificationMethod method,
-                                               final double amount,
-                                               final String currencyCode,
+                                               final Amount amount,
                                                final String cardId) {
-        super(amount, currencyCode, cardId);
+        super(amount, cardId);
         mMethod = method;
     }
 
@@ -4,30 +4,29 @@
 
 package com.thalesgroup.tshpaysample.sdk.payment;
 
+import com.thalesgroup.tshpaysample.utlis.Amount;
+
 import java.io.Serializable;
 
 public class TshPaymentData implements Serializable {
 
-    private static final long serialVersionUID = -8846799612852355120L;
+    private static final long serialVersionUID = -2254460190871347036L;
 
-    private final double mAmount;
-    private final String mCurrency;
+    private final Amount mAmount;
     private final String mDigitalizedCardId;
 
-    public TshPaymentData(final double amount,
-                          final String currency,
+    public TshPaymentData(final Amount amount,
                           final String digitalizedCardId) {
-        mAmount = amount;
-        mCurrency = currency;
+        mAmount = amount == null ? Amount.UNKNOWN : amount;
         mDigitalizedCardId = digitalizedCardId;
     }
 
-    public double getAmount() {
+    public Amount getAmount() {
         return mAmount;
     }
 
     public String getCurrency() {
-        return mCurrency;
+        return mAmount.getCurrencyCode();
     }
 
     public String getDigitalizedCardId() {
@@ -4,16 +4,17 @@
 
 package com.thalesgroup.tshpaysample.sdk.payment;
 
+import com.thalesgroup.tshpaysample.utlis.Amount;
+
 public class TshPaymentErrorData extends TshPaymentData {
     final String mCode;
     final String mMessage;
 
     public TshPaymentErrorData(final String code,
                                final String message,
-                               final double amount,
-                               final String currency,
+                               final Amount amount,
                                final String cardId) {
-        super(amount, currency, cardId);
+        super(amount, cardId);
 
         mCode = code;
         mMessage = message;
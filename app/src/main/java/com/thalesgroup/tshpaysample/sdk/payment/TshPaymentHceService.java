@@ -15,6 +15,12 @@ public class TshPaymentHceService extends AsyncHCEService {
     public void onCreate() {
         super.onCreate();
 
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.HCE_SERVICE_CREATED);
+
+        // Service is bound only when the device is in the NFC field. Hold back MG init until the payment ends.
+        SdkHelper.getInstance().getInit().getMgInitScheduler().onTransactionStarted();
+        SdkHelper.getInstance().getInit().getMgInitScheduler().onEntryPointStarted();
+
         // Configure SDK's payment settings when the service is created
         // see: https://developer.dbp.thalescloud.io/docs/tsh-hce-android/2waosjpqmsz03-payment-setting-api
 
@@ -28,6 +34,13 @@ public class TshPaymentHceService extends AsyncHCEService {
         PaymentSettings.setApduSuspendTimeout(5000);
     }
 
+    @Override
+    public void onDestroy() {
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.HCE_SERVICE_DESTROYED);
+
+        super.onDestroy();
+    }
+
     @Override
     public PaymentServiceListener setupListener() {
         return SdkHelper.getInstance().getTshPaymentListener();
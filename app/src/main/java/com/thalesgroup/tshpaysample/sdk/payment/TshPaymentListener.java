@@ -10,6 +10,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
@@ -31,10 +32,9 @@ import com.gemalto.mfs.mwsdk.utils.async.AsyncResult;
 import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
 import com.thalesgroup.tshpaysample.sdk.helpers.HceHelper;
-import com.thalesgroup.tshpaysample.sdk.init.TshInitStateEnum;
 import com.thalesgroup.tshpaysample.ui.PaymentActivity;
+import com.thalesgroup.tshpaysample.utlis.Amount;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
-import com.thalesgroup.tshpaysample.utlis.UtilsCurrenciesConstants;
 
 public class TshPaymentListener implements ContactlessPaymentServiceListener {
 
@@ -43,16 +43,18 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
     private static final String TAG = TshPaymentListener.class.getSimpleName();
     protected static final int ERROR_DELAY = 300;
 
-    private double mAmount;
-    private String mCurrency;
+    private Amount mAmount = Amount.UNKNOWN;
 
     private TshPaymentState mPaymentState;
 
     protected Context mContext;
     protected Handler mDelayedError;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     private final MutableLiveData<Integer> mReadyToTapTimeRemaining = new MutableLiveData<>(45);
     private final MutableLiveData<String> mDefaultCardId = new MutableLiveData<>(null);
+    private final PaymentStateStream mPaymentStateStream = new PaymentStateStream();
+    private final PaymentLatencyTracer mPaymentLatencyTracer = new PaymentLatencyTracer();
     private CardWrapper mPreferredCard;
 
     //endregion
@@ -70,6 +72,14 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
         return mDefaultCardId;
     }
 
+    public PaymentStateStream getPaymentStateStream() {
+        return mPaymentStateStream;
+    }
+
+    public PaymentLatencyTracer getPaymentLatencyTracer() {
+        return mPaymentLatencyTracer;
+    }
+
     public void saveDefaultAsPreferredCard() {
         mPreferredCard = new CardWrapper(mDefaultCardId.getValue());
     }
@@ -91,34 +101,33 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
     }
 
     private void initDefaultCardId() {
-        SdkHelper.getInstance().getInit().getSdkInitState().observeForever(state -> {
-           if(state.getState() == TshInitStateEnum.INIT_SUCCESSFUL){
-               final AsyncResult<String> stringAsyncResult = DigitalizedCardManager.getDefault(PaymentType.CONTACTLESS, null).waitToComplete();
-
-               if(stringAsyncResult.isSuccessful()){
-                   onDefaultCardIdChanged(stringAsyncResult.getResult());
-               } else {
-                   AppLoggerHelper.error(TAG, "Failed to get default card id. Error: " + stringAsyncResult.getErrorMessage());
-               }
-           }
+        SdkHelper.getInstance().getInit().whenReady(Runnable::run, () -> {
+            final AsyncResult<String> stringAsyncResult = DigitalizedCardManager.getDefault(PaymentType.CONTACTLESS, null).waitToComplete();
 
+            if(stringAsyncResult.isSuccessful()){
+                onDefaultCardIdChanged(stringAsyncResult.getResult());
+            } else {
+                AppLoggerHelper.error(TAG, "Failed to get default card id. Error: %s", stringAsyncResult.getErrorMessage());
+            }
         });
     }
 
     public void onDefaultCardIdChanged(final String newDefaultCardId){
+        // Update snapshots right away so observers of the live data read the new flag.
+        SdkHelper.getInstance().getCardSnapshotStore().onDefaultCardChanged(newDefaultCardId);
         mDefaultCardId.postValue(newDefaultCardId);
     }
 
     public void restoreOriginalDefaultCard(){
 
         if(mPreferredCard != null && mPreferredCard.getCardId() != mDefaultCardId.getValue()){
-            mPreferredCard.setDefault((result, error) -> {
+            mPreferredCard.setDefault(null, (result, error) -> {
                 // We will do only logging here as the CardWrapper#setDefault handles the propagation of the change
 
                 if (result) {
-                    AppLoggerHelper.info(TAG, "Default card restored to " + mPreferredCard.getCardId());
+                    AppLoggerHelper.info(TAG, "Default card restored to %s", mPreferredCard.getCardId());
                 } else {
-                    AppLoggerHelper.error(TAG, "Failed to restore original default card. Error: " + error);
+                    AppLoggerHelper.error(TAG, "Failed to restore original default card. Error: %s", error);
                 }
             });
         }
@@ -134,8 +143,7 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
     //region Protected Helpers
 
     protected void resetState() {
-        mAmount = 0.0;
-        mCurrency = null;
+        mAmount = Amount.UNKNOWN;
         mPaymentState = TshPaymentState.STATE_NONE;
     }
 
@@ -144,16 +152,19 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
                                final TshPaymentData data) {
         // Store last state so it can be read onResume when app was not in foreground.
         mPaymentState = state;
-        AppLoggerHelper.debug(TAG, "New payment state: " + state.toString());
-
-        // Notify rest of the application in UI thread.
-        new Handler(Looper.getMainLooper()).post(() -> {
-            final Intent intent = new Intent(mContext, PaymentActivity.class);
-            intent.setFlags(FLAG_ACTIVITY_NEW_TASK);
-            intent.putExtra(PaymentActivity.STATE_EXTRA_KEY, state);
-            intent.putExtra(PaymentActivity.PAYMENT_DATA_EXTRA_KEY, data);
-            mContext.startActivity(intent);
-        });
+        AppLoggerHelper.debug(TAG, "New payment state: %s", state);
+
+        // Notify rest of the application. Payment screen reads the state directly from the stream.
+        mPaymentStateStream.publish(state, data);
+
+        // Launch the payment screen only once per session. It will replay the latest state when it subscribes.
+        if (mPaymentStateStream.claimLaunch()) {
+            mMainHandler.post(() -> {
+                final Intent intent = new Intent(mContext, PaymentActivity.class);
+                intent.setFlags(FLAG_ACTIVITY_NEW_TASK);
+                mContext.startActivity(intent);
+            });
+        }
     }
 
 
@@ -167,6 +178,8 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
      */
     @Override
     public void onFirstTapCompleted() {
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.FIRST_TAP_COMPLETED, mDefaultCardId.getValue());
+
         // Call to SDK init is no longer needed here as we initialize from the App#onCreate already
         // SdkHelper.getInstance().getInit().init(mContext);
     }
@@ -177,9 +190,14 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
      */
     @Override
     public void onTransactionStarted() {
+        mPaymentLatencyTracer.onTransactionStarted();
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.TRANSACTION_STARTED, mDefaultCardId.getValue());
+
         // All current state values are no longer relevant.
         resetState();
 
+        SdkHelper.getInstance().getInit().getMgInitScheduler().onTransactionStarted();
+
         // Emit the transaction started event only if the app's service is set as default
         // The trouble is that in case of app handling the payment only while being foreground,
         // the screen transition in between app's activities will break up the NFC transaction.
@@ -196,13 +214,19 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
     public void onAuthenticationRequired(final PaymentService paymentService,
                                          final CHVerificationMethod chVerificationMethod,
                                          final long cvmResetTimeout) {
+        mPaymentLatencyTracer.onAuthenticationRequired();
+
         // All current state values are no longer relevant.
         resetState();
 
+        // Terminal session is over. User will tap again after the authentication.
+        SdkHelper.getInstance().getInit().getMgInitScheduler().onTransactionFinished();
+
         updateAmountAndCurrency(paymentService);
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.AUTHENTICATION_REQUIRED, mDefaultCardId.getValue(), mAmount);
 
         // Update state and notify everyone.
-        updateState(TshPaymentState.STATE_ON_AUTHENTICATION_REQUIRED, new TshPaymentAuthenticationRequestData(chVerificationMethod, mAmount, mCurrency, mDefaultCardId.getValue()));
+        updateState(TshPaymentState.STATE_ON_AUTHENTICATION_REQUIRED, new TshPaymentAuthenticationRequestData(chVerificationMethod, mAmount, mDefaultCardId.getValue()));
 
     }
 
@@ -211,15 +235,21 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
      */
     @Override
     public void onTransactionCompleted(final TransactionContext transactionContext) {
+        mPaymentLatencyTracer.onTransactionCompleted();
+
         // All current state values are no longer relevant.
         resetState();
 
         updateAmountAndCurrency(transactionContext);
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.TRANSACTION_COMPLETED, mDefaultCardId.getValue(), mAmount);
 
         mDelayedError.removeCallbacks(null);
 
+        SdkHelper.getInstance().getInit().getMgInitScheduler().onTransactionFinished();
+        SdkHelper.getInstance().getReplenishmentForecaster().onPayment(mDefaultCardId.getValue());
+
         // Update state and notify everyone.
-        updateState(TshPaymentState.STATE_ON_TRANSACTION_COMPLETED, new TshPaymentData(mAmount, mCurrency, mDefaultCardId.getValue()));
+        updateState(TshPaymentState.STATE_ON_TRANSACTION_COMPLETED, new TshPaymentData(mAmount, mDefaultCardId.getValue()));
     }
 
     /**
@@ -227,15 +257,21 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
      */
     @Override
     public void onReadyToTap(final PaymentService paymentService) {
+        mPaymentLatencyTracer.onReadyToTap();
+
         // All current state values are no longer relevant.
         resetState();
 
         updateAmountAndCurrency(paymentService);
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.READY_TO_TAP, mDefaultCardId.getValue(), mAmount);
 
         paymentService.setCVMResetTimeoutListener(new CVMResetTimeoutListener() {
             @Override
             public void onCredentialsTimeoutCountDown(final int seconds) {
-                AppLoggerHelper.debug(TAG, "New payment state countdown: " + seconds);
+                // Checked here, the int would be boxed before the level check otherwise.
+                if (AppLoggerHelper.isLoggable(Log.DEBUG)) {
+                    AppLoggerHelper.debug(TAG, "New payment state countdown: %d", seconds);
+                }
 
                 mReadyToTapTimeRemaining.postValue(seconds);
             }
@@ -245,23 +281,30 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
                                              final CHVerificationMethod chVerificationMethod,
                                              final long cvmResetTimeout) {
                 updateAmountAndCurrency(paymentService);
+                SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.CREDENTIALS_TIMEOUT, mDefaultCardId.getValue(), mAmount);
 
-                updateState(TshPaymentState.STATE_ON_ERROR, new TshPaymentErrorData("", "Timer exceeded", mAmount, mCurrency, mDefaultCardId.getValue()));
+                updateState(TshPaymentState.STATE_ON_ERROR, new TshPaymentErrorData("", "Timer exceeded", mAmount, mDefaultCardId.getValue()));
             }
         });
 
         // Update state and notify everyone.
-        updateState(TshPaymentState.STATE_ON_READY_TO_TAP, new TshPaymentData(mAmount, mCurrency, mDefaultCardId.getValue()));
+        updateState(TshPaymentState.STATE_ON_READY_TO_TAP, new TshPaymentData(mAmount, mDefaultCardId.getValue()));
     }
 
     @Override
     public void onNextTransactionReady(final DeactivationStatus deactivationStatus,
                                        final DigitalizedCardStatus digitalizedCardStatus,
                                        final DigitalizedCard digitalizedCard) {
+        mPaymentLatencyTracer.onNextTransactionReady();
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.NEXT_TRANSACTION_READY,
+                digitalizedCard != null ? digitalizedCard.getTokenizedCardID() : null);
 
-        AppLoggerHelper.info(TAG, String.format("onNextTransactionReady deactivationStatus: %s", deactivationStatus != null ? deactivationStatus.getSdkStatusCode() : "unknown"));
+        AppLoggerHelper.info(TAG, "onNextTransactionReady deactivationStatus: %s", deactivationStatus != null ? deactivationStatus.getSdkStatusCode() : "unknown");
 
         if (digitalizedCard != null && digitalizedCardStatus != null) {
+            SdkHelper.getInstance().getCardSnapshotStore().updateStatus(digitalizedCard.getTokenizedCardID(), digitalizedCardStatus);
+            SdkHelper.getInstance().getReplenishmentForecaster().onStatus(digitalizedCard.getTokenizedCardID(), digitalizedCardStatus);
+
             final CardWrapper cardWrapper = new CardWrapper(digitalizedCard, digitalizedCardStatus);
             cardWrapper.replenishKeysIfNeeded(false);
         }
@@ -270,17 +313,21 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
 
     @Override
     public void onError(final SDKError<PaymentServiceErrorCode> sdkError) {
+        mPaymentLatencyTracer.onError();
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.ERROR, mDefaultCardId.getValue(), mAmount.toWire(),
+                PaymentFlightRecorder.NO_VALUE, sdkError != null ? sdkError.getErrorCode().ordinal() : PaymentFlightRecorder.NO_VALUE);
 
         // we would like to extend the error message in certain cases
         final String errorMessage[] = new String[1];
 
         // The callback is designed to be called always with an error, but just to be extra sure we will check it
         if(sdkError != null){
-            AppLoggerHelper.error(TAG, String.format("onError: %s:%s", sdkError.getErrorCode().name(), sdkError.getErrorMessage()));
+            AppLoggerHelper.error(TAG, "onError: %s:%s", sdkError.getErrorCode().name(), sdkError.getErrorMessage());
 
             // showcase specific handling of a particular error code
             if(sdkError.getErrorCode() == PaymentServiceErrorCode.CARD_OUT_OF_PAYMENT_KEYS){
                 errorMessage[0] = "You ran out of payment keys.\nWe are trying to fetch new ones.\nMake sure that the device is online.";
+                SdkHelper.getInstance().getReplenishmentForecaster().onOutOfKeys(mDefaultCardId.getValue());
 
                 final CardWrapper cardWrapper = new CardWrapper(mDefaultCardId.getValue());
                 cardWrapper.replenishKeysIfNeeded(true);
@@ -293,6 +340,8 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
         // All current state values are no longer relevant.
         resetState();
 
+        SdkHelper.getInstance().getInit().getMgInitScheduler().onTransactionFinished();
+
         // POS disconnection handling has been integrated in the SDK and is controlled via PaymentSettings API
         // See https://developer.dbp.thalescloud.io/docs/tsh-hce-android/2waosjpqmsz03-payment-setting-api
         // So when we get here it means that we either run of retries or we got timeout
@@ -307,7 +356,6 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
                 new TshPaymentErrorData(sdkError.getErrorCode().name(),
                         errorMessage[0],
                         mAmount,
-                        mCurrency,
                         mDefaultCardId.getValue())
         ), ERROR_DELAY);
 
@@ -315,10 +363,16 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
 
     @Override
     public void onTransactionInterrupted(final int code, final String message, final int retriesLeft) {
+        mPaymentLatencyTracer.onTransactionInterrupted();
+        SdkHelper.getInstance().getPaymentFlightRecorder().record(PaymentFlightRecorder.Type.TRANSACTION_INTERRUPTED, mDefaultCardId.getValue(), mAmount.toWire(),
+                retriesLeft, code);
+
         // How many times this could occur depends on the SDK configuration provided by the app via
         // PaymentSettings.setTransactionRetryLimit() & PaymentSettings.setTransactionRetryTimeout() APIs
 
-        AppLoggerHelper.info(TAG, String.format("onTransactionInterrupted: %d : %s; retriesLeft: %d", code, message, retriesLeft));
+        if (AppLoggerHelper.isLoggable(Log.INFO)) {
+            AppLoggerHelper.info(TAG, "onTransactionInterrupted: %d : %s; retriesLeft: %d", code, message, retriesLeft);
+        }
         // TODO: Show a hint for the user saying for example "Keep the phone still and close to the terminal"
     }
 
@@ -341,11 +395,9 @@ public class TshPaymentListener implements ContactlessPaymentServiceListener {
 
     private void updateAmountAndCurrency(final TransactionContext transactionContext) {
         if (transactionContext == null) {
-            mAmount = -1.0;
-            mCurrency = null;
+            mAmount = Amount.UNKNOWN;
         } else {
-            mAmount = transactionContext.getAmount();
-            mCurrency = UtilsCurrenciesConstants.getCurrency(transactionContext.getCurrencyCode()).getCurrencyCode();
+            mAmount = Amount.fromTransaction(transactionContext.getAmount(), transactionContext.getCurrencyCode());
         }
     }
 
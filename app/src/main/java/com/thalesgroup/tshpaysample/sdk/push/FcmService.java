@@ -31,7 +31,7 @@ public class FcmService extends FirebaseMessagingService {
         super.onNewToken(token);
 
         // Make sure, that token is up-to date.
-        SdkHelper.getInstance().getPush().updateToken(this, token);
+        SdkHelper.getInstance().whenPushReady(() -> SdkHelper.getInstance().getPush().updateToken(this, token));
     }
 
     @Override
@@ -39,7 +39,7 @@ public class FcmService extends FirebaseMessagingService {
         super.onMessageReceived(remoteMessage);
 
         // Process incoming message in common class.
-        SdkHelper.getInstance().getPush().onMessageReceived(this, remoteMessage.getData());
+        SdkHelper.getInstance().whenPushReady(() -> SdkHelper.getInstance().getPush().onMessageReceived(this, remoteMessage.getData()));
     }
 
     //endregion
@@ -60,7 +60,7 @@ public class FcmService extends FirebaseMessagingService {
         FirebaseMessaging.getInstance().getToken().addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
                 // Make sure, that token is up-to date.
-                SdkHelper.getInstance().getPush().updateToken(context, task.getResult());
+                SdkHelper.getInstance().whenPushReady(() -> SdkHelper.getInstance().getPush().updateToken(context, task.getResult()));
             } else {
                 AppLoggerHelper.exception(TAG, "Fetching FCM registration token failed", task.getException());
             }
@@ -45,7 +45,7 @@ public class HmsService extends HmsMessageService {
         }
 
         // Make sure, that token is up-to date.
-        SdkHelper.getInstance().getPush().updateToken(this, HMS_TOKEN_PREFIX + token);
+        SdkHelper.getInstance().whenPushReady(() -> SdkHelper.getInstance().getPush().updateToken(this, HMS_TOKEN_PREFIX + token));
     }
 
     @Override
@@ -53,7 +53,7 @@ public class HmsService extends HmsMessageService {
         super.onMessageReceived(remoteMessage);
 
         // Process incoming message in common class.
-        SdkHelper.getInstance().getPush().onMessageReceived(this, remoteMessage.getDataOfMap());
+        SdkHelper.getInstance().whenPushReady(() -> SdkHelper.getInstance().getPush().onMessageReceived(this, remoteMessage.getDataOfMap()));
     }
 
     //endregion
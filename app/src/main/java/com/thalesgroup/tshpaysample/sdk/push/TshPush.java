@@ -6,6 +6,7 @@ package com.thalesgroup.tshpaysample.sdk.push;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -20,7 +21,6 @@ import com.thalesgroup.tshpaysample.R;
 import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
 import com.thalesgroup.tshpaysample.sdk.helpers.InternalNotificationsUtils;
-import com.thalesgroup.tshpaysample.sdk.init.TshInitStateEnum;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
 import java.util.ArrayList;
@@ -166,7 +166,7 @@ public final class TshPush implements PushServiceListener {
         if (!data.isEmpty()) {
             for (final String loopKey : data.keySet()) {
                 final String value = data.get(loopKey);
-                AppLoggerHelper.debug(TAG, loopKey + " ---|--- " + value);
+                AppLoggerHelper.debug(TAG, "%s ---|--- %s", loopKey, value);
                 if (null != data.get(loopKey)) {
                     bundle.putString(loopKey, value);
                     if (KEY_SENDER.equalsIgnoreCase(loopKey)) {
@@ -183,17 +183,14 @@ public final class TshPush implements PushServiceListener {
         // We want to process the message even if the app is not running for LCM, replenishment etc...
         // Find the sender of the message. If it's not Thales we do not need to check SDK state.
         // Delegate will not process such messages.
+        // Messages received before the SDK is ready are processed exactly once when it gets ready.
         final TshPushSender pushSender = TshPushSender.senderFromString(retSender);
-        if (SdkHelper.getInstance().getInit().getSdkInitStateValue().getState() == TshInitStateEnum.INIT_SUCCESSFUL) {
-            delegate.onMessageProcessed(bundle, pushSender, retAction, retDigitalCardID);
-        } else {
-            final String finalRetAction = retAction;
-            final String finalRetDigitalCardID = retDigitalCardID;
-            SdkHelper.getInstance().getInit().getSdkInitState().observeForever(state -> {
-                if (state.getState() == TshInitStateEnum.INIT_SUCCESSFUL) {
-                    delegate.onMessageProcessed(bundle, pushSender, finalRetAction, finalRetDigitalCardID);
-                }
-            });
+        final String finalRetAction = retAction;
+        final String finalRetDigitalCardID = retDigitalCardID;
+        final boolean accepted = SdkHelper.getInstance().getInit().whenReady(Runnable::run,
+                () -> delegate.onMessageProcessed(bundle, pushSender, finalRetAction, finalRetDigitalCardID));
+        if (!accepted) {
+            AppLoggerHelper.error(TAG, "Dropping push message received before SDK init: %s", retAction);
         }
     }
 
@@ -203,14 +200,14 @@ public final class TshPush implements PushServiceListener {
 
     @Override
     public void onError(final ProvisioningServiceError provisioningServiceError) {
-        AppLoggerHelper.info(TAG, "onError(): " + provisioningServiceError.getSdkErrorCode() + ":" + provisioningServiceError.getErrorMessage());
+        AppLoggerHelper.info(TAG, "onError(): %s:%s", provisioningServiceError.getSdkErrorCode(), provisioningServiceError.getErrorMessage());
 
         InternalNotificationsUtils.onPushMsgProcessingFailed(mContext, provisioningServiceError.getErrorMessage());
     }
 
     @Override
     public void onUnsupportedPushContent(final Bundle bundle) {
-        AppLoggerHelper.warn(TAG, "onUnsupportedPushContent(): " + bundle);
+        AppLoggerHelper.warn(TAG, "onUnsupportedPushContent(): %s", bundle);
 
         // Irrelevant for sample application.
     }
@@ -220,19 +217,33 @@ public final class TshPush implements PushServiceListener {
                                 final ProvisioningServiceMessage msg) {
         final ServerMessageInfo serverMessageInfo = new ServerMessageInfo(tokenizedCardId, msg.getMsgCode());
 
-        AppLoggerHelper.info(TAG, "onServerMessage(): " + serverMessageInfo);
+        AppLoggerHelper.info(TAG, "onServerMessage(): %s", serverMessageInfo);
+
+        // Card details stay the same with new keys. Any other message may change the card itself.
+        if (tokenizedCardId != null) {
+            if (KnownMessageCode.REQUEST_REPLENISH_KEYS.equals(msg.getMsgCode())) {
+                SdkHelper.getInstance().getCardSnapshotStore().invalidate(tokenizedCardId);
+                SdkHelper.getInstance().getReplenishmentForecaster().onReplenished(tokenizedCardId);
+            } else {
+                SdkHelper.getInstance().getCardSnapshotStore().remove(tokenizedCardId);
+            }
+        }
 
         mServerMessages.add(serverMessageInfo);
     }
 
     public void onVisaCardReplenished(final String tokenizedCardId){
         final ServerMessageInfo serverMessageInfo = new ServerMessageInfo(tokenizedCardId, KnownMessageCode.REQUEST_REPLENISH_KEYS);
+        SdkHelper.getInstance().getCardSnapshotStore().invalidate(tokenizedCardId);
+        SdkHelper.getInstance().getReplenishmentForecaster().onReplenished(tokenizedCardId);
         mServerMessages.add(serverMessageInfo);
     }
 
     @Override
     public void onComplete() {
-        AppLoggerHelper.info(TAG, "onComplete(): processed " + mServerMessages.size() + " messages");
+        if (AppLoggerHelper.isLoggable(Log.INFO)) {
+            AppLoggerHelper.info(TAG, "onComplete(): processed %d messages", mServerMessages.size());
+        }
 
         InternalNotificationsUtils.onPushProcessingCompleted(mContext, new ArrayList<>(mServerMessages));
 
@@ -5,14 +5,10 @@
 package com.thalesgroup.tshpaysample.ui;
 
 import android.Manifest;
-import android.content.ComponentName;
-import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.nfc.NfcManager;
-import android.nfc.cardemulation.CardEmulation;
 import android.os.Build;
 import android.os.Bundle;
 import android.provider.Settings;
@@ -31,7 +27,7 @@ import com.thalesgroup.tshpaysample.sdk.enrollment.TshEnrollment;
 import com.thalesgroup.tshpaysample.sdk.enrollment.TshEnrollmentDelegate;
 import com.thalesgroup.tshpaysample.sdk.enrollment.TshEnrollmentState;
 import com.thalesgroup.tshpaysample.sdk.helpers.HceHelper;
-import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentHceService;
+import com.thalesgroup.tshpaysample.sdk.helpers.HceRoutingState;
 import com.thalesgroup.tshpaysample.ui.fragments.FragmentSplash;
 import com.thalesgroup.tshpaysample.ui.fragments.FragmentTermsAndConditions;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
@@ -250,17 +246,14 @@ public class CardListActivity extends BaseAppActivity implements TshEnrollmentDe
 
 
     private void checkAndSetDefaultForTapAndPay() {
-        if (!HceHelper.doesDeviceSupportHCE(this)) {
+        final HceRoutingState routingState = SdkHelper.getInstance().getHceRoutingState();
+        if (!routingState.isHceSupported()) {
             return;
         }
 
-        final ComponentName appHceComponent = new ComponentName(this, TshPaymentHceService.class.getCanonicalName());
-        final NfcManager manager = (NfcManager) this.getSystemService(Context.NFC_SERVICE);
-        final CardEmulation cardEmulation = CardEmulation.getInstance(manager.getDefaultAdapter());
-
-        if(cardEmulation.isDefaultServiceForCategory(appHceComponent, CardEmulation.CATEGORY_PAYMENT)){
+        if(routingState.isDefaultService()){
             AppLoggerHelper.debug(TAG, "App's service is already set as default for payment");
-        } else if (cardEmulation.categoryAllowsForegroundPreference(CardEmulation.CATEGORY_PAYMENT)){
+        } else if (routingState.isForegroundPreferenceAllowed()){
             AppLoggerHelper.debug(TAG, "Payments with a foreground apps are allowed");
             AppLoggerHelper.warn(TAG, "Payments will be processed ONLY when application is on the foreground!");
         }else {
@@ -4,16 +4,18 @@
 
 package com.thalesgroup.tshpaysample.ui;
 
-import android.content.Intent;
 import android.os.Bundle;
 import android.view.WindowManager;
 
+import androidx.annotation.NonNull;
+
 import com.gemalto.mfs.mwsdk.payment.PaymentBusinessManager;
 import com.thalesgroup.tshpaysample.R;
 import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.sdk.helpers.HceHelper;
 import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentAuthenticationRequestData;
 import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentData;
+import com.thalesgroup.tshpaysample.sdk.payment.PaymentStateStream;
 import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentErrorData;
 import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentState;
 import com.thalesgroup.tshpaysample.ui.fragments.AbstractFragment;
@@ -24,14 +26,12 @@ import com.thalesgroup.tshpaysample.ui.fragments.FragmentPaymentStarted;
 import com.thalesgroup.tshpaysample.ui.fragments.FragmentPaymentSuccess;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
-public class PaymentActivity extends BaseAppActivity {
+public class PaymentActivity extends BaseAppActivity implements PaymentStateStream.Listener {
 
     //region Defines
 
     private static final String TAG = PaymentActivity.class.getSimpleName();
-
-    public static final String STATE_EXTRA_KEY = "STATE_EXTRA_KEY";
-    public static final String PAYMENT_DATA_EXTRA_KEY = "PAYMENT_DATA_EXTRA_KEY";
+    private static final String KEY_LAST_SEQUENCE = "last_sequence";
 
     private TshPaymentErrorData mErrorData;
     private TshPaymentData mSuccessData;
@@ -39,6 +39,7 @@ public class PaymentActivity extends BaseAppActivity {
     private TshPaymentData mSecondTapData;
 
     private TshPaymentState lastHandledState = TshPaymentState.STATE_NONE;
+    private long mLastSequence;
 
     //endregion
 
@@ -48,6 +49,10 @@ public class PaymentActivity extends BaseAppActivity {
 
         setContentView(R.layout.activity_payment);
 
+        if (savedInstanceState != null) {
+            mLastSequence = savedInstanceState.getLong(KEY_LAST_SEQUENCE);
+        }
+
         super.onViewCreated();
 
 
@@ -55,8 +60,22 @@ public class PaymentActivity extends BaseAppActivity {
                 | WindowManager.LayoutParams.FLAG_TURN_SCREEN_ON
                 | WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON
                 | WindowManager.LayoutParams.FLAG_DISMISS_KEYGUARD);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        // Latest state is replayed right away unless it was already handled before the stop.
+        // While stopped, new session will bring this screen to front again.
+        SdkHelper.getInstance().getTshPaymentListener().getPaymentStateStream().subscribe(this, mLastSequence);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull final Bundle outState) {
+        super.onSaveInstanceState(outState);
 
-        onNewIntent(getIntent());
+        outState.putLong(KEY_LAST_SEQUENCE, mLastSequence);
     }
 
     @Override
@@ -74,46 +93,46 @@ public class PaymentActivity extends BaseAppActivity {
     }
 
     @Override
-    protected void onNewIntent(final Intent intent) {
-        super.onNewIntent(intent);
-
-        if (intent.hasExtra(PAYMENT_DATA_EXTRA_KEY) && intent.hasExtra(STATE_EXTRA_KEY)) {
-
-            final TshPaymentState state = (TshPaymentState) intent.getSerializableExtra(STATE_EXTRA_KEY);
-            final TshPaymentData paymentData = (TshPaymentData) intent.getSerializableExtra(PAYMENT_DATA_EXTRA_KEY);
-
-            final AbstractFragment currentFragment = getCurrentFragment();
-            if (currentFragment != null) {
-                currentFragment.onPaymentStatusChanged(state);
-            }
-
-            switch (state) {
-                case STATE_ON_TRANSACTION_STARTED:
-                    showFragment(new FragmentPaymentStarted(), false);
-                    break;
-                case STATE_ON_AUTHENTICATION_REQUIRED:
-                    mAuthData = (TshPaymentAuthenticationRequestData) paymentData;
-                    showFragment(new FragmentPaymentAuthentication(), false);
-                    break;
-                case STATE_ON_READY_TO_TAP:
-                    mSecondTapData = paymentData;
-                    showFragment(new FragmentPaymentReady(), false);
-                    break;
-                case STATE_ON_TRANSACTION_COMPLETED:
-                    mSuccessData = paymentData;
-                    showFragment(new FragmentPaymentSuccess(), false);
-                    break;
-                case STATE_ON_ERROR:
-                    mErrorData = (TshPaymentErrorData) paymentData;
-                    showFragment(new FragmentPaymentError(), false);
-                    break;
-                default:
-                    AppLoggerHelper.error(TAG, "Unknown transaction state: " + state.toString());
-                    break;
-            }
-
-            lastHandledState = state;
+    public void onPaymentStateChanged(@NonNull final PaymentStateStream.Event event) {
+        final TshPaymentState state = event.getState();
+        final TshPaymentData paymentData = event.getData();
+
+        final AbstractFragment currentFragment = getCurrentFragment();
+        if (currentFragment != null) {
+            currentFragment.onPaymentStatusChanged(state);
+        }
+
+        switch (state) {
+            case STATE_ON_TRANSACTION_STARTED:
+                showFragment(new FragmentPaymentStarted(), false);
+                break;
+            case STATE_ON_AUTHENTICATION_REQUIRED:
+                mAuthData = (TshPaymentAuthenticationRequestData) paymentData;
+                showFragment(new FragmentPaymentAuthentication(), false);
+                break;
+            case STATE_ON_READY_TO_TAP:
+                mSecondTapData = paymentData;
+                showFragment(new FragmentPaymentReady(), false);
+                break;
+            case STATE_ON_TRANSACTION_COMPLETED:
+                mSuccessData = paymentData;
+                showFragment(new FragmentPaymentSuccess(), false);
+                break;
+            case STATE_ON_ERROR:
+                mErrorData = (TshPaymentErrorData) paymentData;
+                showFragment(new FragmentPaymentError(), false);
+                break;
+            default:
+                AppLoggerHelper.error(TAG, "Unknown transaction state: " + state.toString());
+                break;
         }
+
+        lastHandledState = state;
+        mLastSequence = event.getSequence();
+
+        // Fragment transaction is committed asynchronously. Anything posted now runs after it is attached.
+        getWindow().getDecorView().post(() -> SdkHelper.getInstance().getTshPaymentListener()
+                .getPaymentLatencyTracer().onStateDisplayed(state));
     }
 
     @Override
@@ -130,12 +149,30 @@ public class PaymentActivity extends BaseAppActivity {
     @Override
     protected void onStop() {
 
-        AppLoggerHelper.debug(TAG, "onStop() at state = " + lastHandledState);
+        AppLoggerHelper.debug(TAG, "onStop() at state = %s", lastHandledState);
+
+        final PaymentStateStream paymentStateStream = SdkHelper.getInstance().getTshPaymentListener().getPaymentStateStream();
+        paymentStateStream.unsubscribe(this);
+        AppLoggerHelper.debug(TAG, paymentStateStream::toString);
 
         if (lastHandledState == TshPaymentState.STATE_ON_AUTHENTICATION_REQUIRED || lastHandledState == TshPaymentState.STATE_ON_READY_TO_TAP) {
             PaymentBusinessManager.getPaymentBusinessService().deactivate();
         }
 
+        // Session is over, either finished or deactivated above. Do not replay it with the next start.
+        final boolean sessionEnded = lastHandledState != TshPaymentState.STATE_NONE && lastHandledState != TshPaymentState.STATE_ON_TRANSACTION_STARTED;
+        if (sessionEnded) {
+            paymentStateStream.endSession(mLastSequence);
+        }
+
+        // Keep the latency of the finished session in the secure log. Not with each stop of the activity,
+        // the tracer is cumulative and the same numbers would be logged again.
+        if (sessionEnded || isFinishing()) {
+            final String latency = SdkHelper.getInstance().getTshPaymentListener().getPaymentLatencyTracer().toString();
+            AppLoggerHelper.info(TAG, latency);
+            SdkHelper.getInstance().getTshSecureLogger().log(TAG, latency);
+        }
+
         SdkHelper.getInstance().getTshPaymentListener().restoreOriginalDefaultCard();
 
         super.onStop();
@@ -10,16 +10,20 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.viewpager2.widget.ViewPager2;
 
 import com.google.android.material.tabs.TabLayoutMediator;
 import com.thalesgroup.tshpaysample.R;
 import com.thalesgroup.tshpaysample.sdk.SdkHelper;
+import com.thalesgroup.tshpaysample.sdk.logger.SecureLogExporter;
+import com.thalesgroup.tshpaysample.sdk.payment.PaymentLatencyTracer;
 import com.thalesgroup.tshpaysample.sdk.push.ServerMessageInfo;
 import com.thalesgroup.tshpaysample.ui.model.CardListAdapter;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 import com.thalesgroup.tshpaysample.utlis.ZoomOutPageTransformer;
 
+import java.io.File;
 import java.util.List;
 
 public class FragmentCardList extends AbstractFragment {
@@ -59,6 +63,7 @@ public class FragmentCardList extends AbstractFragment {
         // Floating button to add new card.
         retValue.findViewById(R.id.fragment_card_list_add_button).setOnClickListener(this::onButtonPressedAdd);
         retValue.findViewById(R.id.fragment_card_list_secure_log_send).setOnClickListener(this::onButtonPressedDev);
+        retValue.findViewById(R.id.fragment_card_list_secure_log_send).setOnLongClickListener(this::onButtonLongPressedDev);
 
         // Display dots as page indicator
         new TabLayoutMediator(retValue.findViewById(R.id.fragment_card_list_tab_layout), pager, (tab, position) -> {
@@ -113,7 +118,38 @@ public class FragmentCardList extends AbstractFragment {
     }
 
     private void onButtonPressedDev(final View sender) {
-        SdkHelper.getInstance().getTshSecureLogger().shareSecureLog(getMainActivity());
+        SdkHelper.getInstance().getTshSecureLogger().shareSecureLog(getMainActivity(), new SecureLogExporter.Delegate() {
+            @Override
+            public void onProgress(final int percent) {
+                if (isAdded()) {
+                    getMainActivity().progressShow(getString(R.string.fragment_card_list_export_progress, percent));
+                }
+            }
+
+            @Override
+            public void onFinished(@Nullable final File archive) {
+                if (!isAdded()) {
+                    return;
+                }
+
+                getMainActivity().progressHide();
+                if (archive == null) {
+                    getMainActivity().displayMessageToast(R.string.fragment_card_list_export_failed);
+                }
+            }
+        });
+    }
+
+    private boolean onButtonLongPressedDev(final View sender) {
+        // Debug view of the contactless payment latency.
+        final PaymentLatencyTracer tracer = SdkHelper.getInstance().getTshPaymentListener().getPaymentLatencyTracer();
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.fragment_card_list_latency_dialog)
+                .setMessage(tracer.toString())
+                .setPositiveButton(R.string.common_word_ok, null)
+                .setNeutralButton(R.string.fragment_card_list_latency_reset, (dialog, which) -> tracer.reset())
+                .show();
+        return true;
     }
 
     //endregion
@@ -19,11 +19,12 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
-import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardStatus;
 import com.gemalto.mfs.mwsdk.mobilegateway.enrollment.PendingCardActivation;
 import com.thalesgroup.tshpaysample.R;
 import com.thalesgroup.tshpaysample.sdk.SdkHelper;
-import com.thalesgroup.tshpaysample.sdk.helpers.AsyncHelperCardState;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardRequest;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardSnapshot;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardSnapshotStore;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
 import com.thalesgroup.tshpaysample.ui.CardListActivity;
 import com.thalesgroup.tshpaysample.ui.views.ViewCardFront;
@@ -44,8 +45,16 @@ public class FragmentCardPage extends Fragment {
     private ViewCardFront mCardVisual;
     private CardWrapper mCardWrapper;
 
+    // Only the latest snapshot request is delivered. It's also cancelled together with the view.
+    private CardRequest<CardSnapshotStore.Delegate> mSnapshotRequest;
+
+    // Requests are bound to the view lifecycle, so the result is not delivered to destroyed page.
     private final CardWrapper.CardActionDelegate mCardOperationDelegate = (value, message) -> {
         new Handler(Looper.getMainLooper()).post(() -> {
+            if (getContext() == null) {
+                return;
+            }
+
             // Display some common notification based on state.
             CharSequence toDisplay;
             if (value) {
@@ -105,15 +114,13 @@ public class FragmentCardPage extends Fragment {
 
     public void updateState() {
         // For some reason we do not have proper data layer. Prevent app crash.
-        if (mCardWrapper == null) {
+        // Page might be also refreshed by the adapter while its view is gone.
+        if (mCardWrapper == null || getView() == null) {
             return;
         }
 
-        // Load card graphics and basic information like PAN, EXP etc...
-        mCardVisual.loadCardDetails(mCardWrapper);
-
-        // Load additional card info.
-        mTextIsDefault.setText(mCardWrapper.isDefault() ? R.string.common_word_yes : R.string.common_word_no);
+        // Load card graphics. Basic information like PAN, EXP etc... comes with the snapshot.
+        mCardVisual.loadCardArt(mCardWrapper, getViewLifecycleOwner());
 
         // First disable all buttons except delete. Individual actions will be enabled based on state.
         mButtonActivate.setEnabled(false);
@@ -122,21 +129,25 @@ public class FragmentCardPage extends Fragment {
         mButtonEnroll.setEnabled(false);
         mButtonPayment.setEnabled(false);
 
-        // Get current card state so we can enable proper actions.
-        mCardWrapper.getDigitalizedCardState(new AsyncHelperCardState.Delegate() {
+        // Get current card snapshot so we can enable proper actions. Usually it's already loaded by the card list.
+        if (mSnapshotRequest != null) {
+            mSnapshotRequest.cancel();
+        }
+        mSnapshotRequest = SdkHelper.getInstance().getCardSnapshotStore().get(mCardWrapper.getCardId(), getViewLifecycleOwner(), new CardSnapshotStore.Delegate() {
             @Override
-            public void onSuccess(final DigitalizedCardStatus value) {
-                mTextStatus.setText(value.getState().name());
+            public void onSuccess(@NonNull final CardSnapshot snapshot) {
+                mCardVisual.setCardSnapshot(snapshot);
+                mTextIsDefault.setText(snapshot.isDefault() ? R.string.common_word_yes : R.string.common_word_no);
+                mTextStatus.setText(snapshot.getState().name());
 
-                switch (value.getState()) {
+                switch (snapshot.getState()) {
                     case ACTIVE:
                         mButtonSuspend.setEnabled(true);
                         mButtonPayment.setEnabled(true);
-                        mButtonSetDefault.setEnabled(!mCardWrapper.isDefault());
+                        mButtonSetDefault.setEnabled(!snapshot.isDefault());
                         break;
                     case SUSPENDED:
-                        final PendingCardActivation pendingActiovation = mCardWrapper.getPendingActivation();
-                        if (pendingActiovation != null) {
+                        if (snapshot.getPendingActivation() != null) {
                             mButtonEnroll.setEnabled(true);
                         } else {
                             mButtonActivate.setEnabled(true);
@@ -158,9 +169,7 @@ public class FragmentCardPage extends Fragment {
 
             @Override
             public void onError(final String error) {
-                if (getContext() != null) {
-                    Toast.makeText(getContext(), error, Toast.LENGTH_LONG).show();
-                }
+                Toast.makeText(getContext(), error, Toast.LENGTH_LONG).show();
             }
         });
 
@@ -184,16 +193,16 @@ public class FragmentCardPage extends Fragment {
     //region User Interface
 
     private void onButtonPressedResume(final View sender) {
-        mCardWrapper.resumeCard(mCardOperationDelegate);
+        mCardWrapper.resumeCard(getViewLifecycleOwner(), mCardOperationDelegate);
     }
 
     private void onButtonPressedSuspend(final View sender) {
-        mCardWrapper.suspendCard(mCardOperationDelegate);
+        mCardWrapper.suspendCard(getViewLifecycleOwner(), mCardOperationDelegate);
     }
 
     private void onButtonPressedSetDefault(final View sender) {
-        mCardWrapper.setDefault(mCardOperationDelegate);
-//        mCardWrapper.setDefault((value, message) -> {
+        mCardWrapper.setDefault(getViewLifecycleOwner(), mCardOperationDelegate);
+//        mCardWrapper.setDefault(getViewLifecycleOwner(), (value, message) -> {
 //            final CardListActivity cardListActivity = getMainActivity();
 //            if (value && cardListActivity != null) {
 //                cardListActivity.reloadFragmentData();
@@ -204,7 +213,7 @@ public class FragmentCardPage extends Fragment {
     }
 
     private void onButtonPressedDelete(final View sender) {
-        mCardWrapper.deleteCard(mCardOperationDelegate);
+        mCardWrapper.deleteCard(getViewLifecycleOwner(), mCardOperationDelegate);
     }
 
     private void onButtonPressedActivate(final View sender) {
@@ -215,6 +224,7 @@ public class FragmentCardPage extends Fragment {
         } else if (cardListActivity != null){
             Toast.makeText(cardListActivity, getString(R.string.sdk_no_pending_activation), Toast.LENGTH_LONG).show();
             AppLoggerHelper.error(TAG, "No pending card activation.");
+            SdkHelper.getInstance().getCardSnapshotStore().invalidate(mCardWrapper.getCardId());
             updateState();
         }
     }
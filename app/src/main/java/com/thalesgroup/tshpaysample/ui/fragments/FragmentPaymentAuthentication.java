@@ -17,6 +17,7 @@ import android.widget.TextView;
 
 import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.biometric.BiometricManager;
 import androidx.biometric.BiometricPrompt;
 
@@ -69,9 +70,6 @@ public class FragmentPaymentAuthentication extends AbstractFragment {
 
         mAuthData = getPaymentActivity().getAuthData();
 
-        final ViewCardFront cardView = root.findViewById(R.id.fragment_payment_authentication_card_visual);
-        cardView.loadCardDetails(new CardWrapper(mAuthData.getDigitalizedCardId()));
-
         mDeviceCVMVerifier = (DeviceCVMVerifier) PaymentBusinessManager.getPaymentBusinessService()
                 .getActivatedPaymentService().getCHVerifier(mAuthData.getMethod());
         mDeviceCVMVerifier.setDeviceCVMVerifyListener(deviceCVMVerifyListener);
@@ -122,13 +120,23 @@ public class FragmentPaymentAuthentication extends AbstractFragment {
         return root;
     }
 
+    @Override
+    public void onViewCreated(@NonNull final View view,
+                              @Nullable final Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // View lifecycle owner exists only now. Card requests are cancelled with it.
+        final ViewCardFront cardView = view.findViewById(R.id.fragment_payment_authentication_card_visual);
+        cardView.loadCardDetails(new CardWrapper(mAuthData.getDigitalizedCardId()), getViewLifecycleOwner());
+    }
+
     private void doAuthenticate() {
 
         String description;
-        if(mAuthData.getAmount() == -1.0){
+        if(!mAuthData.getAmount().isKnown()){
             description = getString(R.string.authentication_prompt_info_description_wo_amount);
         } else {
-            description = getString(R.string.authentication_prompt_info_description, mAuthData.getAmount(), mAuthData.getCurrency());
+            description = getString(R.string.authentication_prompt_info_description, mAuthData.getAmount().toCodeDisplayString());
         }
 
         final BiometricPrompt.PromptInfo promptInfo = buildPromptInfo(getString(R.string.authentication_prompt_info_title),
@@ -11,6 +11,9 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.thalesgroup.tshpaysample.R;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
 import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentErrorData;
@@ -32,18 +35,27 @@ public class FragmentPaymentError extends AbstractFragment {
         // Inflate the layout for this fragment
         final View root = inflater.inflate(R.layout.fragment_payment_error, container, false);
         final TextView messageTextView = root.findViewById(R.id.message);
-        final ViewCardFront cardFrontView = root.findViewById(R.id.fragment_payment_error_card_visual);
 
         final TshPaymentErrorData data = getPaymentActivity().getErrorData();
         if (data != null) {
             messageTextView.setText(data.getMessage());
-            if(!TextUtils.isEmpty(data.getDigitalizedCardId())) {
-                cardFrontView.loadCardDetails(new CardWrapper(data.getDigitalizedCardId()));
-            }
         }
         return root;
     }
 
+    @Override
+    public void onViewCreated(@NonNull final View view,
+                              @Nullable final Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // View lifecycle owner exists only now. Card requests are cancelled with it.
+        final TshPaymentErrorData data = getPaymentActivity().getErrorData();
+        if (data != null && !TextUtils.isEmpty(data.getDigitalizedCardId())) {
+            final ViewCardFront cardFrontView = view.findViewById(R.id.fragment_payment_error_card_visual);
+            cardFrontView.loadCardDetails(new CardWrapper(data.getDigitalizedCardId()), getViewLifecycleOwner());
+        }
+    }
+
     //endregion
 
 }
@@ -10,6 +10,9 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.thalesgroup.tshpaysample.R;
 import com.thalesgroup.tshpaysample.sdk.SdkHelper;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
@@ -48,17 +51,14 @@ public class FragmentPaymentReady extends AbstractFragment {
         mSecondsTextView = root.findViewById(R.id.remaining_seconds);
 
         final TextView amountTextView = root.findViewById(R.id.amount);
-        final ViewCardFront cardFrontView = root.findViewById(R.id.fragment_payment_ready_card_visual);
         final TshPaymentData data = getPaymentActivity().getSecondTapData();
 
         if (data != null) {
-            if (data.getAmount() > 0) {
-                amountTextView.setText(String.format(Locale.getDefault(), "%s %s", data.getAmount(), data.getCurrency()));
+            if (data.getAmount().isKnown() && data.getAmount().getMinorUnits() > 0) {
+                amountTextView.setText(data.getAmount().toCodeDisplayString());
             } else {
                 amountTextView.setVisibility(View.GONE);
             }
-
-            cardFrontView.loadCardDetails(new CardWrapper(data.getDigitalizedCardId()));
         }
 
         AppLoggerHelper.debug(TAG, "Registering time remaining listener");
@@ -68,6 +68,19 @@ public class FragmentPaymentReady extends AbstractFragment {
         return root;
     }
 
+    @Override
+    public void onViewCreated(@NonNull final View view,
+                              @Nullable final Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // View lifecycle owner exists only now. Card requests are cancelled with it.
+        final TshPaymentData data = getPaymentActivity().getSecondTapData();
+        if (data != null) {
+            final ViewCardFront cardFrontView = view.findViewById(R.id.fragment_payment_ready_card_visual);
+            cardFrontView.loadCardDetails(new CardWrapper(data.getDigitalizedCardId()), getViewLifecycleOwner());
+        }
+    }
+
     public void onReadyToTapTimeRemainingChanged(final Integer remainingSeconds) {
         AppLoggerHelper.debug(TAG, "onReadyToTapTimeRemainingChanged(): " + remainingSeconds);
         mSecondsTextView.setText(String.format(Locale.getDefault(), "%d s", remainingSeconds));
@@ -10,13 +10,14 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.thalesgroup.tshpaysample.R;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
 import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentData;
 import com.thalesgroup.tshpaysample.ui.views.ViewCardFront;
 
-import java.util.Locale;
-
 public class FragmentPaymentSuccess extends AbstractFragment {
 
     //region Life Cycle
@@ -33,16 +34,27 @@ public class FragmentPaymentSuccess extends AbstractFragment {
         // Inflate the layout for this fragment
         final View root = inflater.inflate(R.layout.fragment_payment_success, container, false);
         final TextView amountTextView = root.findViewById(R.id.amount);
-        final ViewCardFront cardFrontView = root.findViewById(R.id.fragment_payment_success_card_visual);
 
         final TshPaymentData data = getPaymentActivity().getSuccessData();
         if (data != null) {
-            amountTextView.setText(String.format(Locale.getDefault(), "%s %s", data.getAmount(), data.getCurrency()));
-            cardFrontView.loadCardDetails(new CardWrapper(data.getDigitalizedCardId()));
+            amountTextView.setText(data.getAmount().toCodeDisplayString());
         }
         return root;
     }
 
+    @Override
+    public void onViewCreated(@NonNull final View view,
+                              @Nullable final Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // View lifecycle owner exists only now. Card requests are cancelled with it.
+        final TshPaymentData data = getPaymentActivity().getSuccessData();
+        if (data != null) {
+            final ViewCardFront cardFrontView = view.findViewById(R.id.fragment_payment_success_card_visual);
+            cardFrontView.loadCardDetails(new CardWrapper(data.getDigitalizedCardId()), getViewLifecycleOwner());
+        }
+    }
+
     //endregion
 
 }
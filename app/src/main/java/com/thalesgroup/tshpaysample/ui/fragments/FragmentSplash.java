@@ -8,6 +8,7 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
@@ -26,8 +27,10 @@ public class FragmentSplash extends AbstractFragment {
     private static final String TAG = FragmentSplash.class.getSimpleName();
 
     private TshInitStateEnum mStateHandled = TshInitStateEnum.INACTIVE;
+    private int mAttemptHandled;
     private TextView mTextState;
     private ProgressBar mProgressState;
+    private Button mButtonRetry;
 
     //endregion
 
@@ -47,6 +50,8 @@ public class FragmentSplash extends AbstractFragment {
 
         mTextState = retValue.findViewById(R.id.fragment_splash_text_state);
         mProgressState = retValue.findViewById(R.id.fragment_splash_progress_bar);
+        mButtonRetry = retValue.findViewById(R.id.fragment_splash_button_retry);
+        mButtonRetry.setOnClickListener(view -> SdkHelper.getInstance().getInit().retry());
 
         return retValue;
     }
@@ -72,7 +77,10 @@ public class FragmentSplash extends AbstractFragment {
 
         AppLoggerHelper.debug(TAG, String.format("stateHandled = %s, currentState = %s", mStateHandled, state));
 
-        if (!mStateHandled.equals(state.getState())) {
+        if (!mStateHandled.equals(state.getState()) || mAttemptHandled != state.getAttempt()) {
+            // Init gives up only after all attempts of the retry policy. From then on it is up to the user.
+            mButtonRetry.setVisibility(state.getState() == TshInitStateEnum.INIT_FAILED ? View.VISIBLE : View.GONE);
+
             switch (state.getState()) {
                 case INACTIVE:
                     break;
@@ -80,6 +88,14 @@ public class FragmentSplash extends AbstractFragment {
                     mProgressState.setVisibility(View.VISIBLE);
                     mTextState.setText(R.string.fragment_splash_state_in_progress);
                     break;
+                case INIT_RETRYING:
+                    mProgressState.setVisibility(View.VISIBLE);
+                    mTextState.setText(getString(R.string.fragment_splash_state_retrying, state.getAttempt()));
+                    break;
+                case INIT_PAYMENT_READY:
+                    mProgressState.setVisibility(View.VISIBLE);
+                    mTextState.setText(R.string.fragment_splash_state_payment_ready);
+                    break;
                 case INIT_FAILED:
                     mProgressState.setVisibility(View.INVISIBLE);
                     mTextState.setText(R.string.fragment_splash_state_failed);
@@ -93,6 +109,7 @@ public class FragmentSplash extends AbstractFragment {
             }
 
             mStateHandled = state.getState();
+            mAttemptHandled = state.getAttempt();
         }
     }
 
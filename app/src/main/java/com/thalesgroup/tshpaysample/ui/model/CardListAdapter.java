@@ -11,18 +11,24 @@ import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.lifecycle.Lifecycle;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.viewpager2.adapter.FragmentStateAdapter;
 
 import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardManager;
 import com.gemalto.mfs.mwsdk.dcm.PaymentType;
 import com.gemalto.mfs.mwsdk.utils.async.AsyncResult;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardListHelper;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardSnapshot;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
 import com.thalesgroup.tshpaysample.ui.fragments.FragmentCardPage;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class CardListAdapter extends FragmentStateAdapter {
 
@@ -30,10 +36,16 @@ public class CardListAdapter extends FragmentStateAdapter {
 
     private static final String TAG = CardListAdapter.class.getSimpleName();
 
-    private final List<CardWrapper> mCardList = new ArrayList<>();
+    private final List<CardItem> mCardList = new ArrayList<>();
     private final Context mContext;
     private final FragmentManager mFragmentManager;
 
+    // Stable ids are assigned once per tokenized card id and never reused, so they can't collide.
+    // Ids of cards which are gone are dropped with the next reload.
+    private final Map<String, Long> mStableIds = new HashMap<>();
+    private final Set<Long> mCurrentIds = new HashSet<>();
+    private long mNextStableId = 1;
+
     //endregion
 
     //region FragmentStateAdapter
@@ -51,7 +63,7 @@ public class CardListAdapter extends FragmentStateAdapter {
     @Override
     public Fragment createFragment(final int position) {
         final Bundle arguments = new Bundle();
-        arguments.putString(FragmentCardPage.ARGUMENT_CARD_ID, mCardList.get(position).getCardId());
+        arguments.putString(FragmentCardPage.ARGUMENT_CARD_ID, mCardList.get(position).mCardWrapper.getCardId());
 
         final FragmentCardPage retValue = new FragmentCardPage();
         retValue.setArguments(arguments);
@@ -65,17 +77,12 @@ public class CardListAdapter extends FragmentStateAdapter {
 
     @Override
     public long getItemId(final int position) {
-        return mCardList.get(position).getCardId().hashCode();
+        return mCardList.get(position).mStableId;
     }
 
     @Override
     public boolean containsItem(final long itemId) {
-        for (final CardWrapper loopCard : mCardList) {
-            if (loopCard.getCardId().hashCode() == itemId) {
-                return true;
-            }
-        }
-        return false;
+        return mCurrentIds.contains(itemId);
     }
 
     //endregion
@@ -87,17 +94,21 @@ public class CardListAdapter extends FragmentStateAdapter {
         new CardListHelper(mContext, new CardListHelper.Delegate() {
             @Override
             public void onSuccess(final List<CardWrapper> cardWrappers) {
-                mCardList.clear();
-                mCardList.addAll(cardWrappers);
+                final List<CardItem> newList = new ArrayList<>(cardWrappers.size());
+                final Set<String> cardIds = new HashSet<>();
+                for (final CardWrapper loopCard : cardWrappers) {
+                    newList.add(new CardItem(loopCard, getStableId(loopCard.getCardId())));
+                    cardIds.add(loopCard.getCardId());
+                }
+                mStableIds.keySet().retainAll(cardIds);
 
-                checkAndSetDefaultCard();
-                notifyPages();
+                checkAndSetDefaultCard(newList);
+                updateCardList(newList);
             }
 
             @Override
             public void onError(final String error) {
                 AppLoggerHelper.error(TAG, error);
-                notifyPages();
             }
         }).getAllCards();
     }
@@ -107,7 +118,7 @@ public class CardListAdapter extends FragmentStateAdapter {
      * Checks if there is a default card already set and if not it looks for the the first active card and sets it as default.
      * This makes sure that a default card is always set when possible.
      */
-    private void checkAndSetDefaultCard(){
+    private void checkAndSetDefaultCard(final List<CardItem> cardList){
 
         final AsyncResult<String> defaultCardResult = DigitalizedCardManager.getDefault(PaymentType.CONTACTLESS, null).waitToComplete();
 
@@ -117,9 +128,9 @@ public class CardListAdapter extends FragmentStateAdapter {
             if(defaultCardId == null || defaultCardId.isEmpty()){
                 AppLoggerHelper.debug(TAG, "No default card found. Look for a card to set as default");
 
-                for(final CardWrapper loopCard : mCardList){
-                    if(loopCard.isActive()){
-                        loopCard.setDefault(null);
+                for(final CardItem loopCard : cardList){
+                    if(loopCard.mCardWrapper.isActive()){
+                        loopCard.mCardWrapper.setDefault(null, null);
                         break;
                     }
                 }
@@ -134,20 +145,88 @@ public class CardListAdapter extends FragmentStateAdapter {
 
     //region Private Helpers
 
-    private void notifyPages() {
-        // For simplification we will reload entire list, but we might want to load just some part.
-        notifyDataSetChanged();
+    private long getStableId(final String cardId) {
+        Long retValue = mStableIds.get(cardId);
+        if (retValue == null) {
+            retValue = mNextStableId++;
+            mStableIds.put(cardId, retValue);
+        }
+        return retValue;
+    }
+
+    private void updateCardList(final List<CardItem> newList) {
+        final List<CardItem> oldList = new ArrayList<>(mCardList);
+        final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
 
-        // There is no easy way to update individual fragments with new FragmentStateAdapter.
-        // Update them manually so we do not have to overcomplicate the sample app.
-        for (final Fragment loopFragment : mFragmentManager.getFragments()) {
-            if (loopFragment instanceof FragmentCardPage) {
-                final FragmentCardPage pageToNotify = (FragmentCardPage) loopFragment;
-                pageToNotify.updateState();
+            @Override
+            public boolean areItemsTheSame(final int oldItemPosition, final int newItemPosition) {
+                return oldList.get(oldItemPosition).mStableId == newList.get(newItemPosition).mStableId;
+            }
+
+            @Override
+            public boolean areContentsTheSame(final int oldItemPosition, final int newItemPosition) {
+                return oldList.get(oldItemPosition).hasSameContent(newList.get(newItemPosition));
+            }
+        });
+
+        mCardList.clear();
+        mCardList.addAll(newList);
+        mCurrentIds.clear();
+        for (final CardItem loopCard : newList) {
+            mCurrentIds.add(loopCard.mStableId);
+        }
+
+        // Inserted, removed and moved pages are handled by the adapter itself.
+        diffResult.dispatchUpdatesTo(this);
+
+        // Existing pages are not rebound by FragmentStateAdapter. Refresh those which content has changed.
+        for (int oldPosition = 0; oldPosition < oldList.size(); oldPosition++) {
+            final int newPosition = diffResult.convertOldPositionToNew(oldPosition);
+            if (newPosition != DiffUtil.DiffResult.NO_POSITION
+                    && !oldList.get(oldPosition).hasSameContent(newList.get(newPosition))) {
+                notifyPage(newList.get(newPosition).mStableId);
             }
         }
     }
 
+    private void notifyPage(final long stableId) {
+        // FragmentStateAdapter tags its fragments with "f" + item id.
+        final Fragment fragment = mFragmentManager.findFragmentByTag("f" + stableId);
+        if (fragment instanceof FragmentCardPage) {
+            ((FragmentCardPage) fragment).updateState();
+        }
+    }
+
+    /**
+     * Card together with the snapshot shown on its page at the time of the reload.
+     */
+    private static final class CardItem {
+        private final CardWrapper mCardWrapper;
+        private final long mStableId;
+        private final CardSnapshot mSnapshot;
+
+        CardItem(final CardWrapper cardWrapper, final long stableId) {
+            mCardWrapper = cardWrapper;
+            mStableId = stableId;
+            mSnapshot = cardWrapper.getSnapshot();
+        }
+
+        boolean hasSameContent(final CardItem other) {
+            if (mSnapshot == null || other.mSnapshot == null) {
+                return false;
+            }
+            return mSnapshot.hasSameContent(other.mSnapshot);
+        }
+    }
 
     //endregion
 
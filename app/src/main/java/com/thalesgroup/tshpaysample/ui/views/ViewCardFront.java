@@ -9,14 +9,20 @@ import android.content.res.TypedArray;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
 import android.util.AttributeSet;
+import android.view.View;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LifecycleOwner;
 
-import com.gemalto.mfs.mwsdk.dcm.DigitalizedCardDetails;
 import com.thalesgroup.tshpaysample.R;
-import com.thalesgroup.tshpaysample.sdk.helpers.AsyncHelperCardDetails;
+import com.thalesgroup.tshpaysample.sdk.SdkHelper;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardSnapshot;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardRequest;
+import com.thalesgroup.tshpaysample.sdk.helpers.CardSnapshotStore;
 import com.thalesgroup.tshpaysample.sdk.helpers.CardWrapper;
 import com.thalesgroup.tshpaysample.utlis.AppLoggerHelper;
 
@@ -26,8 +32,17 @@ public class ViewCardFront extends FrameLayout {
 
     private static final String TAG = ViewCardFront.class.getSimpleName();
 
+    // Same as the dimension ratio of the card background in the layout.
+    private static final int CARD_RATIO_WIDTH = 490;
+    private static final int CARD_RATIO_HEIGHT = 310;
+
     private final int[] mColors;
 
+    // Only the latest card art request is delivered. Previous one is cancelled with each new bind.
+    private CardRequest<CardWrapper.CardArtDelegate> mCardArtRequest;
+    private CardRequest<CardSnapshotStore.Delegate> mSnapshotRequest;
+    private String mCardId;
+
     //endregion
 
     //region Life Cycle
@@ -69,27 +84,23 @@ public class ViewCardFront extends FrameLayout {
         ((TextView) findViewById(R.id.view_card_front_pan)).setText(value);
     }
 
-    public void loadCardDetails(final CardWrapper cardWrapper) {
-        // Load card art. It can be both async or sync. Depend if we already have image downloaded.
-        cardWrapper.getCardArt(getContext(), (drawable, loading) -> {
-            if (drawable != null) {
-                setCardDrawable(drawable);
-            } else {
-                loadDefaultCardGraphics();
-            }
-
-            // Company logo and scheme will be visible only if we do not have final card graphics.
-            findViewById(R.id.view_card_front_thales_logo).setVisibility(drawable == null ? VISIBLE : INVISIBLE);
-            findViewById(R.id.view_card_front_type).setVisibility(drawable == null ? VISIBLE : INVISIBLE);
-            // Display loading bar if we are downloading card art from backend.
-            findViewById(R.id.view_card_front_progressbar).setVisibility(loading ? VISIBLE : GONE);
-        });
-
-        cardWrapper.getDigitalizedCardDetails(new AsyncHelperCardDetails.Delegate() {
+    /**
+     * @param lifecycleOwner Owner of the hosting view, typically {@code Fragment#getViewLifecycleOwner()}.
+     *                       Requests are cancelled once it is destroyed.
+     */
+    public void loadCardDetails(@NonNull final CardWrapper cardWrapper,
+                                @NonNull final LifecycleOwner lifecycleOwner) {
+        loadCardArt(cardWrapper, lifecycleOwner);
+
+        // Basic information is shared with other screens through the snapshot store.
+        if (mSnapshotRequest != null) {
+            mSnapshotRequest.cancel();
+        }
+        mSnapshotRequest = SdkHelper.getInstance().getCardSnapshotStore().get(cardWrapper.getCardId(),
+                lifecycleOwner, new CardSnapshotStore.Delegate() {
             @Override
-            public void onSuccess(final DigitalizedCardDetails value) {
-                setExp(value.getPanExpiry());
-                setPan("**** **** **** " + value.getLastFourDigits());
+            public void onSuccess(@NonNull final CardSnapshot snapshot) {
+                setCardSnapshot(snapshot);
             }
 
             @Override
@@ -99,10 +110,54 @@ public class ViewCardFront extends FrameLayout {
         });
     }
 
+    public void setCardSnapshot(@NonNull final CardSnapshot snapshot) {
+        setExp(snapshot.getPanExpiry());
+        setPan("**** **** **** " + snapshot.getLastFourDigits());
+    }
+
+    /**
+     * @param lifecycleOwner Owner of the hosting view. Request is cancelled once it is destroyed.
+     */
+    public void loadCardArt(@NonNull final CardWrapper cardWrapper,
+                            @NonNull final LifecycleOwner lifecycleOwner) {
+        // Load card art. It can be both async or sync. Depend if we already have image downloaded.
+        final View background = findViewById(R.id.view_card_front_background);
+        final int targetWidth = background.getWidth() > 0 ? background.getWidth() : getResources().getDisplayMetrics().widthPixels;
+        final int targetHeight = background.getHeight() > 0 ? background.getHeight() : targetWidth * CARD_RATIO_HEIGHT / CARD_RATIO_WIDTH;
+
+        if (mCardArtRequest != null) {
+            mCardArtRequest.cancel();
+        }
+
+        // Do not leave the art of previously bound card while the new one is loading.
+        if (!cardWrapper.getCardId().equals(mCardId)) {
+            mCardId = cardWrapper.getCardId();
+            showCardArt(null, false);
+        }
+
+        // Request is also cancelled with the fragment or activity hosting this view.
+        mCardArtRequest = cardWrapper.getCardArt(getContext(), targetWidth, targetHeight,
+                lifecycleOwner, this::showCardArt);
+    }
+
     //endregion
 
     //region Private Helpres
 
+    private void showCardArt(@Nullable final Drawable drawable, final boolean loading) {
+        if (drawable != null) {
+            setCardDrawable(drawable);
+        } else {
+            loadDefaultCardGraphics();
+        }
+
+        // Company logo and scheme will be visible only if we do not have final card graphics.
+        findViewById(R.id.view_card_front_thales_logo).setVisibility(drawable == null ? VISIBLE : INVISIBLE);
+        findViewById(R.id.view_card_front_type).setVisibility(drawable == null ? VISIBLE : INVISIBLE);
+        // Display loading bar if we are downloading card art from backend.
+        findViewById(R.id.view_card_front_progressbar).setVisibility(loading ? VISIBLE : GONE);
+    }
+
     private void loadDefaultCardGraphics() {
         final GradientDrawable gradientDrawable = (GradientDrawable) ContextCompat.getDrawable(getContext(), R.drawable.rounded_rectangle_gradient);
         if (gradientDrawable != null) {
@@ -0,0 +1,250 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.utlis;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Serializable;
+
+/**
+ * Immutable monetary amount represented by the minor units of the currency and the index of the
+ * currency in the {@link UtilsCurrenciesConstants#CURRENCY_TABLE}.
+ * <p/>
+ * The value does not carry any {@code double} or {@code BigDecimal} so it can be passed through
+ * the payment callbacks without any rounding or formatting work until it is displayed.
+ */
+public final class Amount implements Serializable {
+
+    private static final long serialVersionUID = 4170381734521931075L;
+
+    /**
+     * Minor units value used when the amount is not known (e.g. pre-authentication of any amount).
+     */
+    public static final long UNKNOWN_MINOR_UNITS = -1;
+
+    /**
+     * Currency index used when the currency is not known or not listed.
+     */
+    public static final int UNKNOWN_CURRENCY = -1;
+
+    /**
+     * Amount with neither value nor currency.
+     */
+    public static final Amount UNKNOWN = new Amount(UNKNOWN_MINOR_UNITS, UNKNOWN_CURRENCY);
+
+    /**
+     * Number of bits used by the currency index in the {@link #toWire()} form.
+     */
+    private static final int WIRE_CURRENCY_BITS = 11;
+    private static final long WIRE_CURRENCY_MASK = (1L << WIRE_CURRENCY_BITS) - 1;
+
+    /**
+     * Largest minor units value which fits into the {@link #toWire()} form. Far above the 12 digits EMV amounts.
+     */
+    public static final long MAX_MINOR_UNITS = Long.MAX_VALUE >> WIRE_CURRENCY_BITS;
+
+    private final long mMinorUnits;
+    private final int mCurrencyIndex;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Building object
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Amount(final long minorUnits, final int currencyIndex) {
+        mMinorUnits = minorUnits;
+        mCurrencyIndex = currencyIndex;
+    }
+
+    /**
+     * Creates the amount.
+     *
+     * @param minorUnits    Amount in minor units of the currency (e.g. 1223 for 12.23 EUR) up to
+     *                      {@link #MAX_MINOR_UNITS} or {@link #UNKNOWN_MINOR_UNITS}.
+     * @param currencyIndex Index of the currency in the {@link UtilsCurrenciesConstants#CURRENCY_TABLE}
+     *                      or {@link #UNKNOWN_CURRENCY}.
+     * @return Amount instance.
+     * @throws IllegalArgumentException if the currency index is not valid or the value is above {@link #MAX_MINOR_UNITS}.
+     */
+    public static Amount of(final long minorUnits, final int currencyIndex) {
+        if (currencyIndex < UNKNOWN_CURRENCY || currencyIndex >= UtilsCurrenciesConstants.CURRENCY_TABLE.length) {
+            throw new IllegalArgumentException("Invalid currency index: " + currencyIndex);
+        }
+        if (minorUnits > MAX_MINOR_UNITS) {
+            throw new IllegalArgumentException("Amount out of range: " + minorUnits);
+        }
+
+        if (minorUnits < 0 && currencyIndex == UNKNOWN_CURRENCY) {
+            return UNKNOWN;
+        }
+
+        return new Amount(minorUnits < 0 ? UNKNOWN_MINOR_UNITS : minorUnits, currencyIndex);
+    }
+
+    /**
+     * Creates the amount out of the values provided by the payment transaction context.
+     * This is the only place where the {@code double} amount from the SDK is converted.
+     *
+     * @param amount              Amount in major units as provided by the SDK. Negative for unknown.
+     * @param currencyNumericCode The ISO 4217 numeric currency code in BCD format.
+     * @return Amount instance. Never {@code null}.
+     */
+    public static Amount fromTransaction(final double amount, @Nullable final byte[] currencyNumericCode) {
+        final int currencyIndex = currencyNumericCode == null
+                ? UNKNOWN_CURRENCY
+                : UtilsCurrenciesConstants.getTableIndex(UtilsCurrenciesConstants.decodeBcd(currencyNumericCode));
+
+        if (amount < 0 || Double.isNaN(amount) || currencyIndex == UNKNOWN_CURRENCY) {
+            return of(UNKNOWN_MINOR_UNITS, currencyIndex);
+        }
+
+        // Values which cannot come from a valid transaction are treated as unknown.
+        final long minorUnits = UtilsCurrenciesConstants.CURRENCY_TABLE[currencyIndex].toMinorUnits(amount);
+        return of(minorUnits <= MAX_MINOR_UNITS ? minorUnits : UNKNOWN_MINOR_UNITS, currencyIndex);
+    }
+
+    /**
+     * Restores the amount from the compact form created by {@link #toWire()}.
+     *
+     * @param wire Compact form of the amount.
+     * @return Amount instance.
+     */
+    public static Amount fromWire(final long wire) {
+        return of(wire >> WIRE_CURRENCY_BITS, (int) (wire & WIRE_CURRENCY_MASK) - 1);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Getting properties
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public long getMinorUnits() {
+        return mMinorUnits;
+    }
+
+    public int getCurrencyIndex() {
+        return mCurrencyIndex;
+    }
+
+    /**
+     * @return {@code True} if both the value and the currency are known.
+     */
+    public boolean isKnown() {
+        return mMinorUnits >= 0 && mCurrencyIndex != UNKNOWN_CURRENCY;
+    }
+
+    /**
+     * @return The currency of the amount or {@code null} if it's not known.
+     */
+    @Nullable
+    public Currency getCurrency() {
+        return mCurrencyIndex == UNKNOWN_CURRENCY ? null : UtilsCurrenciesConstants.CURRENCY_TABLE[mCurrencyIndex];
+    }
+
+    /**
+     * @return The ISO 4217 alphabetic currency code or {@code null} if it's not known.
+     */
+    @Nullable
+    public String getCurrencyCode() {
+        final Currency currency = getCurrency();
+        return currency == null ? null : currency.getCurrencyCode();
+    }
+
+    /**
+     * Packs the amount into a single {@code long}. The currency index takes the lowest
+     * {@value #WIRE_CURRENCY_BITS} bits and the minor units the rest, which is plenty for the
+     * 12 digits EMV amounts. Values are limited to {@link #MAX_MINOR_UNITS}, so it never overflows.
+     *
+     * @return Compact form of the amount.
+     * @see #fromWire(long)
+     */
+    public long toWire() {
+        return (mMinorUnits << WIRE_CURRENCY_BITS) | (mCurrencyIndex + 1);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Operations
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Converts the amount to another currency using the currency conversion rates.
+     *
+     * @param currencyIndex Index of the target currency in the {@link UtilsCurrenciesConstants#CURRENCY_TABLE}.
+     * @return Converted amount.
+     * @throws ArithmeticException if the result is above {@link #MAX_MINOR_UNITS}.
+     */
+    public Amount convertTo(final int currencyIndex) {
+        if (!isKnown() || currencyIndex == mCurrencyIndex) {
+            return of(mMinorUnits, currencyIndex);
+        }
+
+        final Currency origin = UtilsCurrenciesConstants.CURRENCY_TABLE[mCurrencyIndex];
+        final Currency dest = UtilsCurrenciesConstants.CURRENCY_TABLE[currencyIndex];
+        final long minorUnits = Math.multiplyExact(mMinorUnits, (long) origin.getConversionRate()) / dest.getConversionRate();
+        if (minorUnits > MAX_MINOR_UNITS) {
+            throw new ArithmeticException("Converted amount out of range: " + minorUnits);
+        }
+        return of(minorUnits, currencyIndex);
+    }
+
+    /**
+     * Appends the amount formatted with the currency symbol to the given builder.
+     *
+     * @param output Builder to append the formatted amount to.
+     * @return The same builder for call chaining.
+     */
+    public StringBuilder formatTo(@NonNull final StringBuilder output) {
+        final Currency currency = getCurrency();
+        if (currency == null || mMinorUnits < 0) {
+            return output;
+        }
+        return currency.formatTo(output, mMinorUnits);
+    }
+
+    /**
+     * @return The amount formatted with the currency code (e.g. "12.23 EUR") or an empty string
+     * for unknown amount.
+     */
+    @NonNull
+    public String toCodeDisplayString() {
+        final Currency currency = getCurrency();
+        if (currency == null || mMinorUnits < 0) {
+            return "";
+        }
+        return currency.formatCodeTo(new StringBuilder(), mMinorUnits).toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Object
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Amount)) {
+            return false;
+        }
+        final Amount amount = (Amount) other;
+        return mMinorUnits == amount.mMinorUnits && mCurrencyIndex == amount.mCurrencyIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(toWire());
+    }
+
+    @Override
+    public String toString() {
+        return "Amount{" +
+                "mMinorUnits=" + mMinorUnits +
+                ", mCurrencyCode='" + getCurrencyCode() + '\'' +
+                '}';
+    }
+
+    private Object readResolve() {
+        return of(mMinorUnits, mCurrencyIndex);
+    }
+}
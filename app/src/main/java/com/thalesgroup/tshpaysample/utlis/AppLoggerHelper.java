@@ -8,33 +8,177 @@ import android.util.Log;
 
 import com.thalesgroup.tshpaysample.BuildConfig;
 
+import java.util.Arrays;
+
+/**
+ * Level gated logging.
+ * <p/>
+ * Level is checked before anything else, so the template overloads and {@link MessageSupplier} do not
+ * format anything when the level is filtered out. Fixed arity overloads avoid the varargs array as well.
+ * Use them on the payment and push paths instead of {@code String.format} or concatenation.
+ * <p/>
+ * With {@link #enableAsyncSink(int)} the records are formatted and written by a background thread.
+ */
 public class AppLoggerHelper {
 
+    /**
+     * Lazily built message.
+     */
+    public interface MessageSupplier {
+        String get();
+    }
+
+    private static volatile AsyncLogSink sAsyncSink;
+
+    /**
+     * Hands all further records to a background thread. Calling thread never blocks, records which
+     * do not fit into the queue are dropped and counted.
+     *
+     * @param capacity Maximum number of pending records.
+     */
+    public static synchronized void enableAsyncSink(final int capacity) {
+        if (sAsyncSink == null) {
+            sAsyncSink = new AsyncLogSink(capacity);
+        }
+    }
+
+    /**
+     * @return Number of records dropped by the async sink because its queue was full.
+     */
+    public static long getDroppedCount() {
+        final AsyncLogSink sink = sAsyncSink;
+        return sink != null ? sink.getDroppedCount() : 0;
+    }
+
+    public static boolean isLoggable(final int priority) {
+        return BuildConfig.LOG_LEVEL <= priority;
+    }
+
     public static void debug(final String tag,
                              final String message) {
         if (BuildConfig.LOG_LEVEL <= Log.DEBUG) {
-            Log.d(tag, message);
+            log(Log.DEBUG, tag, message, null, null);
+        }
+    }
+
+    public static void debug(final String tag,
+                             final String format,
+                             final Object arg) {
+        if (BuildConfig.LOG_LEVEL <= Log.DEBUG) {
+            log(Log.DEBUG, tag, format, new Object[]{arg}, null);
+        }
+    }
+
+    public static void debug(final String tag,
+                             final String format,
+                             final Object arg1,
+                             final Object arg2) {
+        if (BuildConfig.LOG_LEVEL <= Log.DEBUG) {
+            log(Log.DEBUG, tag, format, new Object[]{arg1, arg2}, null);
+        }
+    }
+
+    public static void debug(final String tag,
+                             final String format,
+                             final Object arg1,
+                             final Object arg2,
+                             final Object arg3) {
+        if (BuildConfig.LOG_LEVEL <= Log.DEBUG) {
+            log(Log.DEBUG, tag, format, new Object[]{arg1, arg2, arg3}, null);
+        }
+    }
+
+    public static void debug(final String tag,
+                             final String format,
+                             final Object... args) {
+        if (BuildConfig.LOG_LEVEL <= Log.DEBUG) {
+            log(Log.DEBUG, tag, format, args, null);
+        }
+    }
+
+    public static void debug(final String tag,
+                             final MessageSupplier supplier) {
+        if (BuildConfig.LOG_LEVEL <= Log.DEBUG) {
+            log(Log.DEBUG, tag, supplier.get(), null, null);
         }
     }
 
     public static void info(final String tag,
                             final String message) {
         if (BuildConfig.LOG_LEVEL <= Log.INFO) {
-            Log.i(tag, message);
+            log(Log.INFO, tag, message, null, null);
+        }
+    }
+
+    public static void info(final String tag,
+                            final String format,
+                            final Object arg) {
+        if (BuildConfig.LOG_LEVEL <= Log.INFO) {
+            log(Log.INFO, tag, format, new Object[]{arg}, null);
+        }
+    }
+
+    public static void info(final String tag,
+                            final String format,
+                            final Object arg1,
+                            final Object arg2) {
+        if (BuildConfig.LOG_LEVEL <= Log.INFO) {
+            log(Log.INFO, tag, format, new Object[]{arg1, arg2}, null);
+        }
+    }
+
+    public static void info(final String tag,
+                            final String format,
+                            final Object arg1,
+                            final Object arg2,
+                            final Object arg3) {
+        if (BuildConfig.LOG_LEVEL <= Log.INFO) {
+            log(Log.INFO, tag, format, new Object[]{arg1, arg2, arg3}, null);
+        }
+    }
+
+    public static void info(final String tag,
+                            final String format,
+                            final Object... args) {
+        if (BuildConfig.LOG_LEVEL <= Log.INFO) {
+            log(Log.INFO, tag, format, args, null);
+        }
+    }
+
+    public static void info(final String tag,
+                            final MessageSupplier supplier) {
+        if (BuildConfig.LOG_LEVEL <= Log.INFO) {
+            log(Log.INFO, tag, supplier.get(), null, null);
         }
     }
 
     public static void warn(final String tag,
                              final String message) {
         if (BuildConfig.LOG_LEVEL <= Log.WARN) {
-            Log.w(tag, message);
+            log(Log.WARN, tag, message, null, null);
+        }
+    }
+
+    public static void warn(final String tag,
+                            final String format,
+                            final Object... args) {
+        if (BuildConfig.LOG_LEVEL <= Log.WARN) {
+            log(Log.WARN, tag, format, args, null);
         }
     }
 
     public static void error(final String tag,
                              final String message) {
         if (BuildConfig.LOG_LEVEL <= Log.ERROR) {
-            Log.e(tag, message);
+            log(Log.ERROR, tag, message, null, null);
+        }
+    }
+
+    public static void error(final String tag,
+                             final String format,
+                             final Object... args) {
+        if (BuildConfig.LOG_LEVEL <= Log.ERROR) {
+            log(Log.ERROR, tag, format, args, null);
         }
     }
 
@@ -42,15 +186,50 @@ public class AppLoggerHelper {
                                  final String message,
                                  final Exception exception) {
         if (BuildConfig.LOG_LEVEL <= Log.ERROR) {
-            Log.e(tag, message, exception);
+            log(Log.ERROR, tag, message, null, exception);
         }
     }
 
     public static void wtf(final String tag,
                                  final String message,
                                  final Exception exception) {
+        // Always synchronous. Depending on the system settings it might terminate the process.
         if (BuildConfig.LOG_LEVEL <= Log.ASSERT) {
             Log.wtf(tag, message, exception);
         }
     }
+
+    private static void log(final int priority,
+                            final String tag,
+                            final String message,
+                            final Object[] args,
+                            final Throwable throwable) {
+        final AsyncLogSink sink = sAsyncSink;
+        if (sink != null) {
+            sink.offer(priority, tag, message, args, throwable);
+        } else {
+            write(priority, tag, message, args, throwable);
+        }
+    }
+
+    static void write(final int priority,
+                      final String tag,
+                      final String message,
+                      final Object[] args,
+                      final Throwable throwable) {
+        String text = args == null ? message : format(message, args);
+        if (throwable != null) {
+            text += '\n' + Log.getStackTraceString(throwable);
+        }
+        Log.println(priority, tag, text);
+    }
+
+    private static String format(final String format, final Object[] args) {
+        try {
+            return String.format(format, args);
+        } catch (final RuntimeException exception) {
+            // Broken template must not take the caller down.
+            return format + " " + Arrays.toString(args);
+        }
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.utlis;
+
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes {@link AppLoggerHelper} records on a background thread.
+ * <p/>
+ * Records are passed through a bounded queue. When it is full the record is dropped instead of
+ * blocking the caller, which is typically an SDK callback thread. Number of dropped records is
+ * reported in the log as soon as the writer catches up.
+ */
+final class AsyncLogSink {
+
+    //region Defines
+
+    private static final String TAG = AsyncLogSink.class.getSimpleName();
+
+    private final BlockingQueue<Record> mQueue;
+    private final AtomicLong mDropped = new AtomicLong();
+    private long mReportedDropped;
+
+    //endregion
+
+    //region Life Cycle
+
+    AsyncLogSink(final int capacity) {
+        mQueue = new ArrayBlockingQueue<>(capacity);
+
+        final Thread thread = new Thread(this::drain, "AppLogger");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    //endregion
+
+    //region Protected API
+
+    void offer(final int priority,
+               final String tag,
+               final String message,
+               final Object[] args,
+               final Throwable throwable) {
+        if (!mQueue.offer(new Record(priority, tag, message, args, throwable))) {
+            mDropped.incrementAndGet();
+        }
+    }
+
+    long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private void drain() {
+        while (true) {
+            final Record record;
+            try {
+                record = mQueue.take();
+            } catch (final InterruptedException exception) {
+                return;
+            }
+
+            final long dropped = mDropped.get();
+            if (dropped != mReportedDropped) {
+                Log.w(TAG, "Dropped " + (dropped - mReportedDropped) + " log records, queue was full");
+                mReportedDropped = dropped;
+            }
+
+            AppLoggerHelper.write(record.mPriority, record.mTag, record.mMessage, record.mArgs, record.mThrowable);
+        }
+    }
+
+    private static final class Record {
+        private final int mPriority;
+        private final String mTag;
+        private final String mMessage;
+        private final Object[] mArgs;
+        private final Throwable mThrowable;
+
+        Record(final int priority,
+               final String tag,
+               final String message,
+               final Object[] args,
+               final Throwable throwable) {
+            mPriority = priority;
+            mTag = tag;
+            mMessage = message;
+            mArgs = args;
+            mThrowable = throwable;
+        }
+    }
+
+    //endregion
+}
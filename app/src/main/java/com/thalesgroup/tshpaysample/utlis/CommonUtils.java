@@ -14,7 +14,6 @@ public final class CommonUtils {
     //region Defines
 
     private static final int ANIMATION_DURATION_MS = 500;
-    private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
 
     public interface AnimationFinishHandler {
         void onAnimationFinished();
@@ -25,13 +24,7 @@ public final class CommonUtils {
     //region Public API
 
     public static String bytesToHex(final byte[] bytes) {
-        final char[] hexChars = new char[bytes.length * 2];
-        for (int loopChar = 0; loopChar < bytes.length; loopChar++) {
-            final int loopByte = bytes[loopChar] & 0xFF;
-            hexChars[loopChar * 2] = HEX_ARRAY[loopByte >>> 4];
-            hexChars[loopChar * 2 + 1] = HEX_ARRAY[loopByte & 0x0F];
-        }
-        return new String(hexChars);
+        return HexUtils.bytesToHex(bytes);
     }
 
     public static Animation getFadeInAnimation(final AnimationFinishHandler handler) {
@@ -4,10 +4,17 @@
 
 package com.thalesgroup.tshpaysample.utlis;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
 
 /**
  * Class representing a currency.
+ * <p/>
+ * Instances are immutable, {@link #withDisplayMultiplier(int)} and {@link #withDecimalSeparatorPosition(int)}
+ * return a modified copy.
  *
  * @author PB
  */
@@ -48,13 +55,37 @@ public class Currency {
     /**
      * The amount value will be multiplied by this coefficient before displaying it.
      */
-    private int mDisplayMultiplier;
+    private final int mDisplayMultiplier;
     /**
      * Decimal separator position from left (0=no decimal places, 1=one decimal place, ...).
      * <p/>
      * Also used for parsing from the string where the decimal separator position is implicit.
      */
-    private int mDecimalSeparatorPosition;
+    private final int mDecimalSeparatorPosition;
+
+    /**
+     * Precomputed text placed before and after the amount value.
+     */
+    private final String mSymbolPrefix;
+    private final String mSymbolSuffix;
+    private final String mCodePrefix;
+    private final String mCodeSuffix;
+
+    /**
+     * Formatter used only for the decimal separator positions not handled by the fast path.
+     * {@link DecimalFormat} is not thread safe, so each thread gets its own instance.
+     */
+    private final ThreadLocal<DecimalFormat> mFallbackFormat = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            return new DecimalFormat();
+        }
+    };
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000};
+    private static final int FORMAT_CAPACITY = 32;
+
+    private static volatile LocaleSymbols sLocaleSymbols;
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // Building object
@@ -76,38 +107,60 @@ public class Currency {
                     final String currencySymbol,
                     final int conversionRate,
                     final int position) {
+        this(currCodeNum, currencyCode, currencySymbol, conversionRate, position, 1, 2);
+    }
+
+    private Currency(final int currCodeNum,
+                     final String currencyCode,
+                     final String currencySymbol,
+                     final int conversionRate,
+                     final int position,
+                     final int displayMultiplier,
+                     final int decimalSeparatorPosition) {
         mCurrencyNumber = currCodeNum;
         mCurrencyCode = currencyCode;
         mCurrencySymbol = currencySymbol;
         mConversionRate = conversionRate;
         mPosition = position;
-        mDisplayMultiplier = 1;
-        mDecimalSeparatorPosition = 2;
+        mDisplayMultiplier = displayMultiplier;
+        mDecimalSeparatorPosition = decimalSeparatorPosition;
+
+        if (position == Currency.BEFORE) {
+            mSymbolPrefix = currencySymbol + " ";
+            mSymbolSuffix = "";
+            mCodePrefix = currencyCode + " ";
+            mCodeSuffix = "";
+        } else {
+            mSymbolPrefix = "";
+            mSymbolSuffix = " " + currencySymbol;
+            mCodePrefix = "";
+            mCodeSuffix = " " + currencyCode;
+        }
     }
 
     /**
-     * Sets the display multiplier value (defaults to {@code 1}).
+     * Creates a copy with the given display multiplier value (defaults to {@code 1}).
      *
      * @param multiplier
      *         The display multiplier to set.
-     * @return Self for call chaining.
+     * @return New currency instance for call chaining.
      */
-    public Currency setDisplayMultiplier(final int multiplier) {
-        mDisplayMultiplier = multiplier;
-        return this;
+    public Currency withDisplayMultiplier(final int multiplier) {
+        return new Currency(mCurrencyNumber, mCurrencyCode, mCurrencySymbol, mConversionRate, mPosition,
+                multiplier, mDecimalSeparatorPosition);
     }
 
     /**
-     * Sets the decimal separator position (defaults to {@code 2}).
+     * Creates a copy with the given decimal separator position (defaults to {@code 2}).
      *
      * @param decimalSeparatorPosition
      *         The position of the decimal separator, left aligned (0=no decimal places, 1=one
      *         decimal place, ...).
-     * @return Self for call chaining.
+     * @return New currency instance for call chaining.
      */
-    public Currency setDecimalSeparatorPosition(final int decimalSeparatorPosition) {
-        mDecimalSeparatorPosition = decimalSeparatorPosition;
-        return this;
+    public Currency withDecimalSeparatorPosition(final int decimalSeparatorPosition) {
+        return new Currency(mCurrencyNumber, mCurrencyCode, mCurrencySymbol, mConversionRate, mPosition,
+                mDisplayMultiplier, decimalSeparatorPosition);
     }
 
     /**
@@ -117,63 +170,68 @@ public class Currency {
      * @return Formatted string for given currency with symbol and correct exponent formatting.
      */
     public String getFormatAmountDisplay(final double trxAmount) {
-        String output;
-        DecimalFormat decimalFormat;
-
-        switch (mDecimalSeparatorPosition){
-            case 0:
-                decimalFormat = new DecimalFormat("0");
-                break;
-            case 1:
-                decimalFormat = new DecimalFormat("0.0");
-                break;
-            case 2:
-                decimalFormat = new DecimalFormat("0.00");
-                break;
-            case 3:
-                decimalFormat = new DecimalFormat("0.000");
-                break;
-            default:
-                decimalFormat = new DecimalFormat();
-                break;
-        }
-
-        if (mPosition == Currency.BEFORE) {
-            output = mCurrencySymbol + " " + decimalFormat.format(trxAmount);
-        } else {
-            output = decimalFormat.format(trxAmount) + " " + mCurrencySymbol;
-        }
-        return output;
+        final StringBuilder output = new StringBuilder(FORMAT_CAPACITY);
+        appendFormatted(output, mSymbolPrefix, mSymbolSuffix, trxAmount);
+        return output.toString();
     }
 
     public String getFormatAmountCodeDisplay(final double trxAmount) {
-        String output;
-        DecimalFormat decimalFormat;
-
-        switch (mDecimalSeparatorPosition){
-            case 0:
-                decimalFormat = new DecimalFormat("0");
-                break;
-            case 1:
-                decimalFormat = new DecimalFormat("0.0");
-                break;
-            case 2:
-                decimalFormat = new DecimalFormat("0.00");
-                break;
-            case 3:
-                decimalFormat = new DecimalFormat("0.000");
-                break;
-            default:
-                decimalFormat = new DecimalFormat();
-                break;
-        }
+        final StringBuilder output = new StringBuilder(FORMAT_CAPACITY);
+        appendFormatted(output, mCodePrefix, mCodeSuffix, trxAmount);
+        return output.toString();
+    }
 
-        if (mPosition == Currency.BEFORE) {
-            output = mCurrencyCode + " " + decimalFormat.format(trxAmount);
-        } else {
-            output = decimalFormat.format(trxAmount) + " " + mCurrencyCode;
+    /**
+     * Converts the amount in major units to the minor units of this currency.
+     *
+     * @param amount Amount in major units. E.g. 12.23
+     * @return Amount in minor units rounded half-even, same as {@link DecimalFormat} does on Android. E.g. 1223
+     */
+    public long toMinorUnits(final double amount) {
+        final double multiplier = mDecimalSeparatorPosition >= 0 && mDecimalSeparatorPosition < POWERS_OF_TEN.length
+                ? POWERS_OF_TEN[mDecimalSeparatorPosition]
+                : Math.pow(10, mDecimalSeparatorPosition);
+        final double scaled = amount * multiplier;
+
+        // Ties are decided on the shortest decimal representation of the amount (12.345 -> 12.34), like
+        // the platform formatter does. The product itself might land on either side of the tie.
+        // Large values have no fraction at all.
+        final double ulp = Math.ulp(scaled);
+        if (ulp < 0.125 && Math.abs(scaled - Math.floor(scaled) - 0.5) <= 4 * ulp) {
+            return BigDecimal.valueOf(amount).setScale(mDecimalSeparatorPosition, RoundingMode.HALF_EVEN)
+                    .unscaledValue().longValue();
         }
-        return output;
+        return (long) Math.rint(scaled);
+    }
+
+    /**
+     * Appends the amount formatted with the currency symbol to the given builder.
+     * <p/>
+     * For currencies with up to three decimal places it does not allocate anything apart from
+     * the builder growth. Safe to be called concurrently from any thread.
+     *
+     * @param output     Builder to append the formatted amount to.
+     * @param minorUnits Amount in the minor units of this currency. E.g. 1223 for 12.23 EUR.
+     * @return The same builder for call chaining.
+     */
+    public StringBuilder formatTo(final StringBuilder output, final long minorUnits) {
+        output.append(mSymbolPrefix);
+        appendMinorUnits(output, minorUnits, minorUnits < 0);
+        return output.append(mSymbolSuffix);
+    }
+
+    /**
+     * Appends the amount formatted with the alphabetic currency code to the given builder.
+     *
+     * @param output     Builder to append the formatted amount to.
+     * @param minorUnits Amount in the minor units of this currency. E.g. 1223 for 12.23 EUR.
+     * @return The same builder for call chaining.
+     * @see #formatTo(StringBuilder, long)
+     */
+    public StringBuilder formatCodeTo(final StringBuilder output, final long minorUnits) {
+        output.append(mCodePrefix);
+        appendMinorUnits(output, minorUnits, minorUnits < 0);
+        return output.append(mCodeSuffix);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -266,6 +324,116 @@ public class Currency {
         return display;
     }
 
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Formatting helpers
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void appendFormatted(final StringBuilder output,
+                                 final String prefix,
+                                 final String suffix,
+                                 final double trxAmount) {
+        output.append(prefix);
+        if (mDecimalSeparatorPosition >= 0 && mDecimalSeparatorPosition < POWERS_OF_TEN.length) {
+            // DecimalFormat keeps the sign of negative amounts rounded to zero, e.g. "-0.00".
+            appendMinorUnits(output, toMinorUnits(trxAmount), Math.copySign(1.0, trxAmount) < 0);
+        } else {
+            output.append(mFallbackFormat.get().format(trxAmount));
+        }
+        output.append(suffix);
+    }
+
+    private void appendMinorUnits(final StringBuilder output, final long minorUnits, final boolean negative) {
+        if (mDecimalSeparatorPosition < 0 || mDecimalSeparatorPosition >= POWERS_OF_TEN.length) {
+            output.append(mFallbackFormat.get().format(minorUnits / Math.pow(10, mDecimalSeparatorPosition)));
+            return;
+        }
+
+        final LocaleSymbols symbols = getLocaleSymbols();
+        final long divisor = POWERS_OF_TEN[mDecimalSeparatorPosition];
+        if (negative) {
+            output.append(symbols.mNegativePrefix);
+        }
+
+        // Long.MIN_VALUE has no positive counterpart, digits are therefore taken from the negative value.
+        final long major = minorUnits / divisor;
+        appendDigits(output, major < 0 ? major : -major, symbols.mZeroDigit);
+
+        if (mDecimalSeparatorPosition > 0) {
+            output.append(symbols.mDecimalSeparator);
+
+            final long fraction = Math.abs(minorUnits % divisor);
+            for (long loopDivisor = divisor / 10; loopDivisor > 0; loopDivisor /= 10) {
+                output.append((char) (symbols.mZeroDigit + (fraction / loopDivisor) % 10));
+            }
+        }
+
+        if (negative) {
+            output.append(symbols.mNegativeSuffix);
+        }
+    }
+
+    /**
+     * Appends digits of the negated value using the given zero digit.
+     */
+    private static void appendDigits(final StringBuilder output, final long negativeValue, final char zeroDigit) {
+        if (zeroDigit == '0' && negativeValue != Long.MIN_VALUE) {
+            output.append(-negativeValue);
+            return;
+        }
+
+        final int start = output.length();
+        long remaining = negativeValue;
+        do {
+            output.append((char) (zeroDigit - remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        reverse(output, start);
+    }
+
+    private static void reverse(final StringBuilder output, final int start) {
+        for (int loopLeft = start, loopRight = output.length() - 1; loopLeft < loopRight; loopLeft++, loopRight--) {
+            final char left = output.charAt(loopLeft);
+            output.setCharAt(loopLeft, output.charAt(loopRight));
+            output.setCharAt(loopRight, left);
+        }
+    }
+
+    /**
+     * Retrieves the number symbols of the default locale, same as {@link DecimalFormat} uses.
+     * The value is cached and resolved again only when the default locale changes.
+     */
+    private static LocaleSymbols getLocaleSymbols() {
+        final Locale locale = Locale.getDefault();
+        LocaleSymbols symbols = sLocaleSymbols;
+        if (symbols == null || !symbols.mLocale.equals(locale)) {
+            symbols = new LocaleSymbols(locale);
+            sLocaleSymbols = symbols;
+        }
+        return symbols;
+    }
+
+    private static final class LocaleSymbols {
+        private final Locale mLocale;
+        private final char mDecimalSeparator;
+        private final char mZeroDigit;
+        private final String mNegativePrefix;
+        private final String mNegativeSuffix;
+
+        private LocaleSymbols(final Locale locale) {
+            final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            mLocale = locale;
+            mDecimalSeparator = symbols.getDecimalSeparator();
+            mZeroDigit = symbols.getZeroDigit();
+
+            // Minus sign is not always a single char (e.g. bidi mark in Arabic locales), so take it
+            // from what the formatter really produces.
+            final String sample = new DecimalFormat("0", symbols).format(-1);
+            final int digit = sample.indexOf(mZeroDigit + 1);
+            mNegativePrefix = digit >= 0 ? sample.substring(0, digit) : String.valueOf(symbols.getMinusSign());
+            mNegativeSuffix = digit >= 0 ? sample.substring(digit + 1) : "";
+        }
+    }
+
     @Override
     public String toString() {
         return "Currency{" +
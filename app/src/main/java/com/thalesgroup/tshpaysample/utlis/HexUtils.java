@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.utlis;
+
+/**
+ * Hex encoding helpers without any Android dependency, so they can be benchmarked on the JVM.
+ */
+public final class HexUtils {
+
+    //region Defines
+
+    private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
+
+    //endregion
+
+    //region Life Cycle
+
+    private HexUtils() {
+        // Utility class.
+    }
+
+    //endregion
+
+    //region Public API
+
+    public static String bytesToHex(final byte[] bytes) {
+        final char[] hexChars = new char[bytes.length * 2];
+        for (int loopChar = 0; loopChar < bytes.length; loopChar++) {
+            final int loopByte = bytes[loopChar] & 0xFF;
+            hexChars[loopChar * 2] = HEX_ARRAY[loopByte >>> 4];
+            hexChars[loopChar * 2 + 1] = HEX_ARRAY[loopByte & 0x0F];
+        }
+        return new String(hexChars);
+    }
+
+    //endregion
+}
@@ -5,6 +5,7 @@
 package com.thalesgroup.tshpaysample.utlis;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 
 /**
@@ -32,36 +33,36 @@ public class UtilsCurrenciesConstants {
             new Currency(51, "AMD", "\u0041\u004d\u0044", 1000, Currency.AFTER),
             // Bahrain Dinar; symbol not supported - \u002e\u062f\u002e\u0628
             new Currency(48, "BHD", "\u0042\u0044", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(3),
+                    .withDecimalSeparatorPosition(3),
             // Bangladeshi Taka
             new Currency(50, "BDT", "\u09f3", 1000, Currency.AFTER),
             // Benin CFA Franc BCEAO
             new Currency(952, "XOF", "\u0043\u0046\u0041", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Bhutanese ngultrum
             new Currency(64, "BTN", "\u004e\u0075", 1000, Currency.AFTER),
             // Burundi Franc
             new Currency(108, "BIF", "\u0046\u0042\u0075", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Cameroon CFA Franc BEAC
             new Currency(950, "XAF", "\u0046\u0043\u0046\u0041", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Cape Verde Escudo
             new Currency(132, "CVE", "\u0024", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Chile Unidad de Fomento funds code
             new Currency(990, "CLF", "\u0055\u0046", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Comoro Franc
             new Currency(174, "KMF", "\u0043\u0046", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Democratic Republic of Congo Franc Congolais
             new Currency(976, "CDF", "\u0046\u0043", 1000, Currency.AFTER),
             // Cuban convertibble peso
             new Currency(931, "CUC", "\u0043\u0055\u0043", 1000, Currency.AFTER),
             // Djibouti Franc
             new Currency(262, "DJF", "\u0046\u0064\u006a", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Eritrean Nakfa
             new Currency(232, "ERN", "\u004e\u0066\u006b", 1000, Currency.AFTER),
             // Ethiopian Birr
@@ -70,7 +71,7 @@ public class UtilsCurrenciesConstants {
             new Currency(332, "HTG", "\u0047", 1000, Currency.AFTER),
             // French Polynesian CFP Franc
             new Currency(953, "XPF", "\u0046", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Gambien Dalasi
             new Currency(270, "GMD", "\u0044", 1000, Currency.AFTER),
             // Georgian Lari
@@ -79,24 +80,24 @@ public class UtilsCurrenciesConstants {
             new Currency(936, "GHS", "\u0047\u0048\u20b5", 1000, Currency.AFTER),
             // Guinea Franc
             new Currency(324, "GNF", "\u0046\u0047", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Iraqi Dinar
             new Currency(368, "IQD", "\u062f\u002e\u0639", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(3),
+                    .withDecimalSeparatorPosition(3),
             // Jordanian Dinar
             new Currency(400, "JOD", "\u062f\u002e\u0623", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(3),
+                    .withDecimalSeparatorPosition(3),
             // Kenyan Shilling
             new Currency(404, "KES", "\u004b\u0053\u0068", 1000, Currency.AFTER),
             // Kuwaiti Dinar; symbol not supported \u062f\u002e\u0643
             new Currency(414, "KWD", "\u004b\u002e\u0042\u002e", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(3),
+                    .withDecimalSeparatorPosition(3),
             // Lesotho RandLoti
             new Currency(426, "LSL", "\u004c", 1000, Currency.AFTER),
             // Libyan Dinar
             // symbol not supported \u0644\u002e\u062f
             new Currency(434, "LYD", "\u004c\u0044", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(3),
+                    .withDecimalSeparatorPosition(3),
             // Macau Pataca
             new Currency(446, "MOP", "\u004d\u004f\u0050\u0024", 1000, Currency.AFTER),
             // Madasgasy Ariary
@@ -117,7 +118,7 @@ public class UtilsCurrenciesConstants {
             new Currency(598, "PGK", "\u004b", 1000, Currency.AFTER),
             // Rwanda Franc
             new Currency(646, "RWF", "\u0046\u0052\u0077", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Samoan Tala
             new Currency(882, "WST", "\u0057\u0053\u0024", 1000, Currency.AFTER),
             // Sao Tome And Principe Dobra
@@ -138,7 +139,7 @@ public class UtilsCurrenciesConstants {
             new Currency(776, "TOP", "\u0054\u0024", 1000, Currency.AFTER),
             // Tunisian Dinar
             new Currency(788, "TND", "\u0044\u0054", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(3),
+                    .withDecimalSeparatorPosition(3),
             // Turkish Lira
             // symbol not supported \u20ba
             new Currency(949, "TRY", "\u0054\u0052\u0059", 1000, Currency.AFTER),
@@ -146,12 +147,12 @@ public class UtilsCurrenciesConstants {
             new Currency(934, "TMT", "\u0054", 1000, Currency.AFTER),
             // Uganda Shilling
             new Currency(800, "UGX", "\u0055\u0073\u0068", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // UAE Dirham
             new Currency(784, "AED", "\u062f\u002e\u0625", 1000, Currency.AFTER),
             // Vanuatu Vatu
             new Currency(548, "VUV", "\u0056\u0054", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Zambian Kwacha
             new Currency(967, "ZMW", "\u005a\u004b", 1000, Currency.AFTER),
 
@@ -161,7 +162,7 @@ public class UtilsCurrenciesConstants {
 
             // Uruguay Peso en Unidades Indexadas
             new Currency(940, "UYI", "\u0055\u0059\u0049", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // WIR Euro (complementary currency)
             new Currency(947, "CHE", "\u0043\u0048\u0045", 1000, Currency.AFTER),
             // WIR Franc (complementary currency)
@@ -221,7 +222,7 @@ public class UtilsCurrenciesConstants {
             new Currency(52, "BBD", "\u0024", 1000, Currency.AFTER),
             // Belarusian ruble
             new Currency(974, "BYR", "\u0070\u002E", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Belize dollar
             new Currency(84, "BZD", "\u0042\u005A\u0024", 1000, Currency.AFTER),
             // Bermudian dollar
@@ -246,7 +247,7 @@ public class UtilsCurrenciesConstants {
             new Currency(136, "KYD", "\u0024", 1000, Currency.AFTER),
             // Chilean peso
             new Currency(152, "CLP", "\u0024", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Renminbi|Chinese yuan
             new Currency(156, "CNY", "\u00A5", 1000, Currency.AFTER),
             // Colombian peso
@@ -287,7 +288,7 @@ public class UtilsCurrenciesConstants {
             new Currency(348, "HUF", "\u0046\u0074", 1000, Currency.AFTER),
             // Icelandic krona
             new Currency(352, "ISK", "\u006B\u0072", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Indian rupee
             new Currency(356, "INR", "\u20B9", 1000, Currency.AFTER),
             // Indonesian rupiah
@@ -300,14 +301,14 @@ public class UtilsCurrenciesConstants {
             new Currency(388, "JMD", "\u004A\u0024", 1000, Currency.AFTER),
             // Japanese yen
             new Currency(392, "JPY", "\u00A5", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Kazakhstani tenge
             new Currency(398, "KZT", "\u043B\u0432", 1000, Currency.AFTER),
             // North Korean won; edit: snebesky - symbol not supported \u20A9
             new Currency(408, "KPW", "\u004b\u0050\u0057", 1000, Currency.AFTER),
             // South Korean won; edit: snebesky - symbol not supported \u20A9
             new Currency(410, "KRW", "\u004b\u0052\u0057", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Kyrgyzstani som
             new Currency(417, "KGS", "\u0043", 1000, Currency.AFTER),
             // Lao kip
@@ -348,14 +349,14 @@ public class UtilsCurrenciesConstants {
             new Currency(578, "NOK", "\u006B\u0072", 1000, Currency.AFTER),
             // Omani rial; symbol not supported \u0631\u002e\u0639\u002e
             new Currency(512, "OMR", "\u004f\u004d\u0052", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(3),
+                    .withDecimalSeparatorPosition(3),
             // Pakistani rupee
             new Currency(586, "PKR", "\u20A8", 1000, Currency.AFTER),
             // Panamanian balboa
             new Currency(590, "PAB", "\u0042\u002F\u002E", 1000, Currency.AFTER),
             // Paraguayan guarani
             new Currency(600, "PYG", "\u20b2", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Peruvian nuevo sol
             new Currency(604, "PEI", "\u0053\u002F\u002E", 1000, Currency.AFTER),
             // Philippine; edit snebesky: symbol not supported \u20B1
@@ -414,11 +415,31 @@ public class UtilsCurrenciesConstants {
             new Currency(937, "VEF", "\u0042\u0073\u002e", 1000, Currency.AFTER),
             // Vietnamese dong
             new Currency(704, "VND", "\u20AB", 1000, Currency.AFTER)
-                    .setDecimalSeparatorPosition(0),
+                    .withDecimalSeparatorPosition(0),
             // Yemeni rial; edit snebesky: symbol not supported \uFDFC
             new Currency(886, "YER", "\u0059\u0045\u0052", 1000, Currency.AFTER)
     };
 
+    /**
+     * ISO 4217 numeric codes are three digits long.
+     */
+    private static final int NUMERIC_CODE_COUNT = 1000;
+
+    /**
+     * ISO 4217 alphabetic codes are three letters long.
+     */
+    private static final int ALPHABETIC_CODE_COUNT = 26 * 26 * 26;
+
+    /**
+     * Index of {@link #CURRENCY_TABLE} entries keyed by the numeric currency code, -1 for unknown codes.
+     */
+    private static final short[] NUMERIC_INDEX = buildNumericIndex();
+
+    /**
+     * Index of {@link #CURRENCY_TABLE} entries keyed by the packed alphabetic currency code, -1 for unknown codes.
+     */
+    private static final short[] ALPHABETIC_INDEX = buildAlphabeticIndex();
+
     /**
      * Converts an amount from the currency 1 to the currency 2.
      *
@@ -431,14 +452,15 @@ public class UtilsCurrenciesConstants {
                                     final int DestCurrencyCode) {
         final int index1 = UtilsCurrenciesConstants.getTableIndex(OriginCurrencyCode);
         final int index2 = UtilsCurrenciesConstants.getTableIndex(DestCurrencyCode);
-        int result = 0;
+        long result = 0;
 
         if (index1 != -1 && index2 != -1) {
-            result = (UtilsCurrenciesConstants.CURRENCY_TABLE[index1].getConversionRate() * value)
+            // Product of two ints always fits into long. Clamp the result instead of wrapping around.
+            result = ((long) UtilsCurrenciesConstants.CURRENCY_TABLE[index1].getConversionRate() * value)
                     / UtilsCurrenciesConstants.CURRENCY_TABLE[index2].getConversionRate();
         }
 
-        return result;
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, result));
     }
 
     /**
@@ -481,22 +503,10 @@ public class UtilsCurrenciesConstants {
      * has not been found.
      */
     public static int getTableIndex(final int currencyCode) {
-        int retValue = 0;
-        boolean found = false;
-
-        while (!found && retValue < UtilsCurrenciesConstants.CURRENCY_TABLE.length) {
-            if (UtilsCurrenciesConstants.CURRENCY_TABLE[retValue].getCode() == currencyCode) {
-                found = true;
-            } else {
-                retValue++;
-            }
+        if (currencyCode < 0 || currencyCode >= NUMERIC_CODE_COUNT) {
+            return -1;
         }
-
-        if (!found) {
-            retValue = -1;
-        }
-
-        return retValue;
+        return NUMERIC_INDEX[currencyCode];
     }
 
     /**
@@ -507,22 +517,11 @@ public class UtilsCurrenciesConstants {
      * has not been found.
      */
     public static int getTableIndex(final String currencyCode) {
-        int retValue = 0;
-        boolean found = false;
-
-        while (!found && retValue < UtilsCurrenciesConstants.CURRENCY_TABLE.length) {
-            if (UtilsCurrenciesConstants.CURRENCY_TABLE[retValue].getCurrencyCode().equalsIgnoreCase(currencyCode)) {
-                found = true;
-            } else {
-                retValue++;
-            }
-        }
-
-        if (!found) {
-            retValue = -1;
+        final int key = packAlphabeticCode(currencyCode);
+        if (key < 0) {
+            return -1;
         }
-
-        return retValue;
+        return ALPHABETIC_INDEX[key];
     }
 
     /**
@@ -584,23 +583,121 @@ public class UtilsCurrenciesConstants {
         return result.movePointLeft(currency.getDecimalSeparatorPosition());
     }
 
+    /**
+     * Parses the amount from the string taking the currency specifics into consideration.
+     * Unlike {@link #parseFromString(int, String, BigDecimal)} the value stays in minor units.
+     *
+     * @param currencyCode The ISO 4217 numeric currency code.
+     * @param valueStr     The amount in minor units with implicit decimal separator (e.g. "1223").
+     * @return The parsed amount or {@link Amount#UNKNOWN} in case of invalid input.
+     */
+    public static Amount parseAmount(final int currencyCode, final String valueStr) {
+        final int index = UtilsCurrenciesConstants.getTableIndex(currencyCode);
+        if (index < 0 || valueStr == null) {
+            return Amount.UNKNOWN;
+        }
+
+        try {
+            return Amount.of(Long.parseLong(valueStr), index);
+        } catch (final IllegalArgumentException e) {
+            // Not a number or out of the amount range.
+            return Amount.UNKNOWN;
+        }
+    }
+
     /**
      * Resolves currency from the currency code provided as byte[]
      *
-     * @param currencyNumericCode
-     * @return Currency instance associated with the given currency code or unknown currency (XXX)
-     * if the lookup fails
+     * @param currencyNumericCode The ISO 4217 numeric currency code in BCD format (e.g. {0x09, 0x78}).
+     * @return Currency instance associated with the given currency code or {@code null} if the lookup fails.
      */
     public static Currency getCurrency(final byte[] currencyNumericCode) {
         if (currencyNumericCode == null) {
             throw new IllegalArgumentException("currencyNumericCode cannot be null");
         }
 
-        final String strCurrencyNumericCode = CommonUtils.bytesToHex(currencyNumericCode);
+        final int index = getTableIndex(decodeBcd(currencyNumericCode));
+        if (index < 0) {
+            return null;
+        }
+        return UtilsCurrenciesConstants.CURRENCY_TABLE[index];
+    }
+
+    /**
+     * Decodes the BCD encoded numeric value (e.g. ISO 4217 currency code from the transaction context)
+     * without any intermediate allocation.
+     *
+     * @param bcd The BCD encoded value.
+     * @return Decoded value or -1 if the input contains non-decimal nibble or does not fit the table range.
+     */
+    public static int decodeBcd(final byte[] bcd) {
+        int retValue = 0;
+        for (final byte loopByte : bcd) {
+            final int high = (loopByte >>> 4) & 0x0F;
+            final int low = loopByte & 0x0F;
+            if (high > 9 || low > 9) {
+                return -1;
+            }
+
+            retValue = retValue * 100 + high * 10 + low;
+            if (retValue >= NUMERIC_CODE_COUNT) {
+                return -1;
+            }
+        }
+        return retValue;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Lookup tables
+    ////////////////////////////////////////////////////////////////////////////////////////////////
 
-        return getCurrency(Integer.parseInt(strCurrencyNumericCode));
+    /**
+     * Packs the three letter ISO 4217 alphabetic code (case insensitive) into the dense index
+     * {@code 0..26^3-1}.
+     *
+     * @param currencyCode The alphabetic currency code.
+     * @return Packed code or -1 if the input is not three ASCII letters.
+     */
+    private static int packAlphabeticCode(final String currencyCode) {
+        if (currencyCode == null || currencyCode.length() != 3) {
+            return -1;
+        }
+
+        int retValue = 0;
+        for (int loopIndex = 0; loopIndex < 3; loopIndex++) {
+            final char loopChar = currencyCode.charAt(loopIndex);
+            final int letter = loopChar >= 'a' ? loopChar - 'a' : loopChar - 'A';
+            if (letter < 0 || letter >= 26) {
+                return -1;
+            }
+            retValue = retValue * 26 + letter;
+        }
+        return retValue;
+    }
+
+    private static short[] buildNumericIndex() {
+        final short[] retValue = new short[NUMERIC_CODE_COUNT];
+        Arrays.fill(retValue, (short) -1);
 
+        // Keep the first occurrence to preserve the behaviour of the former linear lookup.
+        for (int loopIndex = CURRENCY_TABLE.length - 1; loopIndex >= 0; loopIndex--) {
+            retValue[CURRENCY_TABLE[loopIndex].getCode()] = (short) loopIndex;
+        }
+        return retValue;
     }
 
+    private static short[] buildAlphabeticIndex() {
+        final short[] retValue = new short[ALPHABETIC_CODE_COUNT];
+        Arrays.fill(retValue, (short) -1);
+
+        // Keep the first occurrence to preserve the behaviour of the former linear lookup.
+        for (int loopIndex = CURRENCY_TABLE.length - 1; loopIndex >= 0; loopIndex--) {
+            final int key = packAlphabeticCode(CURRENCY_TABLE[loopIndex].getCurrencyCode());
+            if (key >= 0) {
+                retValue[key] = (short) loopIndex;
+            }
+        }
+        return retValue;
+    }
 
 }
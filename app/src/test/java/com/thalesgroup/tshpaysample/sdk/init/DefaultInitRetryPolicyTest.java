@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.init;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.gemalto.mfs.mwsdk.sdkconfig.SDKInitializeErrorCode;
+
+import org.junit.Test;
+
+public class DefaultInitRetryPolicyTest {
+
+    private static final SDKInitializeErrorCode[] STORAGE_ERRORS = {
+            SDKInitializeErrorCode.INTERNAL_COMPONENT_ERROR,
+            SDKInitializeErrorCode.SDK_INIT_FAILED,
+            SDKInitializeErrorCode.STORAGE_COMPONENT_ERROR,
+    };
+
+    private final InitRetryPolicy mPolicy = new DefaultInitRetryPolicy();
+
+    //region Classification
+
+    @Test
+    public void classify_neverWipesOnStorageErrors() {
+        // Including the last attempts. Init fails instead and the user can retry.
+        for (final SDKInitializeErrorCode loopCode : STORAGE_ERRORS) {
+            for (int loopAttempt = 1; loopAttempt <= mPolicy.getMaxAttempts(); loopAttempt++) {
+                assertEquals(loopCode + " #" + loopAttempt, InitRetryPolicy.Classification.TRANSIENT, mPolicy.classify(loopCode, loopAttempt));
+            }
+        }
+    }
+
+    @Test
+    public void classify_wipesMigrationErrorsRightAway() {
+        for (int loopAttempt = 1; loopAttempt <= mPolicy.getMaxAttempts(); loopAttempt++) {
+            assertEquals(InitRetryPolicy.Classification.NEEDS_WIPE, mPolicy.classify(SDKInitializeErrorCode.INVALID_PREVIOUS_VERSION, loopAttempt));
+            assertEquals(InitRetryPolicy.Classification.NEEDS_WIPE, mPolicy.classify(SDKInitializeErrorCode.ASM_INIT_ERROR, loopAttempt));
+            assertEquals(InitRetryPolicy.Classification.NEEDS_WIPE, mPolicy.classify(SDKInitializeErrorCode.ASM_MIGRATION_ERROR, loopAttempt));
+        }
+    }
+
+    //endregion
+
+    //region Backoff
+
+    @Test
+    public void getRetryDelayMs_staysWithinJitteredBackoff() {
+        for (int loopAttempt = 1; loopAttempt <= 40; loopAttempt++) {
+            final long backoff = Math.min(30_000, 1_000L << Math.min(loopAttempt - 1, 16));
+            final long delay = mPolicy.getRetryDelayMs(loopAttempt);
+            assertTrue("#" + loopAttempt + ": " + delay, delay >= backoff / 2 && delay <= backoff * 3 / 2);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.payment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.gemalto.mfs.mwsdk.payment.PaymentServiceErrorCode;
+import com.thalesgroup.tshpaysample.utlis.Amount;
+import com.thalesgroup.tshpaysample.utlis.UtilsCurrenciesConstants;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class PaymentFlightRecorderTest {
+
+    private static final int EUR = UtilsCurrenciesConstants.getTableIndex("EUR");
+
+    private final PaymentFlightRecorder mRecorder = new PaymentFlightRecorder();
+
+    //region Round trip
+
+    @Test
+    public void decode_readsBackAllFields() throws IOException {
+        final Amount amount = Amount.of(1223, EUR);
+        final PaymentServiceErrorCode errorCode = PaymentServiceErrorCode.values()[0];
+
+        mRecorder.record(PaymentFlightRecorder.Type.HCE_SERVICE_CREATED);
+        mRecorder.record(PaymentFlightRecorder.Type.TRANSACTION_STARTED, "TOKENIZED-CARD-1234");
+        mRecorder.record(PaymentFlightRecorder.Type.TRANSACTION_COMPLETED, "TOKENIZED-CARD-1234", amount);
+        mRecorder.record(PaymentFlightRecorder.Type.TRANSACTION_INTERRUPTED, "TOKENIZED-CARD-5678", amount.toWire(), 2, PaymentFlightRecorder.NO_VALUE);
+        mRecorder.record(PaymentFlightRecorder.Type.ERROR, null, Amount.UNKNOWN.toWire(), PaymentFlightRecorder.NO_VALUE, errorCode.ordinal());
+
+        final String[] lines = roundTrip();
+        assertEquals(5, lines.length);
+
+        assertTrue(lines[0], lines[0].startsWith("#1 ") && lines[0].endsWith(" HCE_SERVICE_CREATED"));
+        assertTrue(lines[1], lines[1].startsWith("#2 ") && lines[1].endsWith(" TRANSACTION_STARTED card=..1234"));
+        assertTrue(lines[2], lines[2].endsWith(" TRANSACTION_COMPLETED card=..1234 amount=" + amount));
+        assertTrue(lines[3], lines[3].endsWith(" TRANSACTION_INTERRUPTED card=..5678 amount=" + amount + " retriesLeft=2"));
+        assertTrue(lines[4], lines[4].endsWith(" ERROR error=" + errorCode.name()));
+    }
+
+    @Test
+    public void decode_keepsOnlyLatestEventsAfterWrapAround() throws IOException {
+        for (int loopIndex = 0; loopIndex < 1030; loopIndex++) {
+            mRecorder.record(PaymentFlightRecorder.Type.READY_TO_TAP);
+        }
+
+        final String[] lines = roundTrip();
+        assertEquals(1024, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("#7 "));
+        assertTrue(lines[1023], lines[1023].startsWith("#1030 "));
+    }
+
+    @Test
+    public void decode_writesNothingForEmptyRecorder() throws IOException {
+        assertEquals("", decode(export()));
+    }
+
+    @Test
+    public void decode_dropsCardsBeyondTheTable() throws IOException {
+        for (int loopIndex = 0; loopIndex < 40; loopIndex++) {
+            mRecorder.record(PaymentFlightRecorder.Type.REPLENISHMENT_REQUESTED, "CARD-" + (1000 + loopIndex));
+        }
+
+        final String[] lines = roundTrip();
+        assertTrue(lines[31], lines[31].endsWith(" card=..1031"));
+        assertFalse(lines[32], lines[32].contains("card="));
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsOtherFiles() throws IOException {
+        decode(new byte[]{'P', 'K', 3, 4, 0, 0, 0, 0});
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private byte[] export() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mRecorder.writeTo(output);
+        return output.toByteArray();
+    }
+
+    private static String decode(final byte[] data) throws IOException {
+        final StringBuilder retValue = new StringBuilder();
+        PaymentFlightRecorder.decode(new ByteArrayInputStream(data), retValue);
+        return retValue.toString();
+    }
+
+    private String[] roundTrip() throws IOException {
+        return decode(export()).split("\n");
+    }
+
+    //endregion
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.payment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PaymentLatencyTracerTest {
+
+    private static final int LAST_BUCKET = PaymentLatencyTracer.BUCKET_COUNT - 1;
+
+    //region Buckets
+
+    @Test
+    public void bucketIndex_storesSmallValuesExactly() {
+        for (int loopValue = 0; loopValue < 16; loopValue++) {
+            assertEquals(loopValue, PaymentLatencyTracer.bucketIndex(loopValue));
+            assertEquals(loopValue, PaymentLatencyTracer.bucketUpperBound(loopValue));
+        }
+    }
+
+    @Test
+    public void bucketIndex_splitsPowersOfTwoIntoSubBuckets() {
+        assertEquals(16, PaymentLatencyTracer.bucketIndex(16));
+        assertEquals(16, PaymentLatencyTracer.bucketIndex(17));
+        assertEquals(17, PaymentLatencyTracer.bucketIndex(18));
+        assertEquals(23, PaymentLatencyTracer.bucketIndex(31));
+        assertEquals(24, PaymentLatencyTracer.bucketIndex(32));
+        assertEquals(17, PaymentLatencyTracer.bucketUpperBound(16));
+        assertEquals(35, PaymentLatencyTracer.bucketUpperBound(24));
+    }
+
+    @Test
+    public void bucketUpperBound_isLastValueOfItsBucket() {
+        // Buckets are contiguous: upper bound belongs to the bucket, the next value to the next one.
+        for (int loopBucket = 0; loopBucket < LAST_BUCKET; loopBucket++) {
+            final long upperBound = PaymentLatencyTracer.bucketUpperBound(loopBucket);
+            assertEquals("bucket " + loopBucket, loopBucket, PaymentLatencyTracer.bucketIndex(upperBound));
+            assertEquals("bucket " + loopBucket, loopBucket + 1, PaymentLatencyTracer.bucketIndex(upperBound + 1));
+        }
+    }
+
+    @Test
+    public void bucketUpperBound_staysWithinRelativeError() {
+        for (int loopBucket = 1; loopBucket <= LAST_BUCKET; loopBucket++) {
+            final long lowerBound = PaymentLatencyTracer.bucketUpperBound(loopBucket - 1) + 1;
+            final long upperBound = PaymentLatencyTracer.bucketUpperBound(loopBucket);
+            assertTrue("bucket " + loopBucket, (upperBound - lowerBound) * 8 <= lowerBound);
+        }
+    }
+
+    @Test
+    public void bucketIndex_clampsLongValuesIntoLastBucket() {
+        final long lastValue = PaymentLatencyTracer.bucketUpperBound(LAST_BUCKET);
+        assertEquals((1L << 27) - 1, lastValue);
+        assertEquals(LAST_BUCKET, PaymentLatencyTracer.bucketIndex(lastValue));
+        assertEquals(LAST_BUCKET, PaymentLatencyTracer.bucketIndex(lastValue + 1));
+        assertEquals(LAST_BUCKET, PaymentLatencyTracer.bucketIndex(Long.MAX_VALUE));
+    }
+
+    //endregion
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.sdk.payment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PaymentStateStreamTest {
+
+    private final PaymentStateStream mStream = new PaymentStateStream();
+    private final RecordingListener mListener = new RecordingListener();
+
+    //region Replay
+
+    @Test
+    public void subscribe_replaysLatestTransition() {
+        mStream.publish(TshPaymentState.STATE_ON_TRANSACTION_STARTED, null);
+        mStream.publish(TshPaymentState.STATE_ON_READY_TO_TAP, null);
+
+        mStream.subscribe(mListener, 0);
+
+        assertEquals(1, mListener.mEvents.size());
+        assertEquals(TshPaymentState.STATE_ON_READY_TO_TAP, mListener.mEvents.get(0).getState());
+    }
+
+    @Test
+    public void stopStart_doesNotReplayEndedSession() {
+        mStream.publish(TshPaymentState.STATE_ON_TRANSACTION_COMPLETED, null);
+        mStream.subscribe(mListener, 0);
+        final long lastSequence = mListener.lastSequence();
+
+        // onStop() of the payment screen.
+        mStream.unsubscribe(mListener);
+        mStream.endSession(lastSequence);
+
+        // Recreated screen does not know the sequence.
+        mStream.subscribe(mListener, 0);
+
+        assertEquals(1, mListener.mEvents.size());
+        assertNull(mStream.getLatest());
+    }
+
+    @Test
+    public void stopStart_doesNotReplayHandledTransition() {
+        mStream.publish(TshPaymentState.STATE_ON_TRANSACTION_STARTED, null);
+        mStream.subscribe(mListener, 0);
+        final long lastSequence = mListener.lastSequence();
+
+        // Session still runs, so it is not ended with the stop.
+        mStream.unsubscribe(mListener);
+        mStream.subscribe(mListener, lastSequence);
+
+        assertEquals(1, mListener.mEvents.size());
+    }
+
+    @Test
+    public void stopStart_replaysTransitionPublishedWhileStopped() {
+        mStream.publish(TshPaymentState.STATE_ON_TRANSACTION_STARTED, null);
+        mStream.subscribe(mListener, 0);
+        final long lastSequence = mListener.lastSequence();
+        mStream.unsubscribe(mListener);
+
+        mStream.publish(TshPaymentState.STATE_ON_ERROR, null);
+        mStream.subscribe(mListener, lastSequence);
+
+        assertEquals(2, mListener.mEvents.size());
+        assertEquals(TshPaymentState.STATE_ON_ERROR, mListener.mEvents.get(1).getState());
+    }
+
+    @Test
+    public void endSession_keepsNewerSession() {
+        mStream.publish(TshPaymentState.STATE_ON_TRANSACTION_COMPLETED, null);
+        mStream.subscribe(mListener, 0);
+        final long lastSequence = mListener.lastSequence();
+        mStream.unsubscribe(mListener);
+
+        // Next tap came before the screen stopped.
+        mStream.publish(TshPaymentState.STATE_ON_TRANSACTION_STARTED, null);
+        mStream.endSession(lastSequence);
+        mStream.subscribe(mListener, 0);
+
+        assertEquals(2, mListener.mEvents.size());
+        assertEquals(TshPaymentState.STATE_ON_TRANSACTION_STARTED, mListener.mEvents.get(1).getState());
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private static final class RecordingListener implements PaymentStateStream.Listener {
+        private final List<PaymentStateStream.Event> mEvents = new ArrayList<>();
+
+        @Override
+        public void onPaymentStateChanged(@NonNull final PaymentStateStream.Event event) {
+            mEvents.add(event);
+        }
+
+        long lastSequence() {
+            return mEvents.get(mEvents.size() - 1).getSequence();
+        }
+    }
+
+    //endregion
+}
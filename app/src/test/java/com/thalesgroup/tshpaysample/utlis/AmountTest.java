@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.utlis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AmountTest {
+
+    private static final int EUR = UtilsCurrenciesConstants.getTableIndex("EUR");
+    private static final int USD = UtilsCurrenciesConstants.getTableIndex("USD");
+    private static final int LAST = UtilsCurrenciesConstants.CURRENCY_TABLE.length - 1;
+
+    //region Wire form
+
+    @Test
+    public void toWire_roundTrips() {
+        final Amount[] amounts = {
+                Amount.of(0, EUR),
+                Amount.of(1223, EUR),
+                Amount.of(1223, LAST),
+                Amount.of(999_999_999_999L, USD),
+                Amount.of(Amount.MAX_MINOR_UNITS, LAST),
+                Amount.of(Amount.UNKNOWN_MINOR_UNITS, EUR),
+                Amount.UNKNOWN,
+        };
+        for (final Amount loopAmount : amounts) {
+            assertEquals(loopAmount, Amount.fromWire(loopAmount.toWire()));
+        }
+        assertSame(Amount.UNKNOWN, Amount.fromWire(Amount.UNKNOWN.toWire()));
+    }
+
+    @Test
+    public void toWire_doesNotOverflowAtLimit() {
+        final long wire = Amount.of(Amount.MAX_MINOR_UNITS, LAST).toWire();
+        assertTrue(wire > 0);
+        assertEquals(Amount.MAX_MINOR_UNITS, Amount.fromWire(wire).getMinorUnits());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_rejectsValueAboveWireRange() {
+        Amount.of(Amount.MAX_MINOR_UNITS + 1, EUR);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_rejectsInvalidCurrency() {
+        Amount.of(1223, UtilsCurrenciesConstants.CURRENCY_TABLE.length);
+    }
+
+    @Test
+    public void parseAmount_treatsOutOfRangeAsUnknown() {
+        assertEquals(Amount.of(1223, EUR), UtilsCurrenciesConstants.parseAmount(978, "1223"));
+        assertSame(Amount.UNKNOWN, UtilsCurrenciesConstants.parseAmount(978, String.valueOf(Amount.MAX_MINOR_UNITS + 1)));
+        assertSame(Amount.UNKNOWN, UtilsCurrenciesConstants.parseAmount(978, "12.23"));
+    }
+
+    //endregion
+
+    //region Conversion
+
+    @Test
+    public void convertTo_keepsLargestValueExact() {
+        final Amount converted = Amount.of(Amount.MAX_MINOR_UNITS, EUR).convertTo(USD);
+        assertEquals(USD, converted.getCurrencyIndex());
+        assertEquals(Amount.MAX_MINOR_UNITS, converted.getMinorUnits());
+    }
+
+    @Test
+    public void convertTo_keepsUnknownValue() {
+        final Amount converted = Amount.of(Amount.UNKNOWN_MINOR_UNITS, EUR).convertTo(USD);
+        assertFalse(converted.isKnown());
+        assertEquals(USD, converted.getCurrencyIndex());
+    }
+
+    //endregion
+
+    //region Transaction
+
+    @Test
+    public void fromTransaction_treatsOutOfRangeAsUnknown() {
+        final byte[] eur = {0x09, 0x78};
+        assertEquals(Amount.of(1223, EUR), Amount.fromTransaction(12.23, eur));
+        assertFalse(Amount.fromTransaction(1e300, eur).isKnown());
+        assertFalse(Amount.fromTransaction(Double.POSITIVE_INFINITY, eur).isKnown());
+        assertFalse(Amount.fromTransaction(Double.NaN, eur).isKnown());
+        assertFalse(Amount.fromTransaction(-1, eur).isKnown());
+        assertEquals(EUR, Amount.fromTransaction(1e300, eur).getCurrencyIndex());
+        assertSame(Amount.UNKNOWN, Amount.fromTransaction(12.23, null));
+    }
+
+    //endregion
+}
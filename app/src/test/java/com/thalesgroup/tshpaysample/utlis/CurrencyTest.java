@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.utlis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+public class CurrencyTest {
+
+    private static final String[] LOCALES = {"en-US", "de-DE", "sv-SE", "ar-EG", "fa-IR", "th-TH-u-nu-thai"};
+    private static final String[] PATTERNS = {"0", "0.0", "0.00", "0.000"};
+
+    private Locale mDefaultLocale;
+
+    @Before
+    public void setUp() {
+        mDefaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(mDefaultLocale);
+    }
+
+    //region Rounding
+
+    @Test
+    public void formatAmountDisplay_roundsHalfEven() {
+        // Values exactly half way in binary, so the expected output does not depend on the double representation.
+        assertEquals("2 X", currency(0).getFormatAmountDisplay(2.5));
+        assertEquals("4 X", currency(0).getFormatAmountDisplay(3.5));
+        assertEquals("-2 X", currency(0).getFormatAmountDisplay(-2.5));
+        assertEquals("0.2 X", currency(1).getFormatAmountDisplay(0.25));
+        assertEquals("0.8 X", currency(1).getFormatAmountDisplay(0.75));
+        assertEquals("0.12 X", currency(2).getFormatAmountDisplay(0.125));
+        assertEquals("0.38 X", currency(2).getFormatAmountDisplay(0.375));
+        assertEquals("-0.12 X", currency(2).getFormatAmountDisplay(-0.125));
+        assertEquals("0.062 X", currency(3).getFormatAmountDisplay(0.0625));
+        assertEquals("0.188 X", currency(3).getFormatAmountDisplay(0.1875));
+    }
+
+    @Test
+    public void formatAmountDisplay_roundsTiesOfWrittenValue() {
+        // Neither of these is exactly representable, the product with the multiplier lands below the tie.
+        assertEquals("12.34 X", currency(2).getFormatAmountDisplay(12.345));
+        assertEquals("2.68 X", currency(2).getFormatAmountDisplay(2.675));
+        assertEquals("1.00 X", currency(2).getFormatAmountDisplay(1.005));
+        assertEquals("1.02 X", currency(2).getFormatAmountDisplay(1.015));
+        assertEquals("0.2 X", currency(1).getFormatAmountDisplay(0.15));
+        assertEquals("1.002 X", currency(3).getFormatAmountDisplay(1.0025));
+    }
+
+    @Test
+    public void formatAmountDisplay_keepsSignOfNegativeZero() {
+        assertEquals("-0.00 X", currency(2).getFormatAmountDisplay(-0.001));
+        assertEquals("-0 X", currency(0).getFormatAmountDisplay(-0.4));
+        assertEquals("0.00 X", currency(2).getFormatAmountDisplay(0.001));
+    }
+
+    @Test
+    public void formatAmountDisplay_handlesOtherValues() {
+        assertEquals("0 X", currency(0).getFormatAmountDisplay(0));
+        assertEquals("1234568 X", currency(0).getFormatAmountDisplay(1234567.891));
+        assertEquals("1234567.891 X", currency(3).getFormatAmountDisplay(1234567.891));
+        assertEquals("1000.00 X", currency(2).getFormatAmountDisplay(999.999));
+        assertEquals("-12.23 X", currency(2).getFormatAmountDisplay(-12.23));
+    }
+
+    //endregion
+
+    //region Minor units
+
+    @Test
+    public void formatTo_placesDecimalSeparatorByPosition() {
+        assertEquals("1223 X", format(currency(0), 1223));
+        assertEquals("122.3 X", format(currency(1), 1223));
+        assertEquals("12.23 X", format(currency(2), 1223));
+        assertEquals("1.223 X", format(currency(3), 1223));
+        assertEquals("0.05 X", format(currency(2), 5));
+        assertEquals("0.005 X", format(currency(3), 5));
+        assertEquals("-0.05 X", format(currency(2), -5));
+        assertEquals("-92233720368547758.08 X", format(currency(2), Long.MIN_VALUE));
+    }
+
+    @Test
+    public void formatTo_usesLocaleSymbols() {
+        for (final String loopTag : LOCALES) {
+            Locale.setDefault(Locale.forLanguageTag(loopTag));
+            final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault());
+            for (int loopPosition = 0; loopPosition < PATTERNS.length; loopPosition++) {
+                final DecimalFormat format = new DecimalFormat(PATTERNS[loopPosition], symbols);
+                final double divisor = Math.pow(10, loopPosition);
+                for (final long loopMinorUnits : new long[]{0, 7, 1223, -1223, 1234567890}) {
+                    assertEquals(loopTag + " " + loopMinorUnits,
+                            format.format(loopMinorUnits / divisor) + " X", format(currency(loopPosition), loopMinorUnits));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void formatTo_followsDefaultLocaleChange() {
+        Locale.setDefault(Locale.GERMANY);
+        assertEquals("12,23 X", format(currency(2), 1223));
+        Locale.setDefault(Locale.US);
+        assertEquals("12.23 X", format(currency(2), 1223));
+    }
+
+    //endregion
+
+    //region Immutability
+
+    @Test
+    public void with_returnsModifiedCopy() {
+        final Currency currency = currency(2);
+        final Currency copy = currency.withDecimalSeparatorPosition(3).withDisplayMultiplier(10);
+
+        assertNotSame(currency, copy);
+        assertEquals(2, currency.getDecimalSeparatorPosition());
+        assertEquals(1, currency.getDisplayMultiplier());
+        assertEquals(3, copy.getDecimalSeparatorPosition());
+        assertEquals(10, copy.getDisplayMultiplier());
+        assertEquals(currency.getCode(), copy.getCode());
+        assertEquals("X", copy.getCurrencySymbol());
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private static Currency currency(final int decimalSeparatorPosition) {
+        return new Currency(999, "XXX", "X", 1000, Currency.AFTER).withDecimalSeparatorPosition(decimalSeparatorPosition);
+    }
+
+    private static String format(final Currency currency, final long minorUnits) {
+        return currency.formatTo(new StringBuilder(), minorUnits).toString();
+    }
+
+    //endregion
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.utlis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class UtilsCurrenciesConstantsTest {
+
+    //region BCD
+
+    @Test
+    public void decodeBcd_decodesCurrencyCodes() {
+        assertEquals(978, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x09, 0x78}));
+        assertEquals(840, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x08, 0x40}));
+        assertEquals(12, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x00, 0x12}));
+        assertEquals(0, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x00, 0x00}));
+        assertEquals(0, UtilsCurrenciesConstants.decodeBcd(new byte[0]));
+    }
+
+    @Test
+    public void decodeBcd_rejectsNonDecimalNibbles() {
+        assertEquals(-1, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x09, 0x7A}));
+        assertEquals(-1, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x0F, 0x78}));
+        assertEquals(-1, UtilsCurrenciesConstants.decodeBcd(new byte[]{(byte) 0xA0, 0x00}));
+        assertEquals(-1, UtilsCurrenciesConstants.decodeBcd(new byte[]{(byte) 0xFF, (byte) 0xFF}));
+    }
+
+    @Test
+    public void decodeBcd_rejectsValuesOutOfTableRange() {
+        assertEquals(-1, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x10, 0x00}));
+        assertEquals(-1, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x01, 0x00, 0x00}));
+        // Leading zero bytes do not matter.
+        assertEquals(978, UtilsCurrenciesConstants.decodeBcd(new byte[]{0x00, 0x09, 0x78}));
+    }
+
+    @Test
+    public void getCurrencyBcd_resolvesKnownCodes() {
+        assertEquals("EUR", UtilsCurrenciesConstants.getCurrency(new byte[]{0x09, 0x78}).getCurrencyCode());
+        assertEquals("USD", UtilsCurrenciesConstants.getCurrency(new byte[]{0x08, 0x40}).getCurrencyCode());
+    }
+
+    @Test
+    public void getCurrencyBcd_returnsNullForInvalidInput() {
+        assertNull(UtilsCurrenciesConstants.getCurrency(new byte[]{0x09, 0x7A}));
+        assertNull(UtilsCurrenciesConstants.getCurrency(new byte[]{0x10, 0x00}));
+        assertNull(UtilsCurrenciesConstants.getCurrency(new byte[]{0x00, 0x01}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getCurrencyBcd_rejectsNull() {
+        UtilsCurrenciesConstants.getCurrency((byte[]) null);
+    }
+
+    //endregion
+
+    //region Index tables
+
+    @Test
+    public void numericIndex_matchesFirstOccurrenceOfLinearLookup() {
+        for (int loopCode = 0; loopCode < 1000; loopCode++) {
+            assertEquals("Code " + loopCode, linearIndex(loopCode), UtilsCurrenciesConstants.getTableIndex(loopCode));
+        }
+    }
+
+    @Test
+    public void alphabeticIndex_matchesFirstOccurrenceOfLinearLookup() {
+        for (final Currency loopCurrency : UtilsCurrenciesConstants.CURRENCY_TABLE) {
+            final String code = loopCurrency.getCurrencyCode();
+            assertEquals(code, linearIndex(code), UtilsCurrenciesConstants.getTableIndex(code));
+        }
+    }
+
+    @Test
+    public void alphabeticIndex_keepsFirstOccurrenceOfDuplicates() {
+        // XPD is listed twice, for palladium (964) and again for the Thai baht (764).
+        final Currency currency = UtilsCurrenciesConstants.getCurrency("XPD");
+        assertEquals(964, currency.getCode());
+        assertEquals("XPD", UtilsCurrenciesConstants.getCurrency(764).getCurrencyCode());
+    }
+
+    @Test
+    public void alphabeticIndex_isCaseInsensitive() {
+        assertSame(UtilsCurrenciesConstants.getCurrency("EUR"), UtilsCurrenciesConstants.getCurrency("eur"));
+        assertSame(UtilsCurrenciesConstants.getCurrency("EUR"), UtilsCurrenciesConstants.getCurrency("eUr"));
+    }
+
+    @Test
+    public void lookups_returnMissForUnknownOrInvalidCodes() {
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex(-1));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex(1000));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex(1));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex((String) null));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex(""));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex("EU"));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex("EURO"));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex("E1R"));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex("E[R"));
+        assertEquals(-1, UtilsCurrenciesConstants.getTableIndex("ZZZ"));
+        assertNull(UtilsCurrenciesConstants.getCurrency(1));
+        assertNull(UtilsCurrenciesConstants.getCurrency("ZZZ"));
+    }
+
+    //endregion
+
+    //region Private Helpers
+
+    private static int linearIndex(final int code) {
+        for (int loopIndex = 0; loopIndex < UtilsCurrenciesConstants.CURRENCY_TABLE.length; loopIndex++) {
+            if (UtilsCurrenciesConstants.CURRENCY_TABLE[loopIndex].getCode() == code) {
+                return loopIndex;
+            }
+        }
+        return -1;
+    }
+
+    private static int linearIndex(final String code) {
+        for (int loopIndex = 0; loopIndex < UtilsCurrenciesConstants.CURRENCY_TABLE.length; loopIndex++) {
+            if (UtilsCurrenciesConstants.CURRENCY_TABLE[loopIndex].getCurrencyCode().equalsIgnoreCase(code)) {
+                return loopIndex;
+            }
+        }
+        return -1;
+    }
+
+    //endregion
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.bench;
+
+import com.thalesgroup.tshpaysample.utlis.HexUtils;
+import com.thalesgroup.tshpaysample.utlis.UtilsCurrenciesConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Decoding of the BCD currency code from the transaction context. The former path went through
+ * the hex string and {@link Integer#parseInt(String)}, the current one decodes the nibbles directly.
+ */
+@State(Scope.Thread)
+public class BcdDecodeBenchmark {
+
+    private final byte[] mBcdCode = {0x09, 0x78};
+
+    @Benchmark
+    public String bytesToHex() {
+        return HexUtils.bytesToHex(mBcdCode);
+    }
+
+    @Benchmark
+    public int bytesToHexParse() {
+        return Integer.parseInt(HexUtils.bytesToHex(mBcdCode));
+    }
+
+    @Benchmark
+    public int decodeBcd() {
+        return UtilsCurrenciesConstants.decodeBcd(mBcdCode);
+    }
+}
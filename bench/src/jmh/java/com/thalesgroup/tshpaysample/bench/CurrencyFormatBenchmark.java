@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.bench;
+
+import com.thalesgroup.tshpaysample.utlis.Currency;
+import com.thalesgroup.tshpaysample.utlis.UtilsCurrenciesConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.DecimalFormat;
+
+/**
+ * Amount formatting used by the payment screens.
+ */
+@State(Scope.Thread)
+public class CurrencyFormatBenchmark {
+
+    /**
+     * Symbol before the amount, symbol after the amount and currency without minor units.
+     */
+    @Param({"USD", "EUR", "JPY"})
+    public String mCurrencyCode;
+
+    private final StringBuilder mBuilder = new StringBuilder(32);
+    private Currency mCurrency;
+    private long mMinorUnits;
+
+    @Setup
+    public void setup() {
+        mCurrency = UtilsCurrenciesConstants.getCurrency(mCurrencyCode);
+        mMinorUnits = mCurrency.toMinorUnits(1234.56);
+    }
+
+    /**
+     * Baseline. Previous implementation creating the {@link DecimalFormat} with each call.
+     */
+    @Benchmark
+    public String formatDoubleLegacy() {
+        final DecimalFormat decimalFormat;
+        switch (mCurrency.getDecimalSeparatorPosition()) {
+            case 0:
+                decimalFormat = new DecimalFormat("0");
+                break;
+            case 1:
+                decimalFormat = new DecimalFormat("0.0");
+                break;
+            case 2:
+                decimalFormat = new DecimalFormat("0.00");
+                break;
+            case 3:
+                decimalFormat = new DecimalFormat("0.000");
+                break;
+            default:
+                decimalFormat = new DecimalFormat();
+                break;
+        }
+
+        if (mCurrency.getPosition() == Currency.BEFORE) {
+            return mCurrency.getCurrencySymbol() + " " + decimalFormat.format(1234.56);
+        } else {
+            return decimalFormat.format(1234.56) + " " + mCurrency.getCurrencySymbol();
+        }
+    }
+
+    @Benchmark
+    public String formatDouble() {
+        return mCurrency.getFormatAmountDisplay(1234.56);
+    }
+
+    @Benchmark
+    public String formatCodeDouble() {
+        return mCurrency.getFormatAmountCodeDisplay(1234.56);
+    }
+
+    @Benchmark
+    public StringBuilder formatMinorUnitsReused() {
+        mBuilder.setLength(0);
+        return mCurrency.formatTo(mBuilder, mMinorUnits);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.bench;
+
+import com.thalesgroup.tshpaysample.utlis.Currency;
+import com.thalesgroup.tshpaysample.utlis.UtilsCurrenciesConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Currency resolution as done for every transaction context and every displayed amount.
+ */
+@State(Scope.Benchmark)
+public class CurrencyLookupBenchmark {
+
+    /**
+     * First, middle and last entry of the currency table, plus a code which is not listed.
+     */
+    @Param({"12", "978", "886", "5"})
+    public int mNumericCode;
+
+    private String mAlphabeticCode;
+    private byte[] mBcdCode;
+
+    @Setup
+    public void setup() {
+        final Currency currency = UtilsCurrenciesConstants.getCurrency(mNumericCode);
+        mAlphabeticCode = currency == null ? "ZZZ" : currency.getCurrencyCode();
+        mBcdCode = new byte[]{(byte) (mNumericCode / 100), (byte) (((mNumericCode / 10 % 10) << 4) | (mNumericCode % 10))};
+    }
+
+    @Benchmark
+    public Currency byNumericCode() {
+        return UtilsCurrenciesConstants.getCurrency(mNumericCode);
+    }
+
+    @Benchmark
+    public Currency byAlphabeticCode() {
+        return UtilsCurrenciesConstants.getCurrency(mAlphabeticCode);
+    }
+
+    @Benchmark
+    public Currency byBcdCode() {
+        return UtilsCurrenciesConstants.getCurrency(mBcdCode);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.bench;
+
+import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentData;
+import com.thalesgroup.tshpaysample.sdk.payment.TshPaymentErrorData;
+import com.thalesgroup.tshpaysample.utlis.Amount;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Payment data creation and the serialization done when it's passed to the payment activity.
+ */
+@State(Scope.Thread)
+public class PaymentDataBenchmark {
+
+    private static final byte[] EUR_BCD = {0x09, 0x78};
+    private static final String CARD_ID = "b2b4a6c8-1f0e-4e1a-9d3c-6a7b8c9d0e1f";
+
+    private TshPaymentData mPaymentData;
+    private byte[] mSerialized;
+    private Amount mAmount;
+    private long mWire;
+
+    @Setup
+    public void setup() throws IOException {
+        mAmount = Amount.fromTransaction(12.23, EUR_BCD);
+        mPaymentData = new TshPaymentData(mAmount, CARD_ID);
+        mSerialized = serialize(mPaymentData);
+        mWire = mAmount.toWire();
+    }
+
+    @Benchmark
+    public Amount amountFromTransaction() {
+        return Amount.fromTransaction(12.23, EUR_BCD);
+    }
+
+    @Benchmark
+    public TshPaymentData createPaymentData() {
+        return new TshPaymentData(Amount.fromTransaction(12.23, EUR_BCD), CARD_ID);
+    }
+
+    @Benchmark
+    public TshPaymentErrorData createErrorData() {
+        return new TshPaymentErrorData("1001", "Transaction failed", mAmount, CARD_ID);
+    }
+
+    @Benchmark
+    public byte[] serializePaymentData() throws IOException {
+        return serialize(mPaymentData);
+    }
+
+    @Benchmark
+    public Object deserializePaymentData() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(mSerialized))) {
+            return input.readObject();
+        }
+    }
+
+    @Benchmark
+    public long amountToWire() {
+        return mAmount.toWire();
+    }
+
+    @Benchmark
+    public Amount amountFromWire() {
+        return Amount.fromWire(mWire);
+    }
+
+    static byte[] serialize(final Object value) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream stream = new ObjectOutputStream(output)) {
+            stream.writeObject(value);
+        }
+        return output.toByteArray();
+    }
+}
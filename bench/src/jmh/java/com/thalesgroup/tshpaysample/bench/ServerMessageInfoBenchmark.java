@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2021-2022 THALES. All rights reserved.
+ */
+
+package com.thalesgroup.tshpaysample.bench;
+
+import com.thalesgroup.tshpaysample.sdk.push.ServerMessageInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Server message list handling done for every processed push notification.
+ */
+@State(Scope.Thread)
+public class ServerMessageInfoBenchmark {
+
+    @Param({"1", "8"})
+    public int mMessageCount;
+
+    private ArrayList<ServerMessageInfo> mMessages;
+
+    @Setup
+    public void setup() {
+        mMessages = createMessages();
+    }
+
+    @Benchmark
+    public ArrayList<ServerMessageInfo> create() {
+        return createMessages();
+    }
+
+    @Benchmark
+    public String describe() {
+        return mMessages.toString();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return PaymentDataBenchmark.serialize(mMessages);
+    }
+
+    private ArrayList<ServerMessageInfo> createMessages() {
+        final ArrayList<ServerMessageInfo> messages = new ArrayList<>(mMessageCount);
+        for (int index = 0; index < mMessageCount; index++) {
+            messages.add(new ServerMessageInfo("TOKEN_ID_" + index, "REQUEST_REPLENISH_KEYS"));
+        }
+        return messages;
+    }
+}